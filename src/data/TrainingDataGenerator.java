@@ -277,7 +277,7 @@ public class TrainingDataGenerator {
 			}
 			if (seq2bindingDomain.containsKey(currID)) {
 				IprProcessed currDBDs = seq2bindingDomain.get(currID);
-				parser.domains.set(i, currDBDs.binding_domains);
+				parser.domains.set(i, currDBDs.formatBindingIntervals());
 				
 			} else {
 				parser.domains.set(i, null);
@@ -23,16 +23,36 @@
 package features;
 
 import io.BasicTools;
+import io.BinaryFeatureFileWriter;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import liblinear.WekaLauncher;
 
-import data.TrainingDataGenerator;
 
 /**
  * 
@@ -42,7 +62,7 @@ import data.TrainingDataGenerator;
  * @since 1.0
  */
 
-public abstract class BLASTfeatureGenerator {
+public abstract class BLASTfeatureGenerator implements FeatureExtractor {
 	
 	protected static final String[] aminoAcids = new String[]{"A", "R", "N", "D", "C", "Q", "E", "G", "H", "I", "L", "K", "M", "F", "P", "S", "T", "W", "Y", "V"};
 	
@@ -57,6 +77,15 @@ public abstract class BLASTfeatureGenerator {
 	protected String fastaFile;
 	protected String featureFile;
 	protected String database;
+	protected boolean writeBinaryFile = false;
+	protected String featureStoreDir = null;
+	private String dbVersion = null;
+	
+	// all-vs-all hits are stored and used for naive and percentile features (see BlastHitMatrix)
+	protected String hitMatrixFile = null;
+	private static final String hitMatrixStoreFileName = "blast_hits.bin";
+	protected BlastHitMatrix hitMatrix = null;
+	private static final int hitsChunkSize = 10;
 	
 	protected Map<String, Integer> seq2label = new HashMap<String, Integer>();
 	protected Map<String, String> sequences = new HashMap<String, String>();
@@ -78,6 +107,34 @@ public abstract class BLASTfeatureGenerator {
 		return features;
 	}
 	
+	public void setWriteBinaryFile(boolean writeBinaryFile) {
+		this.writeBinaryFile = writeBinaryFile;
+	}
+	
+	// PSSM features (and PSSMs) and BLAST hits are stored and computed only for new sequences in later runs (see FeatureStore)
+	public void setFeatureStoreDir(String featureStoreDir) {
+		this.featureStoreDir = featureStoreDir;
+	}
+	
+	// hits are obtained from the all-vs-all hit matrix which is computed if the file does not exist
+	public void setHitMatrixFile(String hitMatrixFile) {
+		this.hitMatrixFile = hitMatrixFile;
+	}
+	
+	// hit matrix is stored in the feature store directory if no file is given (null if no hit matrix is used)
+	private String getHitMatrixFile() {
+		
+		if (hitMatrixFile != null || featureStoreDir == null) {
+			return hitMatrixFile;
+		}
+		new File(featureStoreDir).mkdirs();
+		return new File(featureStoreDir, hitMatrixStoreFileName).getPath();
+	}
+	
+	private boolean useHitMatrix() {
+		return !pssmFeat && (hitMatrixFile != null || featureStoreDir != null);
+	}
+	
 	public BLASTfeatureGenerator() {}
 	
 	public BLASTfeatureGenerator(String fastaFile, String featureFile, boolean superPred) {
@@ -98,8 +155,16 @@ public abstract class BLASTfeatureGenerator {
 	public void generateFeatures() {
 		
 		preparePsiBlast();
-		runPsiBlast();
+		FeatureStore store = openFeatureStore(fastaFile);
+		List<String> newSeqIDs = restoreFeatures(store);
+		if (useHitMatrix()) {
+			hitMatrix = getHitMatrix();
+			hits = hitMatrix.getHits(newSeqIDs, null);
+		} else {
+			runPsiBlast(newSeqIDs);
+		}
 		computeFeaturesFromBlastResult();
+		storeFeatures(store, newSeqIDs);
 		writeFeatureFile();
 	}
 	
@@ -111,11 +176,136 @@ public abstract class BLASTfeatureGenerator {
 		seq2label = DomainFeatureGenerator.getLabelsFromFastaHeaders(sequences.keySet(), superPred, false);
 		
 		// create database
+		database = createBlastDatabase(path2BLAST, fastaFile);
+	}
+	
+	// returns path of the database
+	static String createBlastDatabase(String path2BLAST, String fastaFile) {
+		
 		String dbName = new File(fastaFile).getName().replace(".fasta", ".db");
 		String cmd = path2BLAST + "bin/makeblastdb -in " + fastaFile  + " -out " + path2BLAST + "db/" + dbName + " -dbtype prot";
 		BasicTools.runCommand(cmd, false);
 		
-		database = path2BLAST + "db/" + dbName;
+		return path2BLAST + "db/" + dbName;
+	}
+	
+	/* (non-Javadoc)
+	 * @see features.FeatureExtractor#extractFeatures(features.FeatureDataset)
+	 */
+	public void extractFeatures(FeatureDataset dataset) {
+		
+		sequences = dataset.getSequences();
+		seq2label = dataset.getLabels();
+		database = dataset.getBlastDatabase(path2BLAST);
+		FeatureStore store = openFeatureStore(dataset.getFastaFile());
+		List<String> newSeqIDs = restoreFeatures(store);
+		
+		// PSI-BLAST is run only once per dataset and sequence for each kind of result
+		if (pssmFeat) {
+			synchronized (dataset.pssmLock) {
+				if (dataset.pssms == null) {
+					dataset.pssms = new HashMap<String, int[][]>();
+				}
+				pssms = dataset.pssms;
+				runPsiBlast(newSeqIDs);
+				pssms = getSubMap(dataset.pssms, newSeqIDs);
+			}
+		} else if (useHitMatrix()) {
+			synchronized (dataset.blastHitsLock) {
+				if (dataset.hitMatrix == null) {
+					dataset.hitMatrix = getHitMatrix();
+				}
+				hitMatrix = dataset.hitMatrix;
+			}
+			hits = hitMatrix.getHits(newSeqIDs, null);
+			
+		} else {
+			synchronized (dataset.blastHitsLock) {
+				if (dataset.blastHits == null) {
+					dataset.blastHits = new HashMap<String, Map<String, Double>>();
+				}
+				hits = dataset.blastHits;
+				runPsiBlast(newSeqIDs);
+				hits = getSubMap(dataset.blastHits, newSeqIDs);
+			}
+		}
+		computeFeaturesFromBlastResult();
+		storeFeatures(store, newSeqIDs);
+		writeFeatureFile();
+	}
+	
+	// results of the given sequences (shared maps are modified by other extractors)
+	private static <V> Map<String, V> getSubMap(Map<String, V> map, Collection<String> keys) {
+		
+		Map<String, V> subMap = new HashMap<String, V>();
+		for (String key: keys) {
+			if (map.containsKey(key)) {
+				subMap.put(key, map.get(key));
+			}
+		}
+		return subMap;
+	}
+	
+	
+	// PSSMs depend on the BLAST database (i.e., the training sequences), naive and percentile features are derived from the stored hits
+	private FeatureStore openFeatureStore(String databaseFastaFile) {
+		
+		if (featureStoreDir == null || !pssmFeat) {
+			return null;
+		}
+		String parameters = getClass().getName() + ";superPred=" + superPred + ";numIter=2";
+		dbVersion = FeatureStore.getDatabaseVersion(databaseFastaFile);
+		return new FeatureStore(featureStoreDir, "pssm", parameters, dbVersion);
+	}
+	
+	// binary PSSMs are cached per database version and sequence (null if no feature store is used)
+	private String getPssmCacheFile(String seqID) {
+		
+		if (featureStoreDir == null) {
+			return null;
+		}
+		File cacheDir = new File(featureStoreDir, "pssm_" + dbVersion);
+		cacheDir.mkdirs();
+		return new File(cacheDir, FeatureStore.getSequenceKey(sequences.get(seqID)) + ".bin").getPath();
+	}
+	
+	// PSSMs depend on the sequence only
+	private String getStoreKey(String seqID) {
+		return FeatureStore.getSequenceKey(sequences.get(seqID));
+	}
+	
+	// adds features of stored sequences and returns IDs of the sequences which have to be processed
+	private List<String> restoreFeatures(FeatureStore store) {
+		
+		List<String> newSeqIDs = new ArrayList<String>();
+		for (String seqID: sequences.keySet()) {
+			String key = (store == null) ? null : getStoreKey(seqID);
+			if (store == null || !store.contains(key)) {
+				newSeqIDs.add(seqID);
+				
+			} else if (store.get(key) != null) {
+				features.put(seqID, store.get(key));
+			}
+		}
+		if (store != null && !silent) {
+			System.out.println("Restored " + (sequences.size() - newSeqIDs.size()) + " feature vectors from store. Processing " + newSeqIDs.size() + " new sequences.");
+		}
+		return newSeqIDs;
+	}
+	
+	private void storeFeatures(FeatureStore store, List<String> newSeqIDs) {
+		
+		if (store == null) {
+			return;
+		}
+		for (String seqID: newSeqIDs) {
+			store.put(getStoreKey(seqID), features.get(seqID));
+		}
+		store.save();
+	}
+	
+	public String getFeatureFile() {
+		return featureFile;
 	}
 	
 	protected HashMap<String, Integer> getSeq2LabelMapWithShortenedIDs() {
@@ -128,7 +318,8 @@ public abstract class BLASTfeatureGenerator {
 	}
 	
 	
-	protected void runPsiBlast() {
+	// results are added to the maps of hits or PSSMs (sequences with existing results are skipped)
+	protected void runPsiBlast(Collection<String> seqIDs) {
 		
 		int numIter = 1;
 		if (pssmFeat) {
@@ -136,66 +327,282 @@ public abstract class BLASTfeatureGenerator {
 		}
 		
 		int seqCnt = 1;
-		for (String seqID: sequences.keySet()) {
-		
-			// prepare temporary files for PSI-BLAST output
-			String tempFilePrefix = "";
-			File localTempDir = new File(pathForTmpDir);
-
-			try {
-				if (localTempDir.exists()) {
-					tempFilePrefix = File.createTempFile("psiblast_", "", localTempDir).getAbsolutePath();
-				
-				// use system default directory for temporary files
-				} else {
-					tempFilePrefix = File.createTempFile("psiblast_", "").getAbsolutePath();
-				}
+		for (String seqID: seqIDs) {
+			if (pssmFeat ? pssms.containsKey(seqID) : hits.containsKey(seqID)) {
+				seqCnt++;
+				continue;
+			}
 			
-			} catch (IOException e) {
-				e.printStackTrace();
+			// run PSI-BLAST current sequence
+			if (!silent) System.out.println("Processing sequence: " + seqID + "\t(" + seqCnt++ + "/" + seqIDs.size() + ")");
+			
+			if (!pssmFeat) {
+				hits.put(seqID, getPsiBlastHits(seqID, numIter, ""));
+				continue;
 			}
+			
+			// use binary PSSM from previous run against the same database if available
+			String pssmCacheFile = getPssmCacheFile(seqID);
+			if (pssmCacheFile != null && new File(pssmCacheFile).exists()) {
+				pssms.put(seqID, readBinaryPSSM(pssmCacheFile));
+				continue;
+			}
+			
+			// prepare temporary files for PSI-BLAST output
+			String tempFilePrefix = writeQueryFile(seqID);
 			String infileFasta = tempFilePrefix + "_fasta.txt";
 			String outfileHits = tempFilePrefix + "_hits.txt";
 			String outfilePSSM = tempFilePrefix + "_pssm.txt";
+			int[][] currPSSM = getPsiBlastPSSM(infileFasta, database, outfileHits, outfilePSSM, numIter);
+			pssms.put(seqID, currPSSM);
+			if (pssmCacheFile != null) {
+				writeBinaryPSSM(currPSSM, pssmCacheFile);
+			}
+ 		}
+	}
+	
+	
+	// writes the sequence to a temporary FASTA file and returns the prefix of the temporary files
+	private String writeQueryFile(String seqID) {
+		
+		String tempFilePrefix = createTempFile("psiblast_", "");
+		BasicTools.writeFASTA(seqID, sequences.get(seqID), tempFilePrefix + "_fasta.txt");
+		
+		return tempFilePrefix;
+	}
+	
+	// returns the path of a new temporary file
+	private String createTempFile(String prefix, String suffix) {
+		
+		String tempFile = "";
+		File localTempDir = new File(pathForTmpDir);
+
+		try {
+			if (localTempDir.exists()) {
+				tempFile = File.createTempFile(prefix, suffix, localTempDir).getAbsolutePath();
 			
-			BasicTools.writeFASTA(seqID, sequences.get(seqID), infileFasta);
-			
-			// run PSI-BLAST current sequence
-			if (!silent) System.out.println("Processing sequence: " + seqID + "\t(" + seqCnt++ + "/" + sequences.size() + ")");
-			
-			String uniprotID = seqID.split("\\|")[TrainingDataGenerator.UniProtIDField];
-			if (pssmFeat) {
-				String pssmFile = localTempDir + "/psiblast_" + uniprotID + "_pssm.txt";
-				boolean pssmFileExists = false;
-				if (new File(pssmFile).exists()) {
-					outfilePSSM = pssmFile;
-					pssmFileExists = true;
-				} 
-				pssms.put(seqID, getPsiBlastPSSM(infileFasta, database, outfileHits, outfilePSSM, numIter, pssmFileExists).toArray(new int[][]{}));
-			
+			// use system default directory for temporary files
 			} else {
-				String hitsFile = localTempDir + "/psiblast_" + uniprotID + "_hits.txt";
-				boolean hitsFileExists = false;
-				if (new File(hitsFile).exists()) {
-					outfileHits = hitsFile;
-					hitsFileExists = true;
-				} 
-				hits.put(seqID, getPsiBlastHits(infileFasta, database, outfileHits, numIter, hitsFileExists));
+				tempFile = File.createTempFile(prefix, suffix).getAbsolutePath();
 			}
- 		}
+		
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return tempFile;
 	}
 	
 	
-	private Map<String, Double> getPsiBlastHits(String fastaFile, String database, String hitsOutfile, int numIter, boolean useExistingHitsFile) {	
+	// hits of a single sequence (bit scores)
+	private Map<String, Double> getPsiBlastHits(String seqID, int numIter, String options) {
 		
-		if (! useExistingHitsFile) {
-			String cmd = path2BLAST + "bin/psiblast -query " + fastaFile + " -num_iterations " + numIter + " -db " + database + " -out " + hitsOutfile;
-			BasicTools.runCommand(cmd, false);
+		Map<String, Double> currHits = new HashMap<String, Double>();
+		for (Map.Entry<String, double[]> hit: getPsiBlastHitTable(seqID, database, numIter, options).entrySet()) {
+			currHits.put(hit.getKey(), hit.getValue()[0]);
 		}
+		return currHits;
+	}
+	
+	// hits of a single sequence (bit score and E-value in the order of the report, options are appended to the PSI-BLAST command)
+	private Map<String, double[]> getPsiBlastHitTable(String seqID, String database, int numIter, String options) {
+		
+		String tempFilePrefix = writeQueryFile(seqID);
+		return getPsiBlastHitTable(tempFilePrefix + "_fasta.txt", database, tempFilePrefix + "_hits.txt", numIter, options);
+	}
+	
+	
+	/**
+	 * Adds the hits of the new sequences to the matrix. New sequences are searched against the
+	 * database of all sequences and the stored sequences against a database of the new sequences
+	 * only. All hits up to a permissive E-value are kept (see {@link BlastHitMatrix}), such that
+	 * hits of the sequences to the database or subsets of it (e.g., without the sequences of a
+	 * cross-validation fold) can be obtained from the resulting matrix.
+	 */
+	protected void updateHitMatrix(BlastHitMatrix matrix, List<String> newSeqIDs) {
+		
+		Set<String> newSeqIDset = new HashSet<String>(newSeqIDs);
+		List<String> storedSeqIDs = new ArrayList<String>();
+		Map<String, String> newSequences = new HashMap<String, String>();
+		long dbLength = 0;
+		long newSeqLength = 0;
+		for (String seqID: sequences.keySet()) {
+			dbLength += sequences.get(seqID).length();
+			if (newSeqIDset.contains(seqID)) {
+				newSequences.put(seqID, sequences.get(seqID));
+				newSeqLength += sequences.get(seqID).length();
+			} else {
+				storedSeqIDs.add(seqID);
+			}
+		}
+		matrix.addHits(newSeqIDs, runHitsJobs(newSeqIDs, database, sequences.size()), dbLength);
+		
+		if (!storedSeqIDs.isEmpty()) {
+			String newSeqFastaFile = createTempFile("blast_new_", ".fasta");
+			BasicTools.writeFASTA(newSequences, newSeqFastaFile);
+			String newSeqDatabase = createBlastDatabase(path2BLAST, newSeqFastaFile);
+			matrix.addHits(storedSeqIDs, runHitsJobs(storedSeqIDs, newSeqDatabase, newSequences.size()), newSeqLength);
+		}
+	}
+	
+	// runs PSI-BLAST for the sequences against the given database in parallel (hits in the order of the sequences)
+	private List<Map<String, double[]>> runHitsJobs(List<String> seqIDs, String database, int numTargets) {
+		
+		// split sequences into chunks which are processed in parallel
+		List<HitsJob> queue = new ArrayList<HitsJob>();
+		for (int start=0; start<seqIDs.size(); start+=hitsChunkSize) {
+			queue.add(new HitsJob(seqIDs.subList(start, Math.min(start+hitsChunkSize, seqIDs.size())), database, numTargets));
+		}
+		
+		ExecutorService exec = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		List<Future<List<Map<String, double[]>>>> results = null;
+		try {
+			results = exec.invokeAll(queue);
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+		}
+		exec.shutdown();
+		
+		// retrieve results
+		List<Map<String, double[]>> hitsPerQuery = new ArrayList<Map<String, double[]>>(seqIDs.size());
+		for (int i=0; i<queue.size(); i++) {
+			try {
+				hitsPerQuery.addAll(results.get(i).get());
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+			} catch (ExecutionException e) {
+				e.printStackTrace();
+			}
+		}
+		return hitsPerQuery;
+	}
+	
+	// job object: runs PSI-BLAST for a chunk of sequences
+	class HitsJob implements Callable<List<Map<String, double[]>>> {
+		
+		List<String> seqIDs;
+		String database;
+		int numTargets;
+		
+		public HitsJob(List<String> seqIDs, String database, int numTargets) {
+			this.seqIDs = seqIDs;
+			this.database = database;
+			this.numTargets = numTargets;
+		}
+		
+		@Override
+		public List<Map<String, double[]>> call() throws Exception {
+			
+			// hits are not limited by the default number of descriptions
+			String options = " -evalue " + BlastHitMatrix.permissiveEvalue + " -num_descriptions " + numTargets + " -num_alignments 0";
+			List<Map<String, double[]>> hitsPerQuery = new ArrayList<Map<String, double[]>>();
+			for (String seqID: seqIDs) {
+				hitsPerQuery.add(getPsiBlastHitTable(seqID, database, 1, options));
+			}
+			return hitsPerQuery;
+		}
+	}
+	
+	
+	// stored matrix is restricted to the current sequences and extended by the hits of new sequences
+	protected BlastHitMatrix getHitMatrix() {
+		
+		String matrixFile = getHitMatrixFile();
+		BlastHitMatrix matrix = null;
+		if (new File(matrixFile).exists()) {
+			matrix = BlastHitMatrix.read(matrixFile);
+		}
+		if (matrix == null) {
+			matrix = new BlastHitMatrix();
+		}
+		int numStoredSeqs = matrix.getNumSequences();
+		matrix.setDatabase(sequences);
+		
+		List<String> newSeqIDs = matrix.getNewSequences();
+		if (!newSeqIDs.isEmpty()) {
+			if (!silent) System.out.println("Computing BLAST hit matrix for " + newSeqIDs.size() + " new and " + (sequences.size() - newSeqIDs.size()) + " stored sequences.");
+			updateHitMatrix(matrix, newSeqIDs);
+		}
+		if (!newSeqIDs.isEmpty() || matrix.getNumSequences() < numStoredSeqs) {
+			matrix.write(matrixFile);
+		}
+		return matrix;
+	}
+	
+	
+	/**
+	 * Computes the features of all sequences from their hits to the sequences which are not contained
+	 * in the test set of a cross-validation fold (i.e., features of training and test sequences are
+	 * based on the training sequences only). Requires the hit matrix (see {@link #setHitMatrixFile}
+	 * or {@link #setFeatureStoreDir}).
+	 */
+	public Map<String, double[]> computeFoldExcludedFeatures(Collection<String> testSeqIDs) {
+		
+		if (sequences.isEmpty()) {
+			preparePsiBlast();
+		}
+		if (hitMatrix == null) {
+			hitMatrix = getHitMatrix();
+		}
+		hits = hitMatrix.getHits(sequences.keySet(), testSeqIDs);
+		features = new HashMap<String, double[]>();
+		computeFeaturesFromBlastResult();
+		
+		return features;
+	}
+	
+	/**
+	 * Writes the fold-excluded features of each fold of a cross-validation split saved by
+	 * {@link WekaLauncher} (e.g., "cvSplit.txt") to files named after the feature file
+	 * (see {@link WekaLauncher#getFoldFeatureFile}). Rows of the split refer to the given
+	 * feature file, whose sequence names are read from the names file (see writeFeatureFile).
+	 * 
+	 * The files of a fold contain one row per row of the split feature file in the same order
+	 * (identical feature vectors are not merged), hence they can be used with the rows of the
+	 * split (see {@link liblinear.WekaClassifier}). A row which names several sequences is represented by
+	 * the features of its first sequence, rows without hits have no features. Each line of the
+	 * names file of a fold starts with "test" or "train" followed by the names of the row.
+	 */
+	public void writeFoldExcludedFeatureFiles(String cvSplitFile, String splitFeatureFile, int folds) {
+		
+		int[][][] cvSplit = WekaLauncher.readCVSplit(cvSplitFile, folds);
+		List<String> rowNames = BasicTools.readFile2List(splitFeatureFile.replace(".txt", "_names.txt"), false);
+		for (int run=0; run<cvSplit.length; run++) {
+			for (int fold=0; fold<folds; fold++) {
+				boolean[] testRows = new boolean[rowNames.size()];
+				List<String> testSeqIDs = new ArrayList<String>();
+				for (int row: cvSplit[run][fold]) {
+					testRows[row] = true;
+					testSeqIDs.addAll(Arrays.asList(rowNames.get(row).split("\t")));
+				}
+				computeFoldExcludedFeatures(testSeqIDs);
+				writeFoldFeatureFile(rowNames, testRows, WekaLauncher.getFoldFeatureFile(featureFile, run, fold));
+			}
+		}
+	}
+	
+	// writes the features of a fold in the order of the rows (see writeFoldExcludedFeatureFiles)
+	private void writeFoldFeatureFile(List<String> rowNames, boolean[] testRows, String foldFeatureFile) {
+		
+		List<String> libSVMfeatures = new ArrayList<String>(rowNames.size());
+		List<String> namesList = new ArrayList<String>(rowNames.size());
+		for (int row=0; row<rowNames.size(); row++) {
+			String seqID = rowNames.get(row).split("\t")[0];
+			libSVMfeatures.add(getLibSVMRow(seq2label.get(seqID), features.get(seqID)));
+			namesList.add((testRows[row] ? "test" : "train") + "\t" + rowNames.get(row));
+		}
+		BasicTools.writeList2File(libSVMfeatures, foldFeatureFile);
+		BasicTools.writeList2File(namesList, foldFeatureFile.replace(".txt", "_names.txt"));
+	}
+	
+	
+	private Map<String, double[]> getPsiBlastHitTable(String fastaFile, String database, String hitsOutfile, int numIter, String options) {	
+		
+		String cmd = path2BLAST + "bin/psiblast -query " + fastaFile + " -num_iterations " + numIter + " -db " + database + " -out " + hitsOutfile + options;
+		BasicTools.runCommand(cmd, false);
 		
 		// read PSI-BLAST output from temporary files
 		List<String> hitsTable = BasicTools.readFile2List(hitsOutfile, false);
-		Map<String, Double> currHits = new HashMap<String, Double>();
+		Map<String, double[]> currHits = new LinkedHashMap<String, double[]>();
 		
 		int lineIdx = 0;
 		String line;
@@ -217,7 +624,8 @@ public abstract class BLASTfeatureGenerator {
 			String nextToken;
 			while ((nextToken = strtok.nextToken()).startsWith("GO:"));  // skip GO terms in non-TF headers
 			double hitScore = Double.parseDouble(nextToken); 
-			currHits.put(hitID, hitScore);
+			double hitEvalue = Double.parseDouble(strtok.nextToken());
+			currHits.put(hitID, new double[] {hitScore, hitEvalue});
 			lineIdx++;
 		}
 		return currHits;
@@ -225,44 +633,109 @@ public abstract class BLASTfeatureGenerator {
 	
 	
 
-	private List<int[]> getPsiBlastPSSM(String fastaFile, String database, String hitsOutfile, String pssmOutfile, int numIter, boolean useExistingPssmFile) {	
+	private int[][] getPsiBlastPSSM(String fastaFile, String database, String hitsOutfile, String pssmOutfile, int numIter) {	
 		
-		if (! useExistingPssmFile) {
-			String cmd = path2BLAST + "bin/psiblast -query " + fastaFile + " -num_iterations " + numIter + " -db " + database + " -out " + hitsOutfile + " -out_ascii_pssm " + pssmOutfile;
-			BasicTools.runCommand(cmd, false);
-		}
+		String cmd = path2BLAST + "bin/psiblast -query " + fastaFile + " -num_iterations " + numIter + " -db " + database + " -out " + hitsOutfile + " -out_ascii_pssm " + pssmOutfile;
+		BasicTools.runCommand(cmd, false);
 
 		// read PSI-BLAST output from temporary files
-		List<String[]> pssmTable = BasicTools.readFile2ListSplitLines(pssmOutfile, true);
+		return readAsciiPSSM(pssmOutfile);
+	}
+	
+	
+	/**
+	 * Reads the scores of a PSSM written by PSI-BLAST (option -out_ascii_pssm) line by line.
+	 * @return PSSM rows (i.e., sequence positions) with scores in the order of {@link #aminoAcids}
+	 */
+	protected static int[][] readAsciiPSSM(String pssmFile) {
+		
 		List<int[]> pssm = new ArrayList<int[]>();
-
-		for (int i=2; i<pssmTable.size(); i++) {
-
-			// skip short lines after PSSM 
-			if (pssmTable.get(i).length < 20) {
-				continue;
-			}
-
-			String[] line = pssmTable.get(i);
-			int[] PSSMrow = new int[20];
-			for (int j=2; j<22; j++) {
+		String line = null;
+		
+		try {
+			BufferedReader br = new BufferedReader(new FileReader(pssmFile));
+			
+			// first two non-blank lines contain the header
+			int lineCnt = 0;
+			while ((line = br.readLine()) != null) {
+				
+				// skip blank lines and header
+				if (line.trim().length() == 0 || lineCnt++ < 2) continue;
+				
+				StringTokenizer strtok = new StringTokenizer(line);
+				int numTokens = strtok.countTokens();
+				
+				// skip short lines after PSSM 
+				if (numTokens < 20) continue;
+				
+				String[] tokens = new String[numTokens];
+				for (int t=0; t<numTokens; t++) {
+					tokens[t] = strtok.nextToken();
+				}
 				
 				// line with missing blanks ?
-				if (line.length < 44) {
-					line = BasicTools.collapseStringArray(line, " ").replace("-", " -").replaceAll("\\s+", " ").split(" ");
+				if (numTokens < 44) {
+					tokens = BasicTools.collapseStringArray(tokens, " ").replace("-", " -").replaceAll("\\s+", " ").split(" ");
 				}
 				// check if line was fixed
-				if (line.length != 44) {
-					System.out.println("Error. PSSM line could not be parsed.\nLine: " + BasicTools.collapseStringArray(line, " "));
+				if (tokens.length != 44) {
+					System.out.println("Error. PSSM line could not be parsed.\nLine: " + BasicTools.collapseStringArray(tokens, " "));
 					System.exit(0);
 				}
-				PSSMrow[j-2] = Integer.parseInt(line[j]);
+				
+				int[] PSSMrow = new int[20];
+				for (int j=2; j<22; j++) {
+					PSSMrow[j-2] = Integer.parseInt(tokens[j]);
+				}
+				pssm.add(PSSMrow);
+			}
+			br.close();
+			
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return pssm.toArray(new int[][]{});
+	}
+	
+	
+	// binary format: number of rows followed by 20 scores per row
+	protected static int[][] readBinaryPSSM(String pssmFile) {
+		
+		int[][] pssm = null;
+		try {
+			DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(pssmFile)));
+			pssm = new int[dis.readInt()][20];
+			for (int i=0; i<pssm.length; i++) {
+				for (int j=0; j<20; j++) {
+					pssm[i][j] = dis.readShort();
+				}
 			}
-			pssm.add(PSSMrow);
+			dis.close();
+			
+		} catch (IOException e) {
+			e.printStackTrace();
 		}
 		return pssm;
 	}
 	
+	
+	protected static void writeBinaryPSSM(int[][] pssm, String pssmFile) {
+		
+		try {
+			DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(pssmFile)));
+			dos.writeInt(pssm.length);
+			for (int i=0; i<pssm.length; i++) {
+				for (int j=0; j<20; j++) {
+					dos.writeShort(pssm[i][j]);
+				}
+			}
+			dos.close();
+			
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+	
 	protected abstract void computeFeaturesFromBlastResult();
 	
 
@@ -271,27 +744,53 @@ public abstract class BLASTfeatureGenerator {
 	 */
 	protected void writeFeatureFile() {
 		List<String> libSVMfeatures = new ArrayList<String>();
-		List<String> sequenceNames = new ArrayList<String>();
+		List<StringBuffer> sequenceNames = new ArrayList<StringBuffer>();
+		Map<String, Integer> featVec2idx = new HashMap<String, Integer>();
+		BinaryFeatureFileWriter binaryWriter = null;
+		if (writeBinaryFile) {
+			binaryWriter = new BinaryFeatureFileWriter(!naiveFeat, false);
+		}
 		
 		for (String seqID: features.keySet()) {
 
 			double[] featureVector = features.get(seqID);
 			int label = seq2label.get(seqID);
-			StringBuffer featureString = new StringBuffer("" + label);
-			for (int i=0; i<featureVector.length; i++) {
-				if (!naiveFeat && featureVector[i] == 0) continue;     // skip features with value zero
-				featureString.append( " " + (i+1) + ":" + (featureVector[i] + "").replaceFirst("\\.0$", ""));
+			if (binaryWriter != null) {
+				binaryWriter.addDenseRow(label, featureVector, !naiveFeat, seqID);
 			}
+			String featureString = getLibSVMRow(label, featureVector);
 			
-			int featVecIdx = libSVMfeatures.indexOf(featureString.toString());
-			if (naiveFeat || featVecIdx == -1) {
-				libSVMfeatures.add(featureString.toString());
-				sequenceNames.add(seqID);
+			// identical feature vectors are written once (names of all sequences are saved)
+			Integer featVecIdx = naiveFeat ? null : featVec2idx.get(featureString);
+			if (featVecIdx == null) {
+				if (!naiveFeat) {
+					featVec2idx.put(featureString, libSVMfeatures.size());
+				}
+				libSVMfeatures.add(featureString);
+				sequenceNames.add(new StringBuffer(seqID));
 			} else {
-				sequenceNames.set(featVecIdx, sequenceNames.get(featVecIdx) + "\t" + seqID);
+				sequenceNames.get(featVecIdx).append('\t').append(seqID);
 			}
 		}
+		List<String> namesList = new ArrayList<String>(sequenceNames.size());
+		for (StringBuffer names: sequenceNames) {
+			namesList.add(names.toString());
+		}
 		BasicTools.writeList2File(libSVMfeatures, featureFile);
-		BasicTools.writeList2File(sequenceNames, featureFile.replace(".txt", "_names.txt"));
+		BasicTools.writeList2File(namesList, featureFile.replace(".txt", "_names.txt"));
+		if (binaryWriter != null) {
+			binaryWriter.write(BinaryFeatureFileWriter.getBinaryFileName(featureFile));
+		}
+	}
+	
+	// row of a LibSVM file (null --> no features)
+	private String getLibSVMRow(int label, double[] featureVector) {
+		
+		StringBuffer featureString = new StringBuffer("" + label);
+		for (int i=0; featureVector != null && i<featureVector.length; i++) {
+			if (!naiveFeat && featureVector[i] == 0) continue;     // skip features with value zero
+			featureString.append( " " + (i+1) + ":" + (featureVector[i] + "").replaceFirst("\\.0$", ""));
+		}
+		return featureString.toString();
 	}
 }
@@ -0,0 +1,429 @@
+/*
+ * $Id$
+ * $URL$
+ * This file is part of the program TFpredict. TFpredict performs the
+ * identification and structural characterization of transcription factors.
+ *
+ * Copyright (C) 2010-2014 Center for Bioinformatics Tuebingen (ZBIT),
+ * University of Tuebingen by Johannes Eichner, Florian Topf, Andreas Draeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package features;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Sparse all-vs-all matrix of PSI-BLAST hits of the training sequences (queries)
+ * against the database of the training sequences (targets), stored in compressed
+ * sparse rows. The hits are computed with a permissive E-value cutoff and without
+ * limiting the number of hits (see {@link #permissiveEvalue}). Each hit keeps the
+ * bit score, the E-value reported by PSI-BLAST and the size of the searched database.
+ *
+ * Sequences are identified by the hash of their ID and sequence (see
+ * {@link FeatureStore#getSequenceKey(String, String)}), hence a stored matrix is
+ * extended when sequences are added to the training set: only the new sequences
+ * are searched against all sequences, and the stored sequences are searched against
+ * a database of the new sequences (see {@link BLASTfeatureGenerator#updateHitMatrix}).
+ * Sequences which were removed from the training set are removed from the matrix.
+ *
+ * Bit scores do not depend on the size of the database, but E-values are
+ * proportional to it. Hits of the current database (see {@link #setDatabase}) or of
+ * subsets of it (e.g., without the test sequences of a cross-validation fold) are
+ * selected with the default cutoffs of PSI-BLAST after the reported E-values are
+ * scaled to the residues of the (sub)set, which neglects the changed length
+ * adjustment of BLAST. Hits of sequences which were searched against the whole
+ * current database are thus equal to the hits of single PSI-BLAST runs with default
+ * options (see {@link BLASTfeatureGenerator#runPsiBlast}), all other hits
+ * approximate them.
+ *
+ * @author Johannes Eichner
+ * @version $Rev$
+ * @since 1.0
+ */
+public class BlastHitMatrix {
+
+	private static final int MAGIC = 0x5446484D;  // "TFHM"
+	private static final int VERSION = 4;
+
+	// E-value cutoff used to compute the matrix (covers subsets with at least 10% of the residues)
+	public static final double permissiveEvalue = 100;
+
+	// defaults of PSI-BLAST (options -evalue and -num_descriptions)
+	private static final double evalueCutoff = 10;
+	private static final int maxHits = 500;
+
+	// stored sequences
+	private List<String> keys = new ArrayList<String>();
+	private Map<String, Integer> key2idx = new HashMap<String, Integer>();
+
+	// residues of the searched databases
+	private List<Long> searchLengths = new ArrayList<Long>();
+
+	// hits of each sequence in the order of their E-values relative to the searched database
+	private int[] rowPtr = new int[1];
+	private int[] targets = new int[0];
+	private double[] scores = new double[0];
+	private double[] evalues = new double[0];
+	private int[] searches = new int[0];
+
+	// current database (sequence ID --> sequence), lengths and BLAST IDs of the stored sequences (null if not in the database)
+	private Map<String, String> database = new HashMap<String, String>();
+	private Map<String, Integer> seqID2idx = new HashMap<String, Integer>();
+	private int[] lengths = new int[0];
+	private String[] blastIDs = new String[0];
+	private long dbLength;
+
+
+	// hit of a sequence while rows are modified
+	private static class Hit {
+
+		int target;
+		double score;
+		double evalue;
+		int search;
+
+		Hit(int target, double score, double evalue, int search) {
+			this.target = target;
+			this.score = score;
+			this.evalue = evalue;
+			this.search = search;
+		}
+	}
+
+
+	/**
+	 * Sets the current database and removes all sequences which are not contained in it.
+	 *
+	 * @param database  sequence ID --> sequence
+	 */
+	public void setDatabase(Map<String, String> database) {
+
+		this.database = database;
+		List<List<Hit>> rows = getRows();
+		List<String> retainedKeys = new ArrayList<String>();
+		List<List<Hit>> retainedRows = new ArrayList<List<Hit>>();
+		int[] idxMap = new int[keys.size()];
+		Set<String> currKeys = new HashSet<String>();
+		for (Map.Entry<String, String> seq: database.entrySet()) {
+			currKeys.add(FeatureStore.getSequenceKey(seq.getKey(), seq.getValue()));
+		}
+		for (int i=0; i<keys.size(); i++) {
+			idxMap[i] = -1;
+			if (currKeys.contains(keys.get(i))) {
+				idxMap[i] = retainedKeys.size();
+				retainedKeys.add(keys.get(i));
+				retainedRows.add(rows.get(i));
+			}
+		}
+		if (retainedKeys.size() < keys.size()) {
+			for (List<Hit> row: retainedRows) {
+				List<Hit> retainedHits = new ArrayList<Hit>(row.size());
+				for (Hit hit: row) {
+					if (idxMap[hit.target] != -1) {
+						hit.target = idxMap[hit.target];
+						retainedHits.add(hit);
+					}
+				}
+				row.clear();
+				row.addAll(retainedHits);
+			}
+		}
+		setRows(retainedKeys, retainedRows);
+	}
+
+	// IDs of the sequences of the current database which are not stored
+	public List<String> getNewSequences() {
+
+		List<String> newSeqIDs = new ArrayList<String>();
+		for (String seqID: database.keySet()) {
+			if (!seqID2idx.containsKey(seqID)) {
+				newSeqIDs.add(seqID);
+			}
+		}
+		return newSeqIDs;
+	}
+
+	public int getNumSequences() {
+		return keys.size();
+	}
+
+	public int getNumHits() {
+		return rowPtr[keys.size()];
+	}
+
+
+	/**
+	 * Adds the hits of a search of sequences of the current database against the current
+	 * database or a part of it. Sequences which are not stored yet are added.
+	 *
+	 * @param querySeqIDs   IDs of the searched sequences
+	 * @param hitsPerQuery  hits (BLAST ID of the target --> bit score and E-value) of the sequences in the same order
+	 * @param searchLength  residues of the searched database
+	 */
+	public void addHits(List<String> querySeqIDs, List<Map<String, double[]>> hitsPerQuery, long searchLength) {
+
+		List<List<Hit>> rows = getRows();
+		List<String> newKeys = new ArrayList<String>(keys);
+		Map<String, Integer> newKey2idx = new HashMap<String, Integer>(key2idx);
+		for (String seqID: database.keySet()) {
+			String key = FeatureStore.getSequenceKey(seqID, database.get(seqID));
+			if (!newKey2idx.containsKey(key)) {
+				newKey2idx.put(key, newKeys.size());
+				newKeys.add(key);
+				rows.add(new ArrayList<Hit>());
+			}
+		}
+
+		// targets are reported by BLAST with the first word of the sequence ID
+		Map<String, Integer> blastID2idx = new HashMap<String, Integer>();
+		for (String seqID: database.keySet()) {
+			blastID2idx.put(seqID.split(" ")[0], newKey2idx.get(FeatureStore.getSequenceKey(seqID, database.get(seqID))));
+		}
+
+		int search = searchLengths.size();
+		searchLengths.add(searchLength);
+		for (int i=0; i<querySeqIDs.size(); i++) {
+			String seqID = querySeqIDs.get(i);
+			List<Hit> row = rows.get(newKey2idx.get(FeatureStore.getSequenceKey(seqID, database.get(seqID))));
+			for (Map.Entry<String, double[]> hit: hitsPerQuery.get(i).entrySet()) {
+				Integer target = blastID2idx.get(hit.getKey());
+				if (target == null) {
+					System.out.println("Warning. BLAST hit is not contained in the database: " + hit.getKey());
+					continue;
+				}
+				row.add(new Hit(target, hit.getValue()[0], hit.getValue()[1], search));
+			}
+			sortHits(row);
+		}
+		setRows(newKeys, rows);
+	}
+
+	// hits are sorted by their E-values relative to the size of the searched database (hits of a search keep their order)
+	private void sortHits(List<Hit> row) {
+
+		Collections.sort(row, new Comparator<Hit>() {
+			public int compare(Hit hit1, Hit hit2) {
+				return Double.compare(hit1.evalue / searchLengths.get(hit1.search), hit2.evalue / searchLengths.get(hit2.search));
+			}
+		});
+	}
+
+	private List<List<Hit>> getRows() {
+
+		List<List<Hit>> rows = new ArrayList<List<Hit>>(keys.size());
+		for (int i=0; i<keys.size(); i++) {
+			List<Hit> row = new ArrayList<Hit>(rowPtr[i+1] - rowPtr[i]);
+			for (int k=rowPtr[i]; k<rowPtr[i+1]; k++) {
+				row.add(new Hit(targets[k], scores[k], evalues[k], searches[k]));
+			}
+			rows.add(row);
+		}
+		return rows;
+	}
+
+	private void setRows(List<String> newKeys, List<List<Hit>> rows) {
+
+		keys = newKeys;
+		key2idx = new HashMap<String, Integer>();
+		for (int i=0; i<keys.size(); i++) {
+			key2idx.put(keys.get(i), i);
+		}
+
+		int numHits = 0;
+		for (List<Hit> row: rows) {
+			numHits += row.size();
+		}
+		rowPtr = new int[keys.size() + 1];
+		targets = new int[numHits];
+		scores = new double[numHits];
+		evalues = new double[numHits];
+		searches = new int[numHits];
+		int pos = 0;
+		for (int i=0; i<keys.size(); i++) {
+			for (Hit hit: rows.get(i)) {
+				targets[pos] = hit.target;
+				scores[pos] = hit.score;
+				evalues[pos] = hit.evalue;
+				searches[pos++] = hit.search;
+			}
+			rowPtr[i+1] = pos;
+		}
+		setDatabaseIndex();
+	}
+
+	// maps the sequences of the current database to the stored sequences
+	private void setDatabaseIndex() {
+
+		lengths = new int[keys.size()];
+		blastIDs = new String[keys.size()];
+		seqID2idx = new HashMap<String, Integer>();
+		dbLength = 0;
+		for (Map.Entry<String, String> seq: database.entrySet()) {
+			dbLength += seq.getValue().length();
+			Integer idx = key2idx.get(FeatureStore.getSequenceKey(seq.getKey(), seq.getValue()));
+			if (idx != null) {
+				seqID2idx.put(seq.getKey(), idx);
+				lengths[idx] = seq.getValue().length();
+				blastIDs[idx] = seq.getKey().split(" ")[0];
+			}
+		}
+	}
+
+
+	// hits of all sequences of the current database
+	public Map<String, Map<String, Double>> getHits() {
+		return getHits(database.keySet(), null);
+	}
+
+	/**
+	 * Hits of the given sequences to the current database without the excluded sequences.
+	 * Hits are filtered by the E-value cutoff for the size of the reduced database and the
+	 * first {@link #maxHits} hits are kept. Targets are named by the first word of their
+	 * sequence ID (i.e., the ID used by BLAST).
+	 */
+	public Map<String, Map<String, Double>> getHits(Collection<String> seqIDs, Collection<String> excludedSeqIDs) {
+
+		boolean[] excluded = new boolean[keys.size()];
+		long subsetLength = dbLength;
+		if (excludedSeqIDs != null) {
+			for (String seqID: excludedSeqIDs) {
+				Integer idx = seqID2idx.get(seqID);
+				if (idx != null && !excluded[idx]) {
+					excluded[idx] = true;
+					subsetLength -= lengths[idx];
+				}
+			}
+		}
+
+		Map<String, Map<String, Double>> hits = new HashMap<String, Map<String, Double>>();
+		for (String seqID: seqIDs) {
+			Integer row = seqID2idx.get(seqID);
+			if (row == null) continue;
+
+			Map<String, Double> currHits = new HashMap<String, Double>();
+			for (int k=rowPtr[row]; k<rowPtr[row+1] && currHits.size() < maxHits; k++) {
+				if (blastIDs[targets[k]] == null || excluded[targets[k]]) continue;
+
+				// E-values are proportional to the number of residues in the database
+				double evalue = evalues[k] * ((double) subsetLength / searchLengths.get(searches[k]));
+				if (evalue > evalueCutoff) continue;
+				currHits.put(blastIDs[targets[k]], scores[k]);
+			}
+			hits.put(seqID, currHits);
+		}
+		return hits;
+	}
+
+
+	// binary format: header, keys of the sequences, residues of the searched databases, row pointers and hits
+	public void write(String matrixFile) {
+
+		try {
+			DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(matrixFile), 1 << 16));
+			dos.writeInt(MAGIC);
+			dos.writeInt(VERSION);
+			dos.writeInt(keys.size());
+			for (String key: keys) {
+				dos.writeUTF(key);
+			}
+			dos.writeInt(searchLengths.size());
+			for (long searchLength: searchLengths) {
+				dos.writeLong(searchLength);
+			}
+			for (int i=0; i<=keys.size(); i++) {
+				dos.writeInt(rowPtr[i]);
+			}
+			for (int k=0; k<getNumHits(); k++) {
+				dos.writeInt(targets[k]);
+				dos.writeDouble(scores[k]);
+				dos.writeDouble(evalues[k]);
+				dos.writeInt(searches[k]);
+			}
+			dos.close();
+
+		} catch (IOException ioe) {
+			System.out.println(ioe.getMessage());
+			System.out.println("IOException occurred while writing BLAST hit matrix: " + matrixFile);
+		}
+	}
+
+
+	// returns null if the file could not be read
+	public static BlastHitMatrix read(String matrixFile) {
+
+		BlastHitMatrix matrix = new BlastHitMatrix();
+		try {
+			DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(matrixFile), 1 << 16));
+			try {
+				if (dis.readInt() != MAGIC) {
+					System.out.println("Warning. Invalid BLAST hit matrix: " + matrixFile);
+					return null;
+				}
+				// matrices of previous versions are recomputed
+				if (dis.readInt() != VERSION) {
+					return null;
+				}
+				int numKeys = dis.readInt();
+				for (int i=0; i<numKeys; i++) {
+					String key = dis.readUTF();
+					matrix.key2idx.put(key, i);
+					matrix.keys.add(key);
+				}
+				int numSearches = dis.readInt();
+				for (int i=0; i<numSearches; i++) {
+					matrix.searchLengths.add(dis.readLong());
+				}
+				matrix.rowPtr = new int[numKeys + 1];
+				for (int i=0; i<=numKeys; i++) {
+					matrix.rowPtr[i] = dis.readInt();
+				}
+				int numHits = matrix.rowPtr[numKeys];
+				matrix.targets = new int[numHits];
+				matrix.scores = new double[numHits];
+				matrix.evalues = new double[numHits];
+				matrix.searches = new int[numHits];
+				for (int k=0; k<numHits; k++) {
+					matrix.targets[k] = dis.readInt();
+					matrix.scores[k] = dis.readDouble();
+					matrix.evalues[k] = dis.readDouble();
+					matrix.searches[k] = dis.readInt();
+				}
+			} finally {
+				dis.close();
+			}
+
+		} catch (IOException ioe) {
+			System.out.println(ioe.getMessage());
+			System.out.println("Warning. BLAST hit matrix could not be read: " + matrixFile);
+			return null;
+		}
+		return matrix;
+	}
+}
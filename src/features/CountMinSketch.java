@@ -0,0 +1,89 @@
+/*
+ * $Id$
+ * $URL$
+ * This file is part of the program TFpredict. TFpredict performs the
+ * identification and structural characterization of transcription factors.
+ *
+ * Copyright (C) 2010-2014 Center for Bioinformatics Tuebingen (ZBIT),
+ * University of Tuebingen by Johannes Eichner, Florian Topf, Andreas Draeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package features;
+
+/**
+ * Count-min sketch for approximate frequencies of integer codes (e.g., k-mer codes)
+ * in constant memory (depth x width counters). Estimated frequencies are never
+ * lower than the true frequencies, i.e., frequent codes are never missed.
+ *
+ * @author Johannes Eichner
+ * @version $Rev$
+ * @since 1.0
+ */
+public class CountMinSketch {
+
+	private int depth;
+	private int widthMask;
+	private int[][] counters;
+	private long[] seeds;
+
+	/**
+	 * @param depth   number of hash functions
+	 * @param width   number of counters per hash function (rounded up to a power of 2)
+	 */
+	public CountMinSketch(int depth, int width) {
+
+		int powerOfTwo = 1;
+		while (powerOfTwo < width) {
+			powerOfTwo <<= 1;
+		}
+		this.depth = depth;
+		this.widthMask = powerOfTwo - 1;
+		this.counters = new int[depth][powerOfTwo];
+		this.seeds = new long[depth];
+		for (int i=0; i<depth; i++) {
+			seeds[i] = mix(0x9E3779B97F4A7C15L * (i+1));
+		}
+	}
+
+
+	public void add(long code) {
+
+		for (int i=0; i<depth; i++) {
+			counters[i][(int) mix(code ^ seeds[i]) & widthMask]++;
+		}
+	}
+
+
+	public int estimate(long code) {
+
+		int min = Integer.MAX_VALUE;
+		for (int i=0; i<depth; i++) {
+			min = Math.min(min, counters[i][(int) mix(code ^ seeds[i]) & widthMask]);
+		}
+		return min;
+	}
+
+
+	// 64-bit finalizer of MurmurHash3
+	static long mix(long value) {
+
+		value ^= value >>> 33;
+		value *= 0xFF51AFD7ED558CCDL;
+		value ^= value >>> 33;
+		value *= 0xC4CEB93FE1A85EC9L;
+		value ^= value >>> 33;
+		return value;
+	}
+}
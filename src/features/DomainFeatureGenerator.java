@@ -24,6 +24,7 @@ package features;
 
 import io.BasicTools;
 import io.FTPsupport;
+import ipr.DomainDictionary;
 import ipr.IprEntry;
 
 import java.util.ArrayList;
@@ -43,7 +44,7 @@ import data.TrainingDataGenerator;
  * @version $Rev$
  * @since 1.0
  */
-public abstract class DomainFeatureGenerator {
+public abstract class DomainFeatureGenerator implements FeatureExtractor {
 	
 	protected static final String domainDescriptionURL = "ftp://ftp.ebi.ac.uk/pub/databases/interpro/names.dat";
 	protected static final String relevantDomainsFile = "relevant_domains.txt";
@@ -51,10 +52,28 @@ public abstract class DomainFeatureGenerator {
 	protected String iprscanResultFileTF = "";
 	protected String libsvmOutfile = ""; 
 	protected boolean silent = false;
+	protected boolean writeBinaryFile = false;
 	protected String basedir = "";
 	protected List<String> relevantDomainIDs = new ArrayList<String>();
 	protected Map<String, IprEntry> seq2domain = new HashMap<String, IprEntry>();
 	
+	public abstract void writeFeatureFile();
+	
+	/* (non-Javadoc)
+	 * @see features.FeatureExtractor#extractFeatures(features.FeatureDataset)
+	 */
+	public void extractFeatures(FeatureDataset dataset) {
+		writeFeatureFile();
+	}
+	
+	public String getFeatureFile() {
+		return libsvmOutfile;
+	}
+	
+	public void setWriteBinaryFile(boolean writeBinaryFile) {
+		this.writeBinaryFile = writeBinaryFile;
+	}
+	
 	protected static List<String> filterCurrentDomainsInSet(Set<String> domainSet, List<String> currentDomains) {
 		List<String> domainsList = new ArrayList<String>();
 		domainsList.addAll(domainSet);
@@ -65,8 +84,9 @@ public abstract class DomainFeatureGenerator {
 	
 	protected static Map<String, List<String>> filterCurrentDomainsInDom2SeqMap(Map<String, List<String>> domain2seq, List<String> currDomains) {
 	    
+		DomainDictionary currDomainDict = new DomainDictionary(currDomains);
 		for (String domain: domain2seq.keySet().toArray(new String[]{})) {
-	    	if (!currDomains.contains(domain)) {
+	    	if (!currDomainDict.contains(domain)) {
 	    		domain2seq.remove(domain);
 	    	}
 	    }
@@ -75,11 +95,12 @@ public abstract class DomainFeatureGenerator {
 	
 	protected void filterCurrentDomainsInSeq2DomMap() {
 		
+		DomainDictionary relevantDomainDict = new DomainDictionary(relevantDomainIDs);
 		for (String seq: seq2domain.keySet().toArray(new String[]{})) {
 
 			IprEntry currEntry = seq2domain.get(seq);
 			for (int r=currEntry.domain_ids.size()-1; r>=0; r--) {
-				if (!relevantDomainIDs.contains(currEntry.domain_ids.get(r))) {
+				if (!relevantDomainDict.contains(currEntry.domain_ids.get(r))) {
 					currEntry.domain_ids.remove(r);
 				} 
 			}
@@ -0,0 +1,91 @@
+/*
+ * $Id$
+ * $URL$
+ * This file is part of the program TFpredict. TFpredict performs the
+ * identification and structural characterization of transcription factors.
+ *
+ * Copyright (C) 2010-2014 Center for Bioinformatics Tuebingen (ZBIT),
+ * University of Tuebingen by Johannes Eichner, Florian Topf, Andreas Draeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package features;
+
+import io.BasicTools;
+
+import java.util.Map;
+
+/**
+ * Sequences and labels of a training set which are parsed once and shared by
+ * all {@link FeatureExtractor}s. The BLAST database and the results of PSI-BLAST
+ * are created by the first BLAST-based extractor and reused by the others
+ * (i.e., naive and percentile features use the same hits).
+ *
+ * @author Johannes Eichner
+ * @version $Rev$
+ * @since 1.0
+ */
+public class FeatureDataset {
+
+	private String fastaFile;
+	private boolean superPred;
+
+	private Map<String, String> sequences;
+	private Map<String, Integer> seq2label;
+
+	private String blastDatabase = null;
+
+	// shared results of PSI-BLAST (guarded by the corresponding lock, hit matrix by blastHitsLock)
+	Map<String, Map<String, Double>> blastHits = null;
+	Map<String, int[][]> pssms = null;
+	BlastHitMatrix hitMatrix = null;
+	final Object blastHitsLock = new Object();
+	final Object pssmLock = new Object();
+
+	public FeatureDataset(String fastaFile, boolean superPred) {
+
+		this.fastaFile = fastaFile;
+		this.superPred = superPred;
+
+		// read sequences and labels
+		sequences = BasicTools.readFASTA(fastaFile, true);
+		seq2label = DomainFeatureGenerator.getLabelsFromFastaHeaders(sequences.keySet(), superPred, false);
+	}
+
+
+	public String getFastaFile() {
+		return fastaFile;
+	}
+
+	public boolean isSuperPred() {
+		return superPred;
+	}
+
+	public Map<String, String> getSequences() {
+		return sequences;
+	}
+
+	public Map<String, Integer> getLabels() {
+		return seq2label;
+	}
+
+	// database is created on the first call
+	public synchronized String getBlastDatabase(String path2BLAST) {
+
+		if (blastDatabase == null) {
+			blastDatabase = BLASTfeatureGenerator.createBlastDatabase(path2BLAST, fastaFile);
+		}
+		return blastDatabase;
+	}
+}
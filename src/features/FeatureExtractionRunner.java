@@ -0,0 +1,109 @@
+/*
+ * $Id$
+ * $URL$
+ * This file is part of the program TFpredict. TFpredict performs the
+ * identification and structural characterization of transcription factors.
+ *
+ * Copyright (C) 2010-2014 Center for Bioinformatics Tuebingen (ZBIT),
+ * University of Tuebingen by Johannes Eichner, Florian Topf, Andreas Draeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package features;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Runs several {@link FeatureExtractor}s concurrently on a fork/join pool.
+ * The FASTA file is parsed once and the resulting {@link FeatureDataset} is
+ * shared by all extractors.
+ *
+ * @author Johannes Eichner
+ * @version $Rev$
+ * @since 1.0
+ */
+public class FeatureExtractionRunner {
+
+	private FeatureDataset dataset;
+	private List<FeatureExtractor> extractors = new ArrayList<FeatureExtractor>();
+
+	public FeatureExtractionRunner(String fastaFile, boolean superPred) {
+		this(new FeatureDataset(fastaFile, superPred));
+	}
+
+	public FeatureExtractionRunner(FeatureDataset dataset) {
+		this.dataset = dataset;
+	}
+
+
+	public void addExtractor(FeatureExtractor extractor) {
+		extractors.add(extractor);
+	}
+
+	public FeatureDataset getDataset() {
+		return dataset;
+	}
+
+
+	public void run() {
+
+		List<Job> queue = new ArrayList<Job>();
+		for (FeatureExtractor extractor: extractors) {
+			queue.add(new Job(extractor));
+		}
+
+		// process queue
+		ForkJoinPool pool = new ForkJoinPool(Math.min(Math.max(1, queue.size()), Runtime.getRuntime().availableProcessors()));
+		List<Future<String>> results = null;
+		try {
+			results = pool.invokeAll(queue);
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+		pool.shutdown();
+
+		// retrieve results
+		for (Future<String> res : results) {
+			try {
+				System.out.println("Feature file written: " + res.get());
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+			} catch (ExecutionException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	// job object: runs a single feature extractor
+	class Job implements Callable<String> {
+
+		FeatureExtractor extractor;
+
+		public Job(FeatureExtractor extractor) {
+			this.extractor = extractor;
+		}
+
+		@Override
+		public String call() throws Exception {
+
+			extractor.extractFeatures(dataset);
+			return extractor.getFeatureFile();
+		}
+	}
+}
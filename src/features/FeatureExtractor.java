@@ -0,0 +1,48 @@
+/*
+ * $Id$
+ * $URL$
+ * This file is part of the program TFpredict. TFpredict performs the
+ * identification and structural characterization of transcription factors.
+ *
+ * Copyright (C) 2010-2014 Center for Bioinformatics Tuebingen (ZBIT),
+ * University of Tuebingen by Johannes Eichner, Florian Topf, Andreas Draeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package features;
+
+/**
+ * Common interface of the feature generators which can be run on a shared
+ * {@link FeatureDataset} by the {@link FeatureExtractionRunner}.
+ *
+ * @author Johannes Eichner
+ * @version $Rev$
+ * @since 1.0
+ */
+public interface FeatureExtractor {
+
+	/**
+	 * Computes the features of all sequences in the dataset and writes the feature file.
+	 * Implementations must not modify the sequences or labels of the dataset.
+	 */
+	public void extractFeatures(FeatureDataset dataset);
+
+	public String getFeatureFile();
+
+	/**
+	 * If set, the features are additionally written in binary format
+	 * (see {@link io.BinaryFeatureFileWriter#getBinaryFileName}).
+	 */
+	public void setWriteBinaryFile(boolean writeBinaryFile);
+}
@@ -24,6 +24,9 @@ package features;
 
 import io.BasicTools;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * 
  * @author Johannes Eichner
@@ -34,6 +37,15 @@ public class FeatureGenerator {
 
 	private static int kMin = 2;
 	private static int kMax = 2;
+	private static int minNumOcc = 1;
+	private static int numHashedFeatures = 0;  // feature hashing is used for large k (e.g., k = 4-6)
+	private static boolean writeBinaryFeatureFiles = false;  // binary feature files are read without text parsing
+	private static String featureStoreDir = null;  // stored PSI-BLAST hits, PSSM and pseudo amino acid features are reused if set
+	private static boolean useHitMatrix = false;  // naive and percentile features are derived from all-vs-all BLAST hits
+	private static final String hitMatrixFileName = "blast_hit_matrix.bin";
+	private static String cvSplitFile = null;  // fold-excluded naive and percentile features are written for each fold of the saved split (requires hit matrix or feature store)
+	private static String cvSplitFeatureFile = null;  // feature file which the rows of the split refer to
+	private static int cvSplitFolds = 4;
 	
 	private enum FeatureType {
 		
@@ -59,6 +71,7 @@ public class FeatureGenerator {
 		
 		String featureFile = featureDir + FeatureType.domain.featureFileName;
 		TFpredDomainFeatureGenerator featureGenerator = new TFpredDomainFeatureGenerator(interproResultFileTF, interproResultFileNonTF, featureFile);
+		featureGenerator.setWriteBinaryFile(writeBinaryFeatureFiles);
 		featureGenerator.writeFeatureFile();
 	}
 	
@@ -66,6 +79,7 @@ public class FeatureGenerator {
 		
 		String featureFile = featureDir + FeatureType.domain.featureFileName;
 		SuperPredDomainFeatureGenerator featureGenerator = new SuperPredDomainFeatureGenerator(fastaFile, interproResultFile, featureFile);
+		featureGenerator.setWriteBinaryFile(writeBinaryFeatureFiles);
 		featureGenerator.writeFeatureFile();	
 	}
 	
@@ -84,6 +98,9 @@ public class FeatureGenerator {
 	private static void generateKmerFeatures(String fastaFile, String featureDir, boolean superPred) {
 		String featureFile = featureDir + FeatureType.kmer.featureFileName;
 		KmerFeatureGenerator featureGenerator = new KmerFeatureGenerator(fastaFile, featureFile, superPred, kMin, kMax);
+		featureGenerator.setMinNumOcc(minNumOcc);
+		featureGenerator.setNumHashedFeatures(numHashedFeatures);
+		featureGenerator.setWriteBinaryFile(writeBinaryFeatureFiles);
 		featureGenerator.generateKmerFeatures();
 	}
 	
@@ -102,6 +119,8 @@ public class FeatureGenerator {
 	private static void generatePseudoAAcFeatures(String fastaFile, String featureDir, boolean superPred) {
 		String featureFile = featureDir + FeatureType.pseudo.featureFileName;
 		PseudoAAcFeatureGenerator featureGenerator = new PseudoAAcFeatureGenerator(fastaFile, featureFile, superPred);
+		featureGenerator.setFeatureStoreDir(featureStoreDir);
+		featureGenerator.setWriteBinaryFile(writeBinaryFeatureFiles);
 		featureGenerator.generatePseudoAAcFeatures();
 	}
 	
@@ -120,6 +139,8 @@ public class FeatureGenerator {
 	private static void generatePssmFeatures(String fastaFile, String featureDir, boolean superPred) {
 		String featureFile = featureDir + FeatureType.pssm.featureFileName;
 		PSSMFeatureGenerator featureGenerator = new PSSMFeatureGenerator(fastaFile, featureFile, superPred);
+		featureGenerator.setFeatureStoreDir(featureStoreDir);
+		featureGenerator.setWriteBinaryFile(writeBinaryFeatureFiles);
 		featureGenerator.generateFeatures();
 	}
 	
@@ -138,7 +159,11 @@ public class FeatureGenerator {
 	private static void generateNaiveFeatures(String fastaFile, String featureDir, boolean superPred) {
 		String featureFile = featureDir + FeatureType.naive.featureFileName;
 		NaiveFeatureGenerator featureGenerator = new NaiveFeatureGenerator(fastaFile, featureFile, superPred);
+		featureGenerator.setFeatureStoreDir(featureStoreDir);
+		if (useHitMatrix) featureGenerator.setHitMatrixFile(featureDir + hitMatrixFileName);
+		featureGenerator.setWriteBinaryFile(writeBinaryFeatureFiles);
 		featureGenerator.generateFeatures();
+		writeFoldExcludedFeatureFiles(featureGenerator);
 	}
 	
 	/*
@@ -156,7 +181,88 @@ public class FeatureGenerator {
 	private static void generatePercentileFeatures(String fastaFile, String featureDir, boolean superPred) {
 		String featureFile = featureDir + FeatureType.percentile.featureFileName;
 		PercentileFeatureGenerator featureGenerator = new PercentileFeatureGenerator(fastaFile, featureFile, superPred);
+		featureGenerator.setFeatureStoreDir(featureStoreDir);
+		if (useHitMatrix) featureGenerator.setHitMatrixFile(featureDir + hitMatrixFileName);
+		featureGenerator.setWriteBinaryFile(writeBinaryFeatureFiles);
 		featureGenerator.generateFeatures();
+		writeFoldExcludedFeatureFiles(featureGenerator);
+	}
+	
+	
+	// features of the folds are derived from the hit matrix without running BLAST again
+	private static void writeFoldExcludedFeatureFiles(BLASTfeatureGenerator featureGenerator) {
+		if ((useHitMatrix || featureStoreDir != null) && cvSplitFile != null) {
+			featureGenerator.writeFoldExcludedFeatureFiles(cvSplitFile, cvSplitFeatureFile, cvSplitFolds);
+		}
+	}
+	
+	
+	/*
+	 *  Multiple feature types at once (FASTA file is parsed once and BLAST results are shared)
+	 */
+	
+	private static void generateFeaturesTFpred(String fastaFile, String interproResultFileTF, String interproResultFileNonTF, String featureDir, FeatureType... featureTypes) {
+		generateFeatures(fastaFile, new String[] {interproResultFileTF, interproResultFileNonTF}, featureDir, false, featureTypes);
+	}
+	
+	private static void generateFeaturesSuperPred(String fastaFile, String interproResultFile, String featureDir, FeatureType... featureTypes) {
+		generateFeatures(fastaFile, new String[] {interproResultFile}, featureDir, true, featureTypes);
+	}
+	
+	private static void generateFeatures(String fastaFile, String[] interproResultFiles, String featureDir, boolean superPred, FeatureType... featureTypes) {
+		
+		FeatureExtractionRunner runner = new FeatureExtractionRunner(fastaFile, superPred);
+		List<BLASTfeatureGenerator> hitGenerators = new ArrayList<BLASTfeatureGenerator>();
+		for (FeatureType featureType: featureTypes) {
+			String featureFile = featureDir + featureType.featureFileName;
+			
+			FeatureExtractor extractor = null;
+			switch (featureType) {
+			case domain:
+				if (superPred) {
+					extractor = new SuperPredDomainFeatureGenerator(fastaFile, interproResultFiles[0], featureFile);
+				} else {
+					extractor = new TFpredDomainFeatureGenerator(interproResultFiles[0], interproResultFiles[1], featureFile);
+				}
+				break;
+			case kmer:
+				KmerFeatureGenerator kmerGenerator = new KmerFeatureGenerator(fastaFile, featureFile, superPred, kMin, kMax);
+				kmerGenerator.setMinNumOcc(minNumOcc);
+				kmerGenerator.setNumHashedFeatures(numHashedFeatures);
+				extractor = kmerGenerator;
+				break;
+			case naive:
+				NaiveFeatureGenerator naiveGenerator = new NaiveFeatureGenerator(fastaFile, featureFile, superPred);
+				naiveGenerator.setFeatureStoreDir(featureStoreDir);
+				if (useHitMatrix) naiveGenerator.setHitMatrixFile(featureDir + hitMatrixFileName);
+				hitGenerators.add(naiveGenerator);
+				extractor = naiveGenerator;
+				break;
+			case percentile:
+				PercentileFeatureGenerator percentileGenerator = new PercentileFeatureGenerator(fastaFile, featureFile, superPred);
+				percentileGenerator.setFeatureStoreDir(featureStoreDir);
+				if (useHitMatrix) percentileGenerator.setHitMatrixFile(featureDir + hitMatrixFileName);
+				hitGenerators.add(percentileGenerator);
+				extractor = percentileGenerator;
+				break;
+			case pssm:
+				PSSMFeatureGenerator pssmGenerator = new PSSMFeatureGenerator(fastaFile, featureFile, superPred);
+				pssmGenerator.setFeatureStoreDir(featureStoreDir);
+				extractor = pssmGenerator;
+				break;
+			case pseudo:
+				PseudoAAcFeatureGenerator pseudoGenerator = new PseudoAAcFeatureGenerator(fastaFile, featureFile, superPred);
+				pseudoGenerator.setFeatureStoreDir(featureStoreDir);
+				extractor = pseudoGenerator;
+				break;
+			}
+			extractor.setWriteBinaryFile(writeBinaryFeatureFiles);
+			runner.addExtractor(extractor);
+		}
+		runner.run();
+		for (BLASTfeatureGenerator hitGenerator: hitGenerators) {
+			writeFoldExcludedFeatureFiles(hitGenerator);
+		}
 	}
 	
 	
@@ -203,5 +309,9 @@ public class FeatureGenerator {
 		// generate percentile features
 		generatePercentileFeaturesTFpred(fastaFileTFnonTF, tfFeatureDir);
 		//generatePercentileFeaturesSuperPred(fastaFileTF, superFeatureDir);
+		
+		// generate all features in parallel
+		//generateFeaturesTFpred(fastaFileTFnonTF, interproResultFileTF, interproResultFileNonTF, tfFeatureDir, FeatureType.values());
+		//generateFeaturesSuperPred(fastaFileTF, interproResultFileTF, superFeatureDir, FeatureType.values());
 	}
 }
@@ -0,0 +1,248 @@
+/*
+ * $Id$
+ * $URL$
+ * This file is part of the program TFpredict. TFpredict performs the
+ * identification and structural characterization of transcription factors.
+ *
+ * Copyright (C) 2010-2014 Center for Bioinformatics Tuebingen (ZBIT),
+ * University of Tuebingen by Johannes Eichner, Florian Topf, Andreas Draeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package features;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Persistent store of feature vectors, which allows to compute features only for
+ * new or changed sequences when a training set is extended.
+ *
+ * A store file holds the feature vectors of one feature type computed with the
+ * given parameters. Rows are keyed by the hash of the sequence (see
+ * {@link #getSequenceKey}). Features which depend on a reference database (e.g.,
+ * PSSMs of PSI-BLAST against the training sequences) are only valid for a specific
+ * version of the database, hence all rows are discarded if the database version
+ * differs from the version saved in the store. Hits of PSI-BLAST are stored per
+ * pair of sequences instead, which does not depend on the database version (see
+ * {@link BlastHitMatrix}).
+ *
+ * @author Johannes Eichner
+ * @version $Rev$
+ * @since 1.0
+ */
+public class FeatureStore {
+
+	private static final int MAGIC = 0x54465053;  // "TFPS"
+	private static final int VERSION = 1;
+
+	private String storeFile;
+	private String featureType;
+	private String parameters;
+	private String dbVersion;
+
+	// null --> no features could be computed for the sequence (e.g., no BLAST hits)
+	private Map<String, double[]> key2features = new HashMap<String, double[]>();
+	private boolean modified = false;
+
+	/**
+	 * @param storeDir      directory of the store files
+	 * @param featureType   e.g., "percentile"
+	 * @param parameters    all parameters which affect the feature vectors
+	 * @param dbVersion     version of the reference database ("" if features do not depend on a database)
+	 */
+	public FeatureStore(String storeDir, String featureType, String parameters, String dbVersion) {
+
+		this.featureType = featureType;
+		this.parameters = parameters;
+		this.dbVersion = dbVersion;
+		this.storeFile = new File(storeDir, featureType + "_" + hash(parameters).substring(0, 16) + ".store").getPath();
+		new File(storeDir).mkdirs();
+		load();
+	}
+
+
+	// reads the stored rows if the store is valid for the current database
+	private void load() {
+
+		if (!new File(storeFile).exists()) return;
+
+		try {
+			DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(storeFile)));
+			try {
+				if (dis.readInt() != MAGIC || dis.readInt() != VERSION) {
+					System.out.println("Warning. Ignored invalid feature store: " + storeFile);
+					return;
+				}
+				if (!dis.readUTF().equals(featureType) || !dis.readUTF().equals(parameters)) return;
+				if (!dis.readUTF().equals(dbVersion)) {
+					System.out.println("Database changed. Discarded stored " + featureType + " features.");
+					modified = true;
+					return;
+				}
+				int numRows = dis.readInt();
+				for (int i=0; i<numRows; i++) {
+					String key = dis.readUTF();
+					int length = dis.readInt();
+					double[] featureVector = null;
+					if (length >= 0) {
+						featureVector = new double[length];
+						for (int j=0; j<length; j++) {
+							featureVector[j] = dis.readDouble();
+						}
+					}
+					key2features.put(key, featureVector);
+				}
+			} finally {
+				dis.close();
+			}
+
+		} catch (IOException ioe) {
+			System.out.println(ioe.getMessage());
+			System.out.println("Warning. Feature store could not be read: " + storeFile);
+			key2features.clear();
+		}
+	}
+
+
+	// writes all rows to a temporary file which replaces the store file
+	public synchronized void save() {
+
+		if (!modified) return;
+
+		File tempFile = new File(storeFile + ".tmp");
+		try {
+			DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile), 1 << 16));
+			dos.writeInt(MAGIC);
+			dos.writeInt(VERSION);
+			dos.writeUTF(featureType);
+			dos.writeUTF(parameters);
+			dos.writeUTF(dbVersion);
+			dos.writeInt(key2features.size());
+			for (Map.Entry<String, double[]> row: key2features.entrySet()) {
+				dos.writeUTF(row.getKey());
+				double[] featureVector = row.getValue();
+				if (featureVector == null) {
+					dos.writeInt(-1);
+					continue;
+				}
+				dos.writeInt(featureVector.length);
+				for (double value: featureVector) {
+					dos.writeDouble(value);
+				}
+			}
+			dos.close();
+
+			File file = new File(storeFile);
+			if (file.exists() && !file.delete() || !tempFile.renameTo(file)) {
+				throw new IOException("Store file could not be replaced: " + storeFile);
+			}
+			modified = false;
+
+		} catch (IOException ioe) {
+			System.out.println(ioe.getMessage());
+			System.out.println("IOException occurred while writing feature store: " + storeFile);
+		}
+	}
+
+
+	public synchronized boolean contains(String key) {
+		return key2features.containsKey(key);
+	}
+
+	// returns null if no features were found for the sequence
+	public synchronized double[] get(String key) {
+		return key2features.get(key);
+	}
+
+	public synchronized void put(String key, double[] featureVector) {
+		key2features.put(key, featureVector);
+		modified = true;
+	}
+
+	public synchronized int size() {
+		return key2features.size();
+	}
+
+
+	public static String getSequenceKey(String sequence) {
+		return hash(sequence);
+	}
+
+	// features which exclude the sequence itself from the database (e.g., BLAST hits) also depend on its ID
+	public static String getSequenceKey(String seqID, String sequence) {
+		return hash(seqID + "\n" + sequence);
+	}
+
+
+	// version of a database is the hash of its FASTA file
+	public static String getDatabaseVersion(String fastaFile) {
+
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			InputStream is = new BufferedInputStream(new FileInputStream(fastaFile));
+			byte[] buffer = new byte[1 << 16];
+			int numBytes;
+			while ((numBytes = is.read(buffer)) != -1) {
+				digest.update(buffer, 0, numBytes);
+			}
+			is.close();
+			return toHex(digest.digest());
+
+		} catch (IOException ioe) {
+			System.out.println(ioe.getMessage());
+			System.out.println("Error. Database version could not be determined: " + fastaFile);
+			System.exit(1);
+
+		} catch (NoSuchAlgorithmException e) {
+			e.printStackTrace();
+		}
+		return null;
+	}
+
+
+	private static String hash(String text) {
+
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			return toHex(digest.digest(text.getBytes("UTF-8")));
+
+		} catch (NoSuchAlgorithmException e) {
+			e.printStackTrace();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return null;
+	}
+
+	private static String toHex(byte[] bytes) {
+
+		StringBuffer hex = new StringBuffer();
+		for (byte b: bytes) {
+			hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return hex.toString();
+	}
+}
@@ -33,15 +33,15 @@ package features;
  * in one of the cells.
  *
  * It uses an array of factorials initialized at the beginning to provide speed.
- * There could be better ways to do this.
+ * The array is not modified afterwards, hence one instance can be shared by multiple threads.
  *
  * @author Ed Buckler
  * @version $Rev$
  */
 public class FisherExact {
     private static final boolean DEBUG = false;
-    private double[] f;
-    int maxSize;
+    private final double[] f;
+    final int maxSize;
 
 
     /**
@@ -23,7 +23,7 @@
 package features;
 
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
@@ -33,9 +33,14 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
 import org.apache.commons.math.MathException;
-import org.apache.commons.math.stat.inference.TestUtils;
+import org.apache.commons.math.stat.inference.ChiSquareTest;
+import org.apache.commons.math.stat.inference.ChiSquareTestImpl;
 
 /**
+ * Tests the enrichment of InterPro domains in TFs compared to non-TFs using
+ * the chi-square test (or Fisher's exact test for small expected counts).
+ * All tests share a single table of log-factorials and are processed in
+ * chunks of domains in parallel.
  * 
  * @author Florian Topf
  * @version $Rev$
@@ -43,6 +48,9 @@ import org.apache.commons.math.stat.inference.TestUtils;
  */
 public class FourFieldTest {
 	
+	// number of domains tested by a single job
+	private static final int chunkSize = 1000;
+	
 	List<String> iprs_fft = new ArrayList<String>();
 	List<Double> pvalues = new ArrayList<Double>();
 	
@@ -116,24 +124,14 @@ public class FourFieldTest {
 		// calculate number of unique TFs per ipr
 		private int summon(List<String> iprs, Map<String, List<String>> ipr2ids) {
 			
-			List<String> ids = new ArrayList<String>();
+			HashSet<String> ids = new HashSet<String>();
 			
 			for (int i = 0; i < iprs.size(); i++) {
 				
-				String curr_ipr = iprs.get(i);
+				List<String> curr_ids = ipr2ids.get(iprs.get(i));
 				
-				if (ipr2ids.containsKey(curr_ipr)) {
-					
-					List<String> curr_ids = ipr2ids.get(curr_ipr);
-					
-					for (int j = 0; j < curr_ids.size(); j++) {
-						
-						String tmp_id = curr_ids.get(j);
-						
-						if (!ids.contains(tmp_id)) {
-							ids.add(tmp_id);
-						}
-					}
+				if (curr_ids != null) {
+					ids.addAll(curr_ids);
 				}
 			}
 			return ids.size();
@@ -141,7 +139,8 @@ public class FourFieldTest {
 	}
 
 	
-	private Double computeM(int num_tfs_ipr, int sum_tf, int num_nontfs_ipr, int sum_nontf) {
+	// Fisher's exact test uses the shared table of log-factorials, the chi-square test is not thread-safe (i.e., one instance per thread)
+	private static double computeM(int num_tfs_ipr, int sum_tf, int num_nontfs_ipr, int sum_nontf, FisherExact fisherExact, ChiSquareTest chiSquareTest) {
 		
 		// a (tf, ipr)
 		int a = num_tfs_ipr;
@@ -168,13 +167,12 @@ public class FourFieldTest {
 		boolean useChi = checkmatrix(matrix);
 		
 		if (!useChi) {
-			FisherExact fisherExact = new FisherExact(a+b+c+d+10);
 			pvalue = fisherExact.getTwoTailedP(a, b, c, d);
 		}
 		else {
 			try {
 				
-				pvalue = TestUtils.chiSquareTest(conv2long(matrix));
+				pvalue = chiSquareTest.chiSquareTest(conv2long(matrix));
 			} catch (IllegalArgumentException e) {
 				e.printStackTrace();
 			} catch (MathException e) {
@@ -186,7 +184,7 @@ public class FourFieldTest {
 	
 	
 	// converts double[][] to long[][]
-	private long[][] conv2long(double[][] matrix) {
+	private static long[][] conv2long(double[][] matrix) {
 		int rowSize = matrix.length;
 	    int columnSize = matrix[0].length;
 		long[][] mn = new long[rowSize][columnSize];
@@ -201,7 +199,7 @@ public class FourFieldTest {
 
 	// function to test if exact fisher test should be uses or not
 	// fisher exact should be used with evalue (testA-D) below 5
-	private boolean checkmatrix(double[][] matrix) {
+	private static boolean checkmatrix(double[][] matrix) {
 		
 		boolean useChi = false;
 		
@@ -227,38 +225,48 @@ public class FourFieldTest {
 			Map<String, List<String>> iprTF2ids, int sum_tf,
 			Map<String, List<String>> iprNONTF2ids, int sum_nontf) {
 		
-		Collection<Job> queue = new ArrayList<Job>();
-		
 		System.out.println("Building queue ...");
 		
-		// build queue
+		// collect counts of domains found in at least one sequence
+		List<String> testedIprs = new ArrayList<String>();
+		int[] num_tfs = new int[iprs.size()];
+		int[] num_nontfs = new int[iprs.size()];
 		for (int i = 0; i < iprs.size(); i++) {
 			
 			String curr_ipr = iprs.get(i);
 			int num_tfs_ipr = 0; 
 			int num_nontfs_ipr = 0;
 			
-			if (iprTF2ids.containsKey(curr_ipr)) {
-				num_tfs_ipr = iprTF2ids.get(curr_ipr).size();
+			List<String> tf_ids = iprTF2ids.get(curr_ipr);
+			if (tf_ids != null) {
+				num_tfs_ipr = tf_ids.size();
 			}
-			if (iprNONTF2ids.containsKey(curr_ipr)) {
-				num_nontfs_ipr = iprNONTF2ids.get(curr_ipr).size();
+			List<String> nontf_ids = iprNONTF2ids.get(curr_ipr);
+			if (nontf_ids != null) {
+				num_nontfs_ipr = nontf_ids.size();
 			}
 			
 			if (num_tfs_ipr > 0 || num_nontfs_ipr > 0) {
-				
-				// add job to queue
-				queue.add(new Job(curr_ipr, num_tfs_ipr, sum_tf, num_nontfs_ipr, sum_nontf));
-				
+				num_tfs[testedIprs.size()] = num_tfs_ipr;
+				num_nontfs[testedIprs.size()] = num_nontfs_ipr;
+				testedIprs.add(curr_ipr);
 			}
 		}
 		
+		// sum of all four fields is equal for all domains, hence a single table of log-factorials is used
+		FisherExact fisherExact = new FisherExact(sum_tf + sum_nontf + 10);
+		
+		// build queue
+		List<Job> queue = new ArrayList<Job>();
+		for (int start = 0; start < testedIprs.size(); start += chunkSize) {
+			queue.add(new Job(start, Math.min(start + chunkSize, testedIprs.size()), num_tfs, sum_tf, num_nontfs, sum_nontf, fisherExact));
+		}
+		
 		System.out.println("Processing queue ...");
 		
 		// process queue
-		//ExecutorService exec = Executors.newCachedThreadPool();
 		ExecutorService exec = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
-		List<Future<Result>> results = null;
+		List<Future<double[]>> results = null;
 		try {
 			results = exec.invokeAll(queue);
 		} catch (InterruptedException e) {
@@ -267,60 +275,52 @@ public class FourFieldTest {
 		exec.shutdown();
 		
 		// retrieve results
-		for (Future<Result> res : results) {
-			Result current = null;
+		for (int i = 0; i < queue.size(); i++) {
+			double[] currPvalues = null;
 			try {
-				current = res.get();
+				currPvalues = results.get(i).get();
 			} catch (InterruptedException e) {
 				e.printStackTrace();
 			} catch (ExecutionException e) {
 				e.printStackTrace();
 			}
-			iprs_fft.add(current.ipr);
-			pvalues.add(current.pvalue);
+			for (int j = 0; j < currPvalues.length; j++) {
+				iprs_fft.add(testedIprs.get(queue.get(i).start + j));
+				pvalues.add(currPvalues[j]);
+			}
 		}
-		
 	}
 	
-	//job object: does the FFT
-	class Job implements Callable<Result>{
+	//job object: does the FFT for a chunk of domains
+	static class Job implements Callable<double[]> {
 		
-		String ipr;
-		int num_tfs_ipr;
+		int start;
+		int end;
+		int[] num_tfs;
 		int sum_tf;
-		int num_nontfs_ipr;
+		int[] num_nontfs;
 		int sum_nontf;
+		FisherExact fisherExact;
 		
-		public Job(String ipr, int num_tfs_ipr, int sum_tf, int num_nontfs_ipr, int sum_nontf) {
-			this.ipr = ipr;
-			this.num_tfs_ipr = num_tfs_ipr;
+		public Job(int start, int end, int[] num_tfs, int sum_tf, int[] num_nontfs, int sum_nontf, FisherExact fisherExact) {
+			this.start = start;
+			this.end = end;
+			this.num_tfs = num_tfs;
 			this.sum_tf = sum_tf;
-			this.num_nontfs_ipr = num_nontfs_ipr;
+			this.num_nontfs = num_nontfs;
 			this.sum_nontf = sum_nontf;
+			this.fisherExact = fisherExact;
 		}
 
 		@Override
-		public Result call() throws Exception {
+		public double[] call() throws Exception {
 
-			double pvalue = computeM(num_tfs_ipr, sum_tf, num_nontfs_ipr, sum_nontf);	
-			return new Result(ipr, pvalue);
-		}
-		
-	}
-
-	//result object: holds ipr and its pvalue
-	class Result {
-		
-		String ipr;
-		double pvalue;
-		
-		public Result(String ipr, double pvalue) {
-			this.ipr = ipr;
-			this.pvalue = pvalue;
+			ChiSquareTest chiSquareTest = new ChiSquareTestImpl();
+			double[] pvalues = new double[end - start];
+			for (int i = start; i < end; i++) {
+				pvalues[i - start] = computeM(num_tfs[i], sum_tf, num_nontfs[i], sum_nontf, fisherExact, chiSquareTest);
+			}
+			return pvalues;
 		}
-		
 	}
-
-
 }
-
@@ -0,0 +1,363 @@
+/*
+ * $Id$
+ * $URL$
+ * This file is part of the program TFpredict. TFpredict performs the
+ * identification and structural characterization of transcription factors.
+ *
+ * Copyright (C) 2010-2014 Center for Bioinformatics Tuebingen (ZBIT),
+ * University of Tuebingen by Johannes Eichner, Florian Topf, Andreas Draeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package features;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.TreeSet;
+
+/**
+ * Counts k-mers of protein sequences on integer codes instead of substrings.
+ *
+ * Residues are mapped to digits 1..n in alphabetical order (n = number of distinct
+ * residues in the sequences, i.e., 20 for the standard amino acids) and each k-mer
+ * is packed into a long by a rolling hash in base n+1. Codes of k-mers shorter than
+ * kMax are padded with the digit 0, hence numerical order of the codes is equal to
+ * the lexicographic order of the k-mers (e.g., "AA" < "AAC" < "AC").
+ *
+ * The feature index of a k-mer is its rank among all k-mers observed in the training
+ * sequences. It is read from a dense array indexed by the code if the code space is
+ * small (e.g., 21^3 codes for k=3), and obtained by binary search otherwise.
+ *
+ * @author Johannes Eichner
+ * @version $Rev$
+ * @since 1.0
+ */
+public class KmerCounter {
+
+	// maximum size of the dense code --> feature index table
+	private static final int MAX_DENSE_SIZE = 1 << 22;
+
+	private int kMin;
+	private int kMax;
+	private int base;
+	private char[] alphabet;
+	private int[] char2digit;
+	private long[] digitWeights;
+
+	private long[] featureCodes = null;
+	private int[] code2feature = null;
+	
+	// codes of frequent k-mers collected in the second pass of the sketch-based filter
+	private long[] candidateCodes = null;
+	private int numCandidates = 0;
+
+
+	/**
+	 * Profile of a sequence, i.e., codes of the contained k-mers (sorted) and their counts.
+	 */
+	public static class KmerProfile {
+
+		public long[] codes;
+		public int[] counts;
+
+		public KmerProfile(long[] codes, int[] counts) {
+			this.codes = codes;
+			this.counts = counts;
+		}
+
+		public int size() {
+			return codes.length;
+		}
+	}
+
+
+	public KmerCounter(Collection<String> sequences, int kMin, int kMax) {
+
+		this.kMin = kMin;
+		this.kMax = kMax;
+
+		// alphabet consists of all residues found in the sequences
+		TreeSet<Character> residues = new TreeSet<Character>();
+		for (String sequence: sequences) {
+			for (int i=0; i<sequence.length(); i++) {
+				residues.add(sequence.charAt(i));
+			}
+		}
+		alphabet = new char[residues.size()];
+		char2digit = new int[residues.isEmpty() ? 0 : residues.last() + 1];
+		int digit = 0;
+		for (char residue: residues) {
+			alphabet[digit++] = residue;
+			char2digit[residue] = digit;
+		}
+		base = alphabet.length + 1;
+
+		// weight of the last digit of a k-mer of length k (i.e., base^(kMax-k))
+		digitWeights = new long[kMax+1];
+		long weight = 1;
+		for (int k=kMax; k>=1; k--) {
+			digitWeights[k] = weight;
+			if (weight > Long.MAX_VALUE / base) {
+				throw new IllegalArgumentException("k-mers of length " + kMax + " cannot be encoded for an alphabet of " + alphabet.length + " residues.");
+			}
+			weight *= base;
+		}
+	}
+
+
+	public int getNumResidues() {
+		return alphabet.length;
+	}
+
+
+	/**
+	 * Counts all k-mers (kMin <= k <= kMax) of the sequence.
+	 * Residues which were not contained in the sequences used to create the counter are skipped,
+	 * i.e., k-mers spanning such residues are not counted.
+	 */
+	public KmerProfile count(String sequence) {
+
+		int seqLength = sequence.length();
+		int[] digits = new int[seqLength];
+		for (int i=0; i<seqLength; i++) {
+			char residue = sequence.charAt(i);
+			digits[i] = (residue < char2digit.length) ? char2digit[residue] : 0;
+		}
+
+		int numKmers = 0;
+		for (int k=kMin; k<=kMax; k++) {
+			numKmers += Math.max(0, seqLength - k + 1);
+		}
+		long[] codes = new long[numKmers];
+		int numCodes = 0;
+
+		for (int k=kMin; k<=kMax; k++) {
+			long modulus = digitWeights[1] / digitWeights[k];  // base^(k-1)
+			long code = 0;
+			int validLength = 0;
+			for (int i=0; i<seqLength; i++) {
+				if (digits[i] == 0) {
+					validLength = 0;
+					code = 0;
+					continue;
+				}
+				// rolling hash: drop first residue of previous window and append current residue
+				code = (code % modulus) * base + digits[i];
+				if (++validLength >= k) {
+					codes[numCodes++] = code * digitWeights[k];
+				}
+			}
+		}
+
+		// count occurrences of identical codes
+		Arrays.sort(codes, 0, numCodes);
+		int numDistinct = 0;
+		for (int i=0; i<numCodes; i++) {
+			if (i == 0 || codes[i] != codes[i-1]) numDistinct++;
+		}
+		long[] distinctCodes = new long[numDistinct];
+		int[] counts = new int[numDistinct];
+		int idx = -1;
+		for (int i=0; i<numCodes; i++) {
+			if (i == 0 || codes[i] != codes[i-1]) {
+				distinctCodes[++idx] = codes[i];
+			}
+			counts[idx]++;
+		}
+		return new KmerProfile(distinctCodes, counts);
+	}
+
+
+	/**
+	 * Sets the k-mers used as features (i.e., all k-mers contained in at least minNumOcc of the profiles).
+	 * @return number of features
+	 */
+	public int createFeatureIndex(Collection<KmerProfile> profiles, int minNumOcc) {
+
+		int numCodes = 0;
+		for (KmerProfile profile: profiles) {
+			numCodes += profile.size();
+		}
+		long[] allCodes = new long[numCodes];
+		int pos = 0;
+		for (KmerProfile profile: profiles) {
+			System.arraycopy(profile.codes, 0, allCodes, pos, profile.size());
+			pos += profile.size();
+		}
+		Arrays.sort(allCodes);
+
+		// number of profiles containing the k-mer is the length of the run of its code
+		long[] selectedCodes = new long[numCodes];
+		int numSelected = 0;
+		int runStart = 0;
+		for (int i=1; i<=numCodes; i++) {
+			if (i == numCodes || allCodes[i] != allCodes[runStart]) {
+				if (i - runStart >= minNumOcc) {
+					selectedCodes[numSelected++] = allCodes[runStart];
+				}
+				runStart = i;
+			}
+		}
+		setFeatureCodes(Arrays.copyOf(selectedCodes, numSelected));
+		return featureCodes.length;
+	}
+
+
+	/**
+	 * Adds the k-mers of the profile which occur in at least minNumOcc profiles according to the
+	 * sketch (see {@link #addToSketch}) to the features. Memory is bounded by the number of frequent
+	 * k-mers instead of the number of all k-mers. Due to the overestimation of the sketch, a few
+	 * rare k-mers may be kept. The feature index is available after {@link #finishFeatureIndex}.
+	 */
+	public void addFeatureCodes(KmerProfile profile, CountMinSketch sketch, int minNumOcc) {
+
+		if (candidateCodes == null) {
+			candidateCodes = new long[1024];
+		}
+		for (long code: profile.codes) {
+			if (sketch.estimate(code) < minNumOcc) continue;
+
+			if (numCandidates == candidateCodes.length) {
+				// remove duplicates before the buffer is enlarged
+				numCandidates = sortUnique(candidateCodes, numCandidates);
+				if (numCandidates > candidateCodes.length / 2) {
+					candidateCodes = Arrays.copyOf(candidateCodes, candidateCodes.length * 2);
+				}
+			}
+			candidateCodes[numCandidates++] = code;
+		}
+	}
+
+
+	// returns the number of features
+	public int finishFeatureIndex() {
+
+		if (candidateCodes == null) {
+			candidateCodes = new long[0];
+		}
+		numCandidates = sortUnique(candidateCodes, numCandidates);
+		setFeatureCodes(Arrays.copyOf(candidateCodes, numCandidates));
+		candidateCodes = null;
+		numCandidates = 0;
+		return featureCodes.length;
+	}
+
+
+	// document frequencies, i.e., each k-mer is counted once per profile
+	public static void addToSketch(KmerProfile profile, CountMinSketch sketch) {
+
+		for (long code: profile.codes) {
+			sketch.add(code);
+		}
+	}
+
+
+	// sorts the first n codes and removes duplicates (returns number of distinct codes)
+	private static int sortUnique(long[] codes, int n) {
+
+		Arrays.sort(codes, 0, n);
+		int numDistinct = 0;
+		for (int i=0; i<n; i++) {
+			if (i == 0 || codes[i] != codes[numDistinct-1]) {
+				codes[numDistinct++] = codes[i];
+			}
+		}
+		return numDistinct;
+	}
+
+
+	private void setFeatureCodes(long[] sortedCodes) {
+
+		featureCodes = sortedCodes;
+
+		// dense lookup table if all codes fit
+		code2feature = null;
+		long codeSpace = digitWeights[1] * base;
+		if (codeSpace <= MAX_DENSE_SIZE) {
+			code2feature = new int[(int) codeSpace];
+			Arrays.fill(code2feature, -1);
+			for (int i=0; i<featureCodes.length; i++) {
+				code2feature[(int) featureCodes[i]] = i;
+			}
+		}
+	}
+
+
+	// returns -1 if the k-mer is not used as feature
+	public int getFeatureIndex(long code) {
+
+		if (code2feature != null) {
+			return code2feature[(int) code];
+		}
+		int idx = Arrays.binarySearch(featureCodes, code);
+		return (idx < 0) ? -1 : idx;
+	}
+
+
+	public int getNumFeatures() {
+		return featureCodes.length;
+	}
+
+
+	/**
+	 * Feature hashing: maps a k-mer code to one of numFeatures indices without a vocabulary.
+	 * Counts of k-mers mapped to the same index are summed up (see {@link #getHashedFeatures}).
+	 */
+	public static int getHashedFeatureIndex(long code, int numFeatures) {
+
+		long hash = CountMinSketch.mix(code) >>> 1;
+		return (int) (hash % numFeatures);
+	}
+
+
+	/**
+	 * @return hashed feature indices (sorted) in the first row and summed counts in the second row
+	 */
+	public static int[][] getHashedFeatures(KmerProfile profile, int numFeatures) {
+
+		// pack index and position into one long to sort indices together with the counts
+		long[] idx2pos = new long[profile.size()];
+		for (int i=0; i<profile.size(); i++) {
+			idx2pos[i] = ((long) getHashedFeatureIndex(profile.codes[i], numFeatures) << 32) | i;
+		}
+		Arrays.sort(idx2pos);
+
+		int[] indices = new int[idx2pos.length];
+		int[] counts = new int[idx2pos.length];
+		int numIndices = 0;
+		for (int i=0; i<idx2pos.length; i++) {
+			int idx = (int) (idx2pos[i] >>> 32);
+			int count = profile.counts[(int) idx2pos[i]];
+			if (numIndices > 0 && indices[numIndices-1] == idx) {
+				counts[numIndices-1] += count;
+			} else {
+				indices[numIndices] = idx;
+				counts[numIndices++] = count;
+			}
+		}
+		return new int[][] {Arrays.copyOf(indices, numIndices), Arrays.copyOf(counts, numIndices)};
+	}
+
+
+	public String decode(long code) {
+
+		StringBuffer kmer = new StringBuffer();
+		for (int k=1; k<=kMax; k++) {
+			int digit = (int) ((code / digitWeights[k]) % base);
+			if (digit == 0) break;
+			kmer.append(alphabet[digit-1]);
+		}
+		return kmer.toString();
+	}
+}
@@ -22,13 +22,13 @@
  */
 package features;
 
+import features.KmerCounter.KmerProfile;
 import io.BasicTools;
+import io.BinaryFeatureFileWriter;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 
@@ -38,7 +38,7 @@ import java.util.Map;
  * @version $Rev$
  * @since 1.0
  */
-public class KmerFeatureGenerator {
+public class KmerFeatureGenerator implements FeatureExtractor {
 	
 	private static boolean silent = false;
 	
@@ -48,12 +48,21 @@ public class KmerFeatureGenerator {
 	private int kMin = 2;
 	private int kMax = 2;
 	private int minNumOcc = 1;
+	private boolean writeBinaryFile = false;
+	
+	// feature hashing (0 --> one feature per k-mer)
+	private int numHashedFeatures = 0;
+	
+	// size of the count-min sketch used to filter rare k-mers (i.e., if minNumOcc > 1)
+	private int sketchDepth = 4;
+	private int sketchWidth = 1 << 22;
 	
 	private Map<String, Integer> seq2label = new HashMap<String, Integer>();
 	private Map<String, String> sequences = new HashMap<String, String>();
-	Map<String, Map<String, Integer>> seq2kmerCounts = new HashMap<String, Map<String, Integer>>();
+	Map<String, KmerProfile> seq2kmerCounts = new HashMap<String, KmerProfile>();
 	
-	private List<String> allKmers = new ArrayList<String>();
+	private KmerCounter kmerCounter;
+	private CountMinSketch sketch = null;
 	
 	public KmerFeatureGenerator(String fastaFile, String featureFile, boolean superPred, int kMin, int kMax) {
 		
@@ -70,11 +79,54 @@ public class KmerFeatureGenerator {
 	}
 
 	
+	public void setMinNumOcc(int minNumOcc) {
+		this.minNumOcc = minNumOcc;
+	}
+	
+	public void setNumHashedFeatures(int numHashedFeatures) {
+		this.numHashedFeatures = numHashedFeatures;
+	}
+	
+	public void setSketchSize(int depth, int width) {
+		this.sketchDepth = depth;
+		this.sketchWidth = width;
+	}
+	
+	public void setWriteBinaryFile(boolean writeBinaryFile) {
+		this.writeBinaryFile = writeBinaryFile;
+	}
+
+	
 	public void generateKmerFeatures() {
 		
 		prepareKmerFeatureGenerator();
-		getKmerCounts();
-		getAllKmers();
+		computeKmerFeatures();
+	}
+	
+	/* (non-Javadoc)
+	 * @see features.FeatureExtractor#extractFeatures(features.FeatureDataset)
+	 */
+	public void extractFeatures(FeatureDataset dataset) {
+		
+		sequences = dataset.getSequences();
+		seq2label = dataset.getLabels();
+		kmerCounter = new KmerCounter(sequences.values(), kMin, kMax);
+		computeKmerFeatures();
+	}
+	
+	public String getFeatureFile() {
+		return featureFile;
+	}
+	
+	private void computeKmerFeatures() {
+		
+		// k-mer profiles are kept in memory only if all k-mers are used as features
+		if (minNumOcc > 1 || numHashedFeatures > 0) {
+			getFrequentKmers();
+		} else {
+			getKmerCounts();
+			getAllKmers();
+		}
 		writeFeatureFile();
 	}
 	
@@ -84,6 +136,9 @@ public class KmerFeatureGenerator {
 		// read sequences and labels
 		sequences = BasicTools.readFASTA(fastaFile, true);
 		seq2label = DomainFeatureGenerator.getLabelsFromFastaHeaders(sequences.keySet(), superPred, false);
+		
+		// k-mers are encoded using the residues found in the sequences
+		kmerCounter = new KmerCounter(sequences.values(), kMin, kMax);
 	}
 	
 	
@@ -92,55 +147,47 @@ public class KmerFeatureGenerator {
 		// compute k-mer features for all sequences
 		for (String header: sequences.keySet()) {
 			
-			Map<String, Integer> fingerprint = getKmerCount(sequences.get(header), kMin, kMax);
+			KmerProfile fingerprint = kmerCounter.count(sequences.get(header));
 			seq2kmerCounts.put(header, fingerprint);
 		}
 	}
 	
 	
-	private Map<String, Integer> getKmerCount(String sequence, int kMin, int kMax) {
+	private void getAllKmers() {
 		
-		Map<String, Integer> kmer2count = new HashMap<String, Integer>();
+		// feature indices follow the lexicographic order of all k-mers (rare k-mers are removed if desired)
+		int numKmers = kmerCounter.createFeatureIndex(seq2kmerCounts.values(), minNumOcc);
 		
-		for (int k=kMin; k<=kMax; k++) {
-			for (int startIdx=0; startIdx <= (sequence.length() - k); startIdx++) {;	
-				String currKmer = sequence.substring(startIdx, startIdx + k);
-	
-				if (kmer2count.containsKey(currKmer)) {
-					kmer2count.put(currKmer, kmer2count.get(currKmer)+1);
-				} else {
-					kmer2count.put(currKmer, 1);
-				}
-			}
-		}
-		return kmer2count;
+		if (!silent) System.out.println("Number of unique k-mers in all sequences: " + numKmers);
 	}
 	
 	
-	private void getAllKmers() {
+	/*
+	 * two passes over the sequences: 
+	 * 1) document frequencies of all k-mers are estimated using a count-min sketch
+	 * 2) k-mers with frequency >= minNumOcc are used as features (not needed for feature hashing)
+	 * Profiles are recomputed for the feature file instead of being stored.
+	 */
+	private void getFrequentKmers() {
 		
-		HashSet<String> kmerSet = new HashSet<String>();
-		List<String> kmerList = new ArrayList<String>();
+		if (minNumOcc > 1) {
+			sketch = new CountMinSketch(sketchDepth, sketchWidth);
+			for (String header: sequences.keySet()) {
+				KmerCounter.addToSketch(kmerCounter.count(sequences.get(header)), sketch);
+			}
+		}
 		
-		for (String seqID: seq2kmerCounts.keySet()) {
-			kmerSet.addAll(seq2kmerCounts.get(seqID).keySet());
-			kmerList.addAll(seq2kmerCounts.get(seqID).keySet());
+		if (numHashedFeatures > 0) {
+			if (!silent) System.out.println("Number of hashed k-mer features: " + numHashedFeatures);
+			return;
 		}
-		allKmers.addAll(kmerSet);
-		Collections.sort(allKmers);
 		
-		// remove rare k-mers (if desired)
-		if (minNumOcc > 1) {
-			for (int i=(allKmers.size()-1); i>=0; i--) {
-			
-				int numOcc = Collections.frequency(kmerList, allKmers.get(i));
-				if (numOcc < minNumOcc) {
-					allKmers.remove(i);
-				}
-			}
+		for (String header: sequences.keySet()) {
+			kmerCounter.addFeatureCodes(kmerCounter.count(sequences.get(header)), sketch, minNumOcc);
 		}
+		int numKmers = kmerCounter.finishFeatureIndex();
 		
-		if (!silent) System.out.println("Number of unique k-mers in all sequences: " + allKmers.size());
+		if (!silent) System.out.println("Number of frequent k-mers in all sequences: " + numKmers);
 	}
 	
 	
@@ -148,38 +195,94 @@ public class KmerFeatureGenerator {
 		
 		List<String> libSVMfeatures = new ArrayList<String>();
 		List<String> proteinNames = new ArrayList<String>();
+		BinaryFeatureFileWriter binaryWriter = null;
+		if (writeBinaryFile) {
+			binaryWriter = new BinaryFeatureFileWriter();
+		}
 		
 		int seqCnt= 0;
-		for (String seqID: seq2kmerCounts.keySet()) {
+		for (String seqID: sequences.keySet()) {
 			proteinNames.add(seqID);
 			seqCnt++;
 			if (seqCnt % 1000 == 0) {
-				System.out.println("Processed " + seqCnt + " / " + seq2kmerCounts.size() + " sequences.");
+				System.out.println("Processed " + seqCnt + " / " + sequences.size() + " sequences.");
 			}
 
 			int label = seq2label.get(seqID);
-			StringBuffer featureString = new StringBuffer("" + label);
-			Map<String, Integer> kmer2count = seq2kmerCounts.get(seqID);
-			
-			// sort feature indexes of contained k-mers
-			int[] indices = new int[kmer2count.size()];
-			int idxCnt = 0;
-			for (String kmer: kmer2count.keySet()) {
-				indices[idxCnt++] = allKmers.indexOf(kmer);
+			KmerProfile kmer2count = seq2kmerCounts.get(seqID);
+			if (kmer2count == null) {
+				kmer2count = kmerCounter.count(sequences.get(seqID));
 			}
-			Arrays.sort(indices);
 			
-			// write k-mers as feature vector in libsvm format
-			for (int idx: indices) {
+			int[][] featureVector;
+			if (numHashedFeatures > 0) {
+				featureVector = getHashedFeatures(kmer2count);
+			} else {
+				featureVector = getKmerFeatures(kmer2count);
+			}
 			
-				int count = kmer2count.get(allKmers.get(idx));
-				
-				featureString.append(" " + (idx+1) + ":" + count);
+			// write k-mers as feature vector in libsvm format (feature indexes are sorted)
+			StringBuffer featureString = new StringBuffer("" + label);
+			for (int i=0; i<featureVector[0].length; i++) {
+				featureString.append(' ').append(featureVector[0][i]).append(':').append(featureVector[1][i]);
 			}
 			libSVMfeatures.add(featureString.toString());
+			
+			if (binaryWriter != null) {
+				double[] counts = new double[featureVector[1].length];
+				for (int i=0; i<counts.length; i++) {
+					counts[i] = featureVector[1][i];
+				}
+				binaryWriter.addRow(label, featureVector[0], counts, counts.length, seqID);
+			}
 		}
 
 		BasicTools.writeList2File(libSVMfeatures, featureFile);
 		BasicTools.writeList2File(proteinNames, featureFile.replace(".txt", "_names.txt"));
+		if (binaryWriter != null) {
+			binaryWriter.write(BinaryFeatureFileWriter.getBinaryFileName(featureFile));
+		}
+	}
+	
+	
+	// feature indexes (starting at 1, sorted as the codes) in the first row and counts in the second row
+	private int[][] getKmerFeatures(KmerProfile kmer2count) {
+		
+		int[] indices = new int[kmer2count.size()];
+		int[] counts = new int[kmer2count.size()];
+		int numFeatures = 0;
+		for (int i=0; i<kmer2count.size(); i++) {
+			
+			int idx = kmerCounter.getFeatureIndex(kmer2count.codes[i]);
+			if (idx == -1) continue;
+			
+			indices[numFeatures] = idx+1;
+			counts[numFeatures++] = kmer2count.counts[i];
+		}
+		return new int[][] {Arrays.copyOf(indices, numFeatures), Arrays.copyOf(counts, numFeatures)};
+	}
+	
+	
+	private int[][] getHashedFeatures(KmerProfile kmer2count) {
+		
+		// remove rare k-mers before hashing (if desired)
+		if (sketch != null) {
+			int numFrequent = 0;
+			long[] codes = new long[kmer2count.size()];
+			int[] counts = new int[kmer2count.size()];
+			for (int i=0; i<kmer2count.size(); i++) {
+				if (sketch.estimate(kmer2count.codes[i]) >= minNumOcc) {
+					codes[numFrequent] = kmer2count.codes[i];
+					counts[numFrequent++] = kmer2count.counts[i];
+				}
+			}
+			kmer2count = new KmerProfile(Arrays.copyOf(codes, numFrequent), Arrays.copyOf(counts, numFrequent));
+		}
+		
+		int[][] hashedFeatures = KmerCounter.getHashedFeatures(kmer2count, numHashedFeatures);
+		for (int i=0; i<hashedFeatures[0].length; i++) {
+			hashedFeatures[0][i]++;
+		}
+		return hashedFeatures;
 	}
 }
@@ -24,6 +24,8 @@ package features;
 
 
 import io.BasicTools;
+import io.BinaryFeatureFileWriter;
+import ipr.DomainDictionary;
 import ipr.IprEntry;
 
 import java.io.BufferedWriter;
@@ -31,6 +33,7 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -47,12 +50,19 @@ import modes.Predict;
  */
 public class LibSVMOutfileWriter {
 
+	private boolean writeBinaryFile = false;
+	
+	// if set, the feature vectors are additionally written in binary format
+	public void setWriteBinaryFile(boolean writeBinaryFile) {
+		this.writeBinaryFile = writeBinaryFile;
+	}
+	
 	// clean version
 	public int[] write(List<String> domainIDs, Map<String, IprEntry> seq2domain, String outfile) {
 		
-		List<String> libsvmFeatureTable = new ArrayList<String>();
 		List<String> excludedSequences = new ArrayList<String>();
 		Map<Integer, List<String>> feat2seq = new HashMap<Integer, List<String>>();
+		Map<String, Integer> featVec2idx = new HashMap<String, Integer>();
 
 		// check if feature file for superclass prediction shall be generated
 		boolean superclassFeatures = false;
@@ -69,6 +79,11 @@ public class LibSVMOutfileWriter {
 		}
 		
 		String label;
+		DomainDictionary domainDict = new DomainDictionary(domainIDs);
+		BinaryFeatureFileWriter binaryWriter = null;
+		if (writeBinaryFile) {
+			binaryWriter = new BinaryFeatureFileWriter(true, true);
+		}
 		
 		try {
 			BufferedWriter bw_libsvmfile = new BufferedWriter(new FileWriter(new File(outfile)));
@@ -92,7 +107,7 @@ public class LibSVMOutfileWriter {
 					label = "-1";
 				}
 				
-				String fvector = Predict.createIPRvector(curr_entry.domain_ids, domainIDs, Predict.featureOffset);
+				String fvector = Predict.createIPRvector(curr_entry.domain_ids, domainDict, Predict.featureOffset);
 				String line = label + " " + fvector + "\n";
 				
 				// save names of sequences for which no feature vector could be generated as no InterPro domains were found
@@ -101,20 +116,22 @@ public class LibSVMOutfileWriter {
 					continue;
 				}
 				
+				if (binaryWriter != null) {
+					addBinaryRow(binaryWriter, label, domainDict.encode(curr_entry.domain_ids), currSeq);
+				}
+				
 				if (currSeq.equals("GL2_P46607_MatBase")) {
 					System.out.println("Superclass: " + curr_entry.superclass);
 				}
 				
 				// save mapping from feature vectors to (multiple) sequence IDs
-				int featVecIdx = libsvmFeatureTable.indexOf(line);
-				if (featVecIdx != -1) {
-					List<String> currSeqIDs = feat2seq.get(featVecIdx);
-					currSeqIDs.add(currSeq);
-					feat2seq.put(featVecIdx, currSeqIDs);
+				Integer featVecIdx = featVec2idx.get(line);
+				if (featVecIdx != null) {
+					feat2seq.get(featVecIdx).add(currSeq);
 					continue;
 				
 				} else {
-					libsvmFeatureTable.add(line);
+					featVec2idx.put(line, featVec2idx.size());
 					bw_libsvmfile.write(line);
 					
 					List<String> currSeqIDs = new ArrayList<String>();
@@ -139,6 +156,9 @@ public class LibSVMOutfileWriter {
 			System.out.println(ioe.getMessage());
 			System.out.println("IOException occurred while writing output file");
 		}
+		if (binaryWriter != null) {
+			binaryWriter.write(BinaryFeatureFileWriter.getBinaryFileName(outfile));
+		}
 		
 		// write Sequence IDs for each feature vector to file
 		String namesFile = outfile.replace(".txt", "_names.txt");
@@ -156,4 +176,18 @@ public class LibSVMOutfileWriter {
 		}
 		return numFeatureVectors;
 	}
+	
+	
+	// binary representation of the feature vector created by Predict.createIPRvector
+	private static void addBinaryRow(BinaryFeatureFileWriter binaryWriter, String label, BitSet domainSet, String seqID) {
+		
+		int[] indices = new int[domainSet.cardinality()];
+		double[] values = new double[indices.length];
+		int numFeatures = 0;
+		for (int code = domainSet.nextSetBit(0); code >= 0; code = domainSet.nextSetBit(code+1)) {
+			indices[numFeatures] = code + 1 + Predict.featureOffset;
+			values[numFeatures++] = 1;
+		}
+		binaryWriter.addRow(Double.parseDouble(label), indices, values, numFeatures, seqID);
+	}
 }
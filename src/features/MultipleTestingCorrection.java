@@ -0,0 +1,183 @@
+/*
+ * $Id$
+ * $URL$
+ * This file is part of the program TFpredict. TFpredict performs the
+ * identification and structural characterization of transcription factors.
+ *
+ * Copyright (C) 2010-2014 Center for Bioinformatics Tuebingen (ZBIT),
+ * University of Tuebingen by Johannes Eichner, Florian Topf, Andreas Draeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package features;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * Correction of p-values for multiple testing (Bonferroni, Holm and
+ * Benjamini-Hochberg) on primitive arrays. The p-values are ranked by a single
+ * index sort and the adjusted p-values are made monotone in place, hence
+ * millions of hypotheses (e.g., k-mers) can be corrected without boxing.
+ *
+ * Adjusted p-values are returned in the order of the given p-values. NaN values
+ * are ranked last and remain NaN.
+ *
+ * @author Johannes Eichner
+ * @version $Rev$
+ * @since 1.0
+ */
+public class MultipleTestingCorrection {
+
+	// runs shorter than this are sorted by insertion sort
+	private static final int insertionSortThreshold = 32;
+
+	
+	public static double[] bonferroni(double[] pvalues) {
+		
+		int size = pvalues.length;
+		double[] adjPvalues = new double[size];
+		for (int i=0; i<size; i++) {
+			adjPvalues[i] = Math.min(pvalues[i] * size, 1.0);
+		}
+		return adjPvalues;
+	}
+	
+	
+	// step-down method of Holm (controls the family-wise error rate)
+	public static double[] holm(double[] pvalues) {
+		
+		int size = pvalues.length;
+		int[] idx = sortIndices(pvalues);
+		int numValid = getNumValid(pvalues, idx);
+		
+		double[] adjPvalues = new double[size];
+		for (int k=0; k<size; k++) {
+			adjPvalues[idx[k]] = Math.min(pvalues[idx[k]] * (size - k), 1.0);
+		}
+		
+		// adjusted p-values must not decrease with increasing rank
+		for (int k=1; k<numValid; k++) {
+			if (adjPvalues[idx[k]] < adjPvalues[idx[k-1]]) {
+				adjPvalues[idx[k]] = adjPvalues[idx[k-1]];
+			}
+		}
+		return adjPvalues;
+	}
+	
+	
+	// step-up method of Benjamini and Hochberg (controls the false discovery rate)
+	public static double[] benjaminiHochberg(double[] pvalues) {
+		
+		int size = pvalues.length;
+		int[] idx = sortIndices(pvalues);
+		int numValid = getNumValid(pvalues, idx);
+		
+		double[] adjPvalues = new double[size];
+		for (int k=0; k<size; k++) {
+			adjPvalues[idx[k]] = Math.min(pvalues[idx[k]] * size / (k+1), 1.0);
+		}
+		
+		// adjusted p-values must not increase with decreasing rank
+		for (int k=numValid-2; k>=0; k--) {
+			if (adjPvalues[idx[k]] > adjPvalues[idx[k+1]]) {
+				adjPvalues[idx[k]] = adjPvalues[idx[k+1]];
+			}
+		}
+		return adjPvalues;
+	}
+	
+	
+	// number of p-values which are not NaN (NaN values are sorted to the end)
+	private static int getNumValid(double[] pvalues, int[] idx) {
+		
+		int numValid = idx.length;
+		while (numValid > 0 && Double.isNaN(pvalues[idx[numValid-1]])) {
+			numValid--;
+		}
+		return numValid;
+	}
+	
+	
+	/**
+	 * Returns the indices of the values in ascending order of the values (NaN last).
+	 * The sort is stable, i.e., ties keep the order of their indices.
+	 */
+	public static int[] sortIndices(double[] values) {
+		
+		int size = values.length;
+		int[] idx = new int[size];
+		for (int i=0; i<size; i++) {
+			idx[i] = i;
+		}
+		
+		// sort short runs by insertion sort
+		for (int start=0; start<size; start+=insertionSortThreshold) {
+			int end = Math.min(start + insertionSortThreshold, size);
+			for (int i=start+1; i<end; i++) {
+				int curr = idx[i];
+				int j = i-1;
+				while (j >= start && Double.compare(values[idx[j]], values[curr]) > 0) {
+					idx[j+1] = idx[j];
+					j--;
+				}
+				idx[j+1] = curr;
+			}
+		}
+		
+		// merge runs bottom-up, alternating between the index array and the buffer
+		int[] src = idx;
+		int[] dest = new int[size];
+		for (int width=insertionSortThreshold; width<size; width*=2) {
+			for (int left=0; left<size; left+=2*width) {
+				int mid = Math.min(left + width, size);
+				int right = Math.min(left + 2*width, size);
+				int i = left, j = mid, k = left;
+				while (i < mid && j < right) {
+					if (Double.compare(values[src[j]], values[src[i]]) < 0) {
+						dest[k++] = src[j++];
+					} else {
+						dest[k++] = src[i++];
+					}
+				}
+				while (i < mid) dest[k++] = src[i++];
+				while (j < right) dest[k++] = src[j++];
+			}
+			int[] tmp = src;
+			src = dest;
+			dest = tmp;
+		}
+		return src;
+	}
+	
+	
+	public static double[] toArray(Collection<Double> values) {
+		
+		double[] array = new double[values.size()];
+		int i = 0;
+		for (double value: values) {
+			array[i++] = value;
+		}
+		return array;
+	}
+	
+	public static ArrayList<Double> toList(double[] array) {
+		
+		ArrayList<Double> values = new ArrayList<Double>(array.length);
+		for (double value: array) {
+			values.add(value);
+		}
+		return values;
+	}
+}
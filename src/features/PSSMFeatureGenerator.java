@@ -22,7 +22,14 @@
  */
 package features;
 
-import io.BasicTools;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * 
@@ -32,6 +39,18 @@ import io.BasicTools;
  */
 public class PSSMFeatureGenerator extends BLASTfeatureGenerator {
 	
+	// number of sequences processed by a single job
+	private static final int chunkSize = 500;
+	
+	// index of amino acids in the PSSM columns (-1 --> invalid symbol)
+	private static final byte[] char2aac = new byte[128];
+	static {
+		Arrays.fill(char2aac, (byte) -1);
+		for (int i=0; i<aminoAcids.length; i++) {
+			char2aac[aminoAcids[i].charAt(0)] = (byte) i;
+		}
+	}
+	
 	/**
 	 * 
 	 * @param fastaFile
@@ -46,25 +65,84 @@ public class PSSMFeatureGenerator extends BLASTfeatureGenerator {
 	
 	protected void computeFeaturesFromBlastResult() {
 
-		for (String seqID: pssms.keySet()) {
+		// split sequences into chunks which are processed in parallel
+		List<String> seqIDs = new ArrayList<String>(pssms.keySet());
+		List<Job> queue = new ArrayList<Job>();
+		for (int start=0; start<seqIDs.size(); start+=chunkSize) {
+			queue.add(new Job(seqIDs.subList(start, Math.min(start+chunkSize, seqIDs.size()))));
+		}
+		
+		ExecutorService exec = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		List<Future<double[][]>> results = null;
+		try {
+			results = exec.invokeAll(queue);
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+		}
+		exec.shutdown();
+		
+		// retrieve results
+		for (int i=0; i<queue.size(); i++) {
+			double[][] currFeatures = null;
+			try {
+				currFeatures = results.get(i).get();
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+			} catch (ExecutionException e) {
+				e.printStackTrace();
+			}
+			List<String> currSeqIDs = queue.get(i).seqIDs;
+			for (int j=0; j<currSeqIDs.size(); j++) {
+				features.put(currSeqIDs.get(j), currFeatures[j]);
+			}
+		}
+	}
+	
+	// job object: computes the feature vectors of a chunk of sequences
+	class Job implements Callable<double[][]> {
+		
+		List<String> seqIDs;
+		
+		public Job(List<String> seqIDs) {
+			this.seqIDs = seqIDs;
+		}
+		
+		@Override
+		public double[][] call() throws Exception {
 			
-			String seq = sequences.get(seqID);
-			int[][] currPSSM = pssms.get(seqID);
-			double[] pssmFeatVec = new double[400];
+			double[][] featureVectors = new double[seqIDs.size()][];
+			for (int i=0; i<seqIDs.size(); i++) {
+				featureVectors[i] = computePSSMfeatureVector(sequences.get(seqIDs.get(i)), pssms.get(seqIDs.get(i)));
+			}
+			return featureVectors;
+		}
+	}
+	
+	/**
+	 * Sums up the PSSM rows of all positions with the same amino acid in a single pass over the sequence.
+	 * Feature i*20+j is the summed score of amino acid j at the positions of amino acid i.
+	 */
+	static double[] computePSSMfeatureVector(String seq, int[][] pssm) {
+		
+		int[] sums = new int[400];
+		int numRows = Math.min(seq.length(), pssm.length);
+		for (int pos=0; pos<numRows; pos++) {
+			char residue = seq.charAt(pos);
+			int aacIdx = (residue < char2aac.length) ? char2aac[residue] : -1;
+			if (aacIdx == -1) continue;
 			
-			for (int i=0; i<aminoAcids.length; i++) {
-				int[] indices = BasicTools.getAllIndicesOf(seq, aminoAcids[i]);
-				for (int j=0; j<aminoAcids.length; j++) {
-					int sum = 0;
-					for (int k=0; k<indices.length; k++) {
-						sum += currPSSM[k][j];
-					}
-					int featIdx = i * 20 + j;
-					pssmFeatVec[featIdx] = scalePSSMscore(sum);
-				}
+			int[] row = pssm[pos];
+			int offset = aacIdx * 20;
+			for (int j=0; j<20; j++) {
+				sums[offset + j] += row[j];
 			}
-			features.put(seqID, pssmFeatVec);
 		}
+		
+		double[] pssmFeatVec = new double[400];
+		for (int featIdx=0; featIdx<400; featIdx++) {
+			pssmFeatVec[featIdx] = scalePSSMscore(sums[featIdx]);
+		}
+		return pssmFeatVec;
 	}
 	
 	
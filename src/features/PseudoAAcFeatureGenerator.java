@@ -23,11 +23,18 @@
 package features;
 
 import io.BasicTools;
+import io.BinaryFeatureFileWriter;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.math.stat.descriptive.summary.Sum;
 
@@ -37,7 +44,7 @@ import org.apache.commons.math.stat.descriptive.summary.Sum;
  * @version $Rev$
  * @since 1.0
  */
-public class PseudoAAcFeatureGenerator {
+public class PseudoAAcFeatureGenerator implements FeatureExtractor {
 	
 	public double weight = 0.05;
     public int lambdaMax = 10;
@@ -48,9 +55,18 @@ public class PseudoAAcFeatureGenerator {
 	private static Map<String, Double> aac2hphi = new HashMap<String, Double>();
 	private static Map<String, Double> aac2mass = new HashMap<String, Double>();
 	
+	// residues are encoded as indices of AAcs (-1 --> invalid symbol)
+	private static byte[] char2aac = new byte[128];
+	private static double[][] aacDistances = new double[AAcs.length][AAcs.length];
+	
+	// number of sequences processed by a single job
+	private static final int chunkSize = 500;
+	
 	protected String fastaFile;
 	protected String featureFile;
 	protected boolean superPred;
+	protected boolean writeBinaryFile = false;
+	protected String featureStoreDir = null;
 	
 	protected Map<String, Integer> seq2label = new HashMap<String, Integer>();
 	protected Map<String, String> sequences = new HashMap<String, String>();
@@ -77,6 +93,34 @@ public class PseudoAAcFeatureGenerator {
 		writeFeatureFile();
 	}
 	
+	/* (non-Javadoc)
+	 * @see features.FeatureExtractor#extractFeatures(features.FeatureDataset)
+	 */
+	public void extractFeatures(FeatureDataset dataset) {
+		
+		// invalid amino acid symbols are removed from a copy of the shared sequences
+		sequences = new HashMap<String, String>(dataset.getSequences());
+		seq2label = dataset.getLabels();
+		removeInvalidSymbols();
+		readAAcAttributes();
+		
+		calcPseudoAAcFeatures();
+		writeFeatureFile();
+	}
+	
+	public String getFeatureFile() {
+		return featureFile;
+	}
+	
+	public void setWriteBinaryFile(boolean writeBinaryFile) {
+		this.writeBinaryFile = writeBinaryFile;
+	}
+	
+	// features are stored and computed only for new sequences in later runs (see FeatureStore)
+	public void setFeatureStoreDir(String featureStoreDir) {
+		this.featureStoreDir = featureStoreDir;
+	}
+	
 	// reads sequences, labels, and physicochemical properties of amino acids
 	private void preparePseudoAAcCalculator() {
 
@@ -84,16 +128,21 @@ public class PseudoAAcFeatureGenerator {
 		sequences = BasicTools.readFASTA(fastaFile, true);
 		seq2label = DomainFeatureGenerator.getLabelsFromFastaHeaders(sequences.keySet(), superPred, false);
 		
-		// remove invalid amino acid symbols contained in sequences
-		for (String seqID: sequences.keySet()) {
-			sequences.put(seqID, sequences.get(seqID).replaceAll("[BJOUXZ]", ""));
-		}
+		removeInvalidSymbols();
 		
 		// read amino acid attributes from annotation file
 		readAAcAttributes();
 	}	
 	
-	private static void readAAcAttributes() {
+	// remove invalid amino acid symbols contained in sequences
+	private void removeInvalidSymbols() {
+		
+		for (String seqID: sequences.keySet()) {
+			sequences.put(seqID, sequences.get(seqID).replaceAll("[BJOUXZ]", ""));
+		}
+	}
+	
+	private static synchronized void readAAcAttributes() {
 		
 		List<String> lines = BasicTools.readResource2List(aa_attr);
 		List<String[]> splittedLines = new ArrayList<String[]>();
@@ -125,16 +174,113 @@ public class PseudoAAcFeatureGenerator {
 			aac2hphi.put(aminoAcids[i], hphiValues[i]);
 			aac2mass.put(aminoAcids[i], massValues[i]);
 		}
+		
+		// precompute pairwise distances of amino acids
+		Arrays.fill(char2aac, (byte) -1);
+		for (int i=0; i<AAcs.length; i++) {
+			char2aac[AAcs[i].charAt(0)] = (byte) i;
+		}
+		for (int i=0; i<AAcs.length; i++) {
+			for (int j=0; j<AAcs.length; j++) {
+				aacDistances[i][j] = calcPairwisePseudoAAcScore(AAcs[i], AAcs[j]);
+			}
+		}
 	}
 	
 	private void calcPseudoAAcFeatures() {
 		
-		for (String seqID: sequences.keySet()) {
-			features.put(seqID, calcPseudoAAcFeatureVector(sequences.get(seqID)));
+		// features of sequences found in the store are not recomputed
+		FeatureStore store = null;
+		List<String> seqIDs = new ArrayList<String>();
+		if (featureStoreDir != null) {
+			store = new FeatureStore(featureStoreDir, "pseudo", "weight=" + weight + ";lambdaMax=" + lambdaMax, "");
+			for (String seqID: sequences.keySet()) {
+				double[] featureVector = store.get(FeatureStore.getSequenceKey(sequences.get(seqID)));
+				if (featureVector == null) {
+					seqIDs.add(seqID);
+				} else {
+					features.put(seqID, featureVector);
+				}
+			}
+			System.out.println("Restored " + (sequences.size() - seqIDs.size()) + " feature vectors from store. Processing " + seqIDs.size() + " new sequences.");
+		} else {
+			seqIDs.addAll(sequences.keySet());
+		}
+		
+		// split sequences into chunks which are processed in parallel
+		List<Job> queue = new ArrayList<Job>();
+		for (int start=0; start<seqIDs.size(); start+=chunkSize) {
+			queue.add(new Job(seqIDs.subList(start, Math.min(start+chunkSize, seqIDs.size()))));
+		}
+		
+		ExecutorService exec = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		List<Future<double[][]>> results = null;
+		try {
+			results = exec.invokeAll(queue);
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+		}
+		exec.shutdown();
+		
+		// retrieve results
+		for (int i=0; i<queue.size(); i++) {
+			double[][] currFeatures = null;
+			try {
+				currFeatures = results.get(i).get();
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+			} catch (ExecutionException e) {
+				e.printStackTrace();
+			}
+			List<String> currSeqIDs = queue.get(i).seqIDs;
+			for (int j=0; j<currSeqIDs.size(); j++) {
+				features.put(currSeqIDs.get(j), currFeatures[j]);
+				if (store != null) {
+					store.put(FeatureStore.getSequenceKey(sequences.get(currSeqIDs.get(j))), currFeatures[j]);
+				}
+			}
+		}
+		if (store != null) {
+			store.save();
+		}
+	}
+	
+	// job object: computes the feature vectors of a chunk of sequences
+	class Job implements Callable<double[][]> {
+		
+		List<String> seqIDs;
+		
+		public Job(List<String> seqIDs) {
+			this.seqIDs = seqIDs;
+		}
+		
+		@Override
+		public double[][] call() throws Exception {
+			
+			double[][] featureVectors = new double[seqIDs.size()][];
+			for (int i=0; i<seqIDs.size(); i++) {
+				featureVectors[i] = calcPseudoAAcFeatureVector(encodeSequence(sequences.get(seqIDs.get(i))));
+			}
+			return featureVectors;
 		}
 	}
 	
-	private double[] calcPseudoAAcFeatureVector(String seq) {
+	// converts sequence to indices of amino acids (invalid symbols are skipped)
+	private static byte[] encodeSequence(String seq) {
+		
+		byte[] encodedSeq = new byte[seq.length()];
+		int length = 0;
+		for (int i=0; i<seq.length(); i++) {
+			char residue = seq.charAt(i);
+			byte aac = (residue < char2aac.length) ? char2aac[residue] : -1;
+			if (aac != -1) {
+				encodedSeq[length++] = aac;
+			}
+		}
+		return (length == encodedSeq.length) ? encodedSeq : Arrays.copyOf(encodedSeq, length);
+	}
+	
+	private double[] calcPseudoAAcFeatureVector(byte[] seq) {
 		
 		double[] normalFeatures = calcAAcFrequencies(seq);
 		double[] pseudoFeatures = calcPseudoAAcScores(seq, lambdaMax);
@@ -152,25 +298,29 @@ public class PseudoAAcFeatureGenerator {
         return featureVector;
     }
 	
-	private static double[] calcAAcFrequencies(String seq) {
+	private static double[] calcAAcFrequencies(byte[] seq) {
 		
+		int[] aacCounts = new int[AAcs.length];
+		for (int i=0; i<seq.length; i++) {
+			aacCounts[seq[i]]++;
+		}
 		double[] aacFreq = new double[AAcs.length]; 
 		for (int i=0; i<AAcs.length; i++) {
-			aacFreq[i] = ((double) seq.length() - seq.replace(AAcs[i], "").length()) / seq.length();
+			aacFreq[i] = ((double) aacCounts[i]) / seq.length;
 		}
 		return(aacFreq);
 	}
    
-	private static double calcPseudoAAcScore(String seq, int lambda) {
+	private static double calcPseudoAAcScore(byte[] seq, int lambda) {
 		
 		double score = 0;
-		for (int i=0; i<seq.length()-lambda; i++) {
-			score += calcPairwisePseudoAAcScore(seq.substring(i, i+1), seq.substring(i+lambda,i+lambda+1));
+		for (int i=0; i<seq.length-lambda; i++) {
+			score += aacDistances[seq[i]][seq[i+lambda]];
 		}
-		return(score/(seq.length()-lambda));
+		return(score/(seq.length-lambda));
 	}
 
-	private static double[] calcPseudoAAcScores(String seq, int lambdaMax) {
+	private static double[] calcPseudoAAcScores(byte[] seq, int lambdaMax) {
 		
 		double[] scores = new double[lambdaMax];
 		for (int lambda=1; lambda<=lambdaMax; lambda++) {
@@ -192,12 +342,19 @@ public class PseudoAAcFeatureGenerator {
 		
 		List<String> libSVMfeatures = new ArrayList<String>();
 		List<String> sequenceNames = new ArrayList<String>();
+		BinaryFeatureFileWriter binaryWriter = null;
+		if (writeBinaryFile) {
+			binaryWriter = new BinaryFeatureFileWriter();
+		}
 		
 		for (String seqID: features.keySet()) {
 			
 			sequenceNames.add(seqID);
 			double[] featureVector = features.get(seqID);
 			int label = seq2label.get(seqID);
+			if (binaryWriter != null) {
+				binaryWriter.addDenseRow(label, featureVector, true, seqID);
+			}
 
 			// write pseudo amino acids feature vector in libsvm format
 			StringBuffer featureString = new StringBuffer("" + label);
@@ -210,6 +367,9 @@ public class PseudoAAcFeatureGenerator {
 		}
 		BasicTools.writeList2File(libSVMfeatures, featureFile);
 		BasicTools.writeList2File(sequenceNames, featureFile.replace(".txt", "_names.txt"));
+		if (binaryWriter != null) {
+			binaryWriter.write(BinaryFeatureFileWriter.getBinaryFileName(featureFile));
+		}
 	}
 }
 
@@ -23,14 +23,14 @@
 package features;
 
 import io.BasicTools;
-import ipr.IPRextract;
-import ipr.IPRrun;
+import ipr.IPRoutputParser;
 import ipr.IprEntry;
 
 import java.io.File;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
@@ -47,6 +47,7 @@ import org.apache.commons.cli.PosixParser;
 public class SuperPredDomainFeatureGenerator extends DomainFeatureGenerator {
 
 	private String fastaFileTF = "";
+	private Set<String> fastaHeadersTF = null;
 
 	public SuperPredDomainFeatureGenerator(String fastaFileTF, String iprscanResultFileTF, String libsvmOutfile) {
 		this.fastaFileTF = fastaFileTF;
@@ -58,6 +59,16 @@ public class SuperPredDomainFeatureGenerator extends DomainFeatureGenerator {
 	public SuperPredDomainFeatureGenerator() {
 	}
 	
+	/* (non-Javadoc)
+	 * @see features.DomainFeatureGenerator#extractFeatures(features.FeatureDataset)
+	 */
+	public void extractFeatures(FeatureDataset dataset) {
+		
+		// use headers of the shared dataset instead of reading the FASTA file again
+		fastaHeadersTF = dataset.getSequences().keySet();
+		writeFeatureFile();
+	}
+	
 	private void parseArguments(String[] args) {
 
 		// create Options object
@@ -109,10 +120,11 @@ public class SuperPredDomainFeatureGenerator extends DomainFeatureGenerator {
 	public void writeFeatureFile() {
 		 
 		// parse output files from InterProScan
-		List<String[]> iprOutputTF = IPRrun.readIPRoutput(iprscanResultFileTF);
+		IPRoutputParser iprParserTF = new IPRoutputParser(true);
+		iprParserTF.parse(iprscanResultFileTF);
 		
 		// compute mapping from domain IDs to TF and Non-TF IDs, respectively
-		Map<String, List<String>> domain2seqTF = IPRextract.getDomain2SeqMap(iprOutputTF);
+		Map<String, List<String>> domain2seqTF = iprParserTF.getDomain2SeqMap();
 		
 		// filter domains which 1) exist in current InterPro release and 2) were detected in sequences from training set 
 		List<String> currentDomains = downloadAllDomainIDs(); 
@@ -120,13 +132,15 @@ public class SuperPredDomainFeatureGenerator extends DomainFeatureGenerator {
 		domain2seqTF = filterCurrentDomainsInDom2SeqMap(domain2seqTF, relevantDomainIDs);
 		
 		seq2domain = new HashMap<String, IprEntry>();
-		seq2domain.putAll(IPRextract.getSeq2DomainMap(iprOutputTF, true));
+		seq2domain.putAll(iprParserTF.getSeq2DomainMap());
 		int numTrainSeq = seq2domain.size();
 		filterCurrentDomainsInSeq2DomMap();
 		
 		// read superclass for each TF sequence
-		Map<String, String> fastaFiles = BasicTools.readFASTA(fastaFileTF, true);
-		Map<String, Integer> tf2superclass = getLabelsFromFastaHeaders(fastaFiles.keySet(), true, true);
+		if (fastaHeadersTF == null) {
+			fastaHeadersTF = BasicTools.readFASTA(fastaFileTF, true).keySet();
+		}
+		Map<String, Integer> tf2superclass = getLabelsFromFastaHeaders(fastaHeadersTF, true, true);
 		
 		// add superclass to IprEntry objects
 		int[] tfsPerClassCounter = new int[] {0,0,0,0,0};
@@ -148,6 +162,7 @@ public class SuperPredDomainFeatureGenerator extends DomainFeatureGenerator {
 		
 		BasicTools.writeList2File(relevantDomainIDs, basedir + relevantDomainsFile);
 		LibSVMOutfileWriter libsvmwriter = new LibSVMOutfileWriter();
+		libsvmwriter.setWriteBinaryFile(writeBinaryFile);
 		int[] numFeatVecRelevant = libsvmwriter.write(relevantDomainIDs, seq2domain, libsvmOutfile);
 		int numFeatVec = numFeatVecRelevant[0] + numFeatVecRelevant[1] + numFeatVecRelevant[2] + numFeatVecRelevant[3] + numFeatVecRelevant[4];
 		
@@ -23,8 +23,7 @@
 package features;
 
 import io.BasicTools;
-import ipr.IPRextract;
-import ipr.IPRrun;
+import ipr.IPRoutputParser;
 import ipr.IprEntry;
 
 import java.io.File;
@@ -171,12 +170,14 @@ public class TFpredDomainFeatureGenerator extends DomainFeatureGenerator{
 	public void writeFeatureFile() {
  
 		// parse output files from InterProScan
-		List<String[]> iprOutputTF = IPRrun.readIPRoutput(iprscanResultFileTF);
-		List<String[]> iprOutputNonTF = IPRrun.readIPRoutput(iprscanResultFileNonTF);
+		IPRoutputParser iprParserTF = new IPRoutputParser(true);
+		iprParserTF.parse(iprscanResultFileTF);
+		IPRoutputParser iprParserNonTF = new IPRoutputParser(false);
+		iprParserNonTF.parse(iprscanResultFileNonTF);
 		
 		// compute mapping from domain IDs to TF and Non-TF IDs, respectively
-		Map<String, List<String>> domain2seqTF = IPRextract.getDomain2SeqMap(iprOutputTF);
-		Map<String, List<String>> domain2seqNonTF = IPRextract.getDomain2SeqMap(iprOutputNonTF);
+		Map<String, List<String>> domain2seqTF = iprParserTF.getDomain2SeqMap();
+		Map<String, List<String>> domain2seqNonTF = iprParserNonTF.getDomain2SeqMap();
 		int numTFwithDomain = domain2seqTF.keySet().size();
 		int numNonTFwithDomain = domain2seqNonTF.keySet().size();
 		
@@ -203,8 +204,8 @@ public class TFpredDomainFeatureGenerator extends DomainFeatureGenerator{
 
 		// extract mapping from sequence IDs  -->  domain IDs 
 		seq2domain = new HashMap<String, IprEntry>();
-		seq2domain.putAll(IPRextract.getSeq2DomainMap(iprOutputTF, true));
-		seq2domain.putAll(IPRextract.getSeq2DomainMap(iprOutputNonTF, false));
+		seq2domain.putAll(iprParserTF.getSeq2DomainMap());
+		seq2domain.putAll(iprParserNonTF.getSeq2DomainMap());
 		int numTrainSeq = seq2domain.size(); 
 		
 		// remove domains which are not contained in current version of InterPro
@@ -215,6 +216,7 @@ public class TFpredDomainFeatureGenerator extends DomainFeatureGenerator{
 		BasicTools.writeList2File(filteredDomainIDs, basedir + filteredDomainsFile);
 		
 		LibSVMOutfileWriter libsvmwriter = new LibSVMOutfileWriter();
+		libsvmwriter.setWriteBinaryFile(writeBinaryFile);
 		int[] numFeatVecRelevant = libsvmwriter.write(relevantDomainIDs, seq2domain, libsvmOutfile);
 		int[] numFeatVecFiltered = libsvmwriter.write(filteredDomainIDs, seq2domain, libsvmOutfile.replace(".txt", "_filtered.txt"));	
 		
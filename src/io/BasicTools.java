@@ -574,9 +574,10 @@ public class BasicTools {
 	 */
 	public static List<String> intersect(List<String> list1, List<String> list2) {
 		
+		HashSet<String> set2 = new HashSet<String>(list2);
 		HashSet<String> intersectionSet = new HashSet<String>();
 		for (String element: list1) {
-			if (list2.contains(element)) {
+			if (set2.contains(element)) {
 				intersectionSet.add(element);
 			}
 		}
@@ -603,9 +604,10 @@ public class BasicTools {
 	 * @return
 	 */
 	public static List<String> setDiff(List<String> list1, List<String> list2) {
+		HashSet<String> set2 = new HashSet<String>(list2);
 		HashSet<String> diffSet = new HashSet<String>();
 		for (String element: list1) {
-			if (!list2.contains(element)) {
+			if (!set2.contains(element)) {
 				diffSet.add(element);
 			}
 		}
@@ -0,0 +1,172 @@
+/*
+ * $Id$
+ * $URL$
+ * This file is part of the program TFpredict. TFpredict performs the
+ * identification and structural characterization of transcription factors.
+ *
+ * Copyright (C) 2010-2014 Center for Bioinformatics Tuebingen (ZBIT),
+ * University of Tuebingen by Johannes Eichner, Florian Topf, Andreas Draeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Memory-mapped reader for feature files written by {@link BinaryFeatureFileWriter}.
+ * Labels, indices and values are read directly from the mapped file, hence
+ * data sets (e.g., WEKA Instances or liblinear Problems) can be built without
+ * parsing text.
+ *
+ * @author Johannes Eichner
+ * @version $Rev$
+ * @since 1.0
+ */
+public class BinaryFeatureFileReader {
+
+	private MappedByteBuffer buffer;
+
+	private int numRows;
+	private int numFeatures;
+	private int numNonZeros;
+	private int valueSize;
+
+	private int labelsOffset;
+	private int rowPtrOffset;
+	private int indicesOffset;
+	private int valuesOffset;
+	private int namesOffset;
+	private int[] nameOffsets = null;
+
+	public BinaryFeatureFileReader(String binaryFile) throws IOException {
+
+		RandomAccessFile raf = new RandomAccessFile(binaryFile, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("Binary feature file is too large to be mapped: " + binaryFile);
+			}
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} finally {
+			raf.close();
+		}
+
+		if (buffer.getInt(0) != BinaryFeatureFileWriter.MAGIC || buffer.getInt(4) != BinaryFeatureFileWriter.VERSION) {
+			throw new IOException("Invalid binary feature file: " + binaryFile);
+		}
+		numRows = buffer.getInt(8);
+		numFeatures = buffer.getInt(12);
+		numNonZeros = (int) buffer.getLong(16);
+		valueSize = buffer.getInt(24);
+
+		labelsOffset = BinaryFeatureFileWriter.HEADER_SIZE;
+		rowPtrOffset = labelsOffset + 8 * numRows;
+		indicesOffset = rowPtrOffset + 8 * (numRows + 1);
+		valuesOffset = indicesOffset + 4 * numNonZeros;
+		namesOffset = valuesOffset + valueSize * numNonZeros;
+	}
+
+
+	// checks the magic number at the beginning of the file
+	public static boolean isBinaryFeatureFile(String file) {
+
+		if (!new File(file).isFile()) {
+			return false;
+		}
+		boolean isBinary = false;
+		try {
+			DataInputStream dis = new DataInputStream(new FileInputStream(file));
+			try {
+				isBinary = (dis.readInt() == BinaryFeatureFileWriter.MAGIC);
+			} finally {
+				dis.close();
+			}
+		} catch (IOException e) {
+			isBinary = false;
+		}
+		return isBinary;
+	}
+
+
+	public int getNumRows() {
+		return numRows;
+	}
+
+	// maximum feature index
+	public int getNumFeatures() {
+		return numFeatures;
+	}
+
+	public int getNumNonZeros() {
+		return numNonZeros;
+	}
+
+	public double getLabel(int row) {
+		return buffer.getDouble(labelsOffset + 8 * row);
+	}
+
+	// position of the first entry of the row (entries of row i: getRowStart(i) ... getRowStart(i+1)-1)
+	public int getRowStart(int row) {
+		return (int) buffer.getLong(rowPtrOffset + 8 * row);
+	}
+
+	public int getRowLength(int row) {
+		return getRowStart(row+1) - getRowStart(row);
+	}
+
+	// feature index of an entry (starting at 1)
+	public int getIndex(int entry) {
+		return buffer.getInt(indicesOffset + 4 * entry);
+	}
+
+	public double getValue(int entry) {
+
+		if (valueSize == 4) {
+			return buffer.getFloat(valuesOffset + 4 * entry);
+		}
+		return buffer.getDouble(valuesOffset + 8 * entry);
+	}
+
+
+	// name(s) of the sequence(s) which belong to the row (separated by tabs)
+	public synchronized String getName(int row) {
+
+		if (nameOffsets == null) {
+			nameOffsets = new int[numRows];
+			int pos = namesOffset;
+			for (int i=0; i<numRows; i++) {
+				nameOffsets[i] = pos;
+				pos += 4 + buffer.getInt(pos);
+			}
+		}
+		int pos = nameOffsets[row];
+		byte[] name = new byte[buffer.getInt(pos)];
+		for (int i=0; i<name.length; i++) {
+			name[i] = buffer.get(pos + 4 + i);
+		}
+		try {
+			return new String(name, "UTF-8");
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+}
@@ -0,0 +1,226 @@
+/*
+ * $Id$
+ * $URL$
+ * This file is part of the program TFpredict. TFpredict performs the
+ * identification and structural characterization of transcription factors.
+ *
+ * Copyright (C) 2010-2014 Center for Bioinformatics Tuebingen (ZBIT),
+ * University of Tuebingen by Johannes Eichner, Florian Topf, Andreas Draeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes feature vectors in a binary sparse format (compressed sparse rows),
+ * which can be read without text parsing by {@link BinaryFeatureFileReader}.
+ * Each row holds the label, the feature indices (starting at 1 as in libsvm
+ * files), the feature values and the name(s) of the sequence(s).
+ *
+ * Layout (big-endian):
+ * - header: magic number, version, number of rows, number of features,
+ *           number of non-zero entries (long), size of values in bytes (4 or 8)
+ * - labels: double[numRows]
+ * - row pointers: long[numRows+1]
+ * - feature indices: int[nnz]
+ * - feature values: float[nnz] or double[nnz]
+ * - names: length of UTF-8 encoded name (int) followed by the bytes for each row
+ *
+ * @author Johannes Eichner
+ * @version $Rev$
+ * @since 1.0
+ */
+public class BinaryFeatureFileWriter {
+
+	public static final int MAGIC = 0x54465042;  // "TFPB"
+	public static final int VERSION = 1;
+	public static final int HEADER_SIZE = 32;
+
+	private boolean mergeDuplicates;
+	private boolean singlePrecision;
+
+	private int numRows = 0;
+	private int numFeatures = 0;
+	private double[] labels = new double[1024];
+	private long[] rowPtr = new long[1025];
+	private int[] indices = new int[8192];
+	private double[] values = new double[8192];
+	private List<StringBuffer> names = new ArrayList<StringBuffer>();
+
+	// used to merge the names of identical rows
+	private Map<RowKey, Integer> row2idx = new HashMap<RowKey, Integer>();
+
+	/**
+	 * @param mergeDuplicates   identical rows (label and features) are stored once with all names separated by tabs
+	 * @param singlePrecision   values are stored as float instead of double
+	 */
+	public BinaryFeatureFileWriter(boolean mergeDuplicates, boolean singlePrecision) {
+		this.mergeDuplicates = mergeDuplicates;
+		this.singlePrecision = singlePrecision;
+	}
+
+	public BinaryFeatureFileWriter() {
+		this(false, false);
+	}
+
+
+	// name of the binary file which belongs to a feature file in libsvm format
+	public static String getBinaryFileName(String featureFile) {
+		return featureFile.replaceFirst("\\.txt$", "") + ".bin";
+	}
+
+
+	/**
+	 * Adds a row with the first length entries of the given indices (ascending, starting at 1) and values.
+	 * @return index of the row (i.e., index of the existing row if duplicates are merged)
+	 */
+	public int addRow(double label, int[] featIndices, double[] featValues, int length, String name) {
+
+		if (mergeDuplicates) {
+			RowKey key = new RowKey(label, Arrays.copyOf(featIndices, length), Arrays.copyOf(featValues, length));
+			Integer rowIdx = row2idx.get(key);
+			if (rowIdx != null) {
+				names.get(rowIdx).append('\t').append(name);
+				return rowIdx;
+			}
+			row2idx.put(key, numRows);
+		}
+
+		// enlarge arrays if necessary
+		if (numRows == labels.length) {
+			labels = Arrays.copyOf(labels, labels.length * 2);
+			rowPtr = Arrays.copyOf(rowPtr, labels.length + 1);
+		}
+		int nnz = (int) rowPtr[numRows];
+		if (nnz + length > indices.length) {
+			int newLength = Math.max(indices.length * 2, nnz + length);
+			indices = Arrays.copyOf(indices, newLength);
+			values = Arrays.copyOf(values, newLength);
+		}
+
+		System.arraycopy(featIndices, 0, indices, nnz, length);
+		System.arraycopy(featValues, 0, values, nnz, length);
+		if (length > 0) {
+			numFeatures = Math.max(numFeatures, featIndices[length-1]);
+		}
+		labels[numRows] = label;
+		rowPtr[numRows+1] = nnz + length;
+		names.add(new StringBuffer(name));
+		return numRows++;
+	}
+
+
+	// adds a dense feature vector (features with value zero are skipped if desired)
+	public int addDenseRow(double label, double[] featureVector, boolean skipZeros, String name) {
+
+		int[] featIndices = new int[featureVector.length];
+		double[] featValues = new double[featureVector.length];
+		int length = 0;
+		for (int i=0; i<featureVector.length; i++) {
+			if (skipZeros && featureVector[i] == 0) continue;
+			featIndices[length] = i+1;
+			featValues[length++] = featureVector[i];
+		}
+		return addRow(label, featIndices, featValues, length, name);
+	}
+
+
+	public int getNumRows() {
+		return numRows;
+	}
+
+
+	public void write(String binaryFile) {
+
+		try {
+			DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(binaryFile), 1 << 16));
+			long nnz = rowPtr[numRows];
+
+			dos.writeInt(MAGIC);
+			dos.writeInt(VERSION);
+			dos.writeInt(numRows);
+			dos.writeInt(numFeatures);
+			dos.writeLong(nnz);
+			dos.writeInt(singlePrecision ? 4 : 8);
+			dos.writeInt(0);
+
+			for (int i=0; i<numRows; i++) {
+				dos.writeDouble(labels[i]);
+			}
+			for (int i=0; i<=numRows; i++) {
+				dos.writeLong(rowPtr[i]);
+			}
+			for (int k=0; k<nnz; k++) {
+				dos.writeInt(indices[k]);
+			}
+			for (int k=0; k<nnz; k++) {
+				if (singlePrecision) {
+					dos.writeFloat((float) values[k]);
+				} else {
+					dos.writeDouble(values[k]);
+				}
+			}
+			for (int i=0; i<numRows; i++) {
+				byte[] name = names.get(i).toString().getBytes("UTF-8");
+				dos.writeInt(name.length);
+				dos.write(name);
+			}
+			dos.close();
+
+		} catch (IOException ioe) {
+			System.out.println(ioe.getMessage());
+			System.out.println("IOException occurred while writing binary feature file: " + binaryFile);
+		}
+	}
+
+
+	// key object: label and features of a row
+	private static class RowKey {
+
+		double label;
+		int[] indices;
+		double[] values;
+		int hash;
+
+		public RowKey(double label, int[] indices, double[] values) {
+			this.label = label;
+			this.indices = indices;
+			this.values = values;
+			long labelBits = Double.doubleToLongBits(label);
+			this.hash = 31 * (31 * (int) (labelBits ^ (labelBits >>> 32)) + Arrays.hashCode(indices)) + Arrays.hashCode(values);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof RowKey)) return false;
+			RowKey other = (RowKey) obj;
+			return Double.doubleToLongBits(label) == Double.doubleToLongBits(other.label) && Arrays.equals(indices, other.indices) && Arrays.equals(values, other.values);
+		}
+	}
+}
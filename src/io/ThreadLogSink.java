@@ -0,0 +1,115 @@
+/*
+ * $Id$
+ * $URL$
+ * This file is part of the program TFpredict. TFpredict performs the
+ * identification and structural characterization of transcription factors.
+ *
+ * Copyright (C) 2010-2014 Center for Bioinformatics Tuebingen (ZBIT),
+ * University of Tuebingen by Johannes Eichner, Florian Topf, Andreas Draeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * Output stream which writes to a sink registered for the current thread, so
+ * that output of third-party code (e.g., debug output of LibSVM printed to
+ * System.out) can be captured, suppressed or routed per thread without
+ * replacing the JVM-wide stream while other threads are running.
+ *
+ * Threads without a registered sink write to the default sink, i.e., the
+ * stream which was used as System.out when the sink was installed.
+ *
+ * @author Johannes Eichner
+ * @version $Rev$
+ * @since 1.0
+ */
+public class ThreadLogSink extends OutputStream {
+
+	// discards all output
+	public static final OutputStream NULL_SINK = new OutputStream() {
+		public void write(int b) {}
+		public void write(byte[] b, int off, int len) {}
+	};
+
+	private static ThreadLogSink systemOutSink = null;
+
+	private OutputStream defaultSink;
+	private ThreadLocal<OutputStream> threadSink = new ThreadLocal<OutputStream>();
+
+	public ThreadLogSink(OutputStream defaultSink) {
+		this.defaultSink = defaultSink;
+	}
+
+
+	/**
+	 * Replaces System.out by a stream which writes to the sink of the current thread.
+	 * The replacement is done only once, subsequent calls return the installed sink.
+	 */
+	public static synchronized ThreadLogSink getSystemOutSink() {
+
+		if (systemOutSink == null) {
+			systemOutSink = new ThreadLogSink(System.out);
+			System.setOut(new PrintStream(systemOutSink, true));
+		}
+		return systemOutSink;
+	}
+
+
+	/**
+	 * Registers the sink for the current thread (null --> default sink).
+	 * @return the sink which was registered before (to be restored by the caller)
+	 */
+	public OutputStream setSink(OutputStream sink) {
+
+		OutputStream previousSink = threadSink.get();
+		if (sink == null) {
+			threadSink.remove();
+		} else {
+			threadSink.set(sink);
+		}
+		return previousSink;
+	}
+
+	// sink of the current thread (null if the default sink is used)
+	public OutputStream getSink() {
+		return threadSink.get();
+	}
+
+	private OutputStream getCurrentSink() {
+
+		OutputStream sink = threadSink.get();
+		return (sink == null) ? defaultSink : sink;
+	}
+
+
+	@Override
+	public void write(int b) throws IOException {
+		getCurrentSink().write(b);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		getCurrentSink().write(b, off, len);
+	}
+
+	@Override
+	public void flush() throws IOException {
+		getCurrentSink().flush();
+	}
+}
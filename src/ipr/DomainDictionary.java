@@ -0,0 +1,157 @@
+/*
+ * $Id$
+ * $URL$
+ * This file is part of the program TFpredict. TFpredict performs the
+ * identification and structural characterization of transcription factors.
+ *
+ * Copyright (C) 2010-2014 Center for Bioinformatics Tuebingen (ZBIT),
+ * University of Tuebingen by Johannes Eichner, Florian Topf, Andreas Draeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ipr;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps InterPro domain IDs to dense integer codes. The code of a domain is
+ * its position in the list the dictionary was created from (e.g., the relevant
+ * domains of a classifier), hence a set of domains can be stored as a
+ * {@link BitSet} whose bit i corresponds to feature i of the domain feature
+ * vectors. Intersections with the vocabulary and feature vector construction
+ * then work on whole words instead of scanning lists of strings.
+ *
+ * @author Johannes Eichner
+ * @version $Rev$
+ * @since 1.0
+ */
+public class DomainDictionary implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private Map<String, Integer> domain2code = new HashMap<String, Integer>();
+	private List<String> domainIDs = new ArrayList<String>();
+
+	public DomainDictionary() {
+	}
+
+	public DomainDictionary(Collection<String> domainIDs) {
+		for (String domainID: domainIDs) {
+			add(domainID);
+		}
+	}
+
+
+	// returns code of the domain (domains which were already added keep their code)
+	public int add(String domainID) {
+
+		Integer code = domain2code.get(domainID);
+		if (code == null) {
+			code = domainIDs.size();
+			domain2code.put(domainID, code);
+			domainIDs.add(domainID);
+		}
+		return code;
+	}
+
+	// returns -1 if the domain is not contained in the dictionary
+	public int getCode(String domainID) {
+
+		Integer code = domain2code.get(domainID);
+		if (code == null) {
+			return -1;
+		}
+		return code;
+	}
+
+	public boolean contains(String domainID) {
+		return domain2code.containsKey(domainID);
+	}
+
+	public String getDomainID(int code) {
+		return domainIDs.get(code);
+	}
+
+	public List<String> getDomainIDs() {
+		return domainIDs;
+	}
+
+	public int size() {
+		return domainIDs.size();
+	}
+
+	/**
+	 * Encodes a set of domain IDs. Domains which are not contained in the
+	 * dictionary are ignored, i.e., the result is the intersection with the
+	 * dictionary.
+	 */
+	public BitSet encode(Collection<String> domainIDs) {
+
+		BitSet domainSet = new BitSet(size());
+		for (String domainID: domainIDs) {
+			Integer code = domain2code.get(domainID);
+			if (code != null) {
+				domainSet.set(code);
+			}
+		}
+		return domainSet;
+	}
+
+	public Map<String, BitSet> encode(Map<String, IprEntry> seq2domain) {
+
+		Map<String, BitSet> seq2domainSet = new HashMap<String, BitSet>();
+		for (String seq: seq2domain.keySet()) {
+			seq2domainSet.put(seq, encode(seq2domain.get(seq).domain_ids));
+		}
+		return seq2domainSet;
+	}
+
+	// domain IDs are returned in the order of their codes
+	public List<String> decode(BitSet domainSet) {
+
+		List<String> domainIDs = new ArrayList<String>();
+		for (int code = domainSet.nextSetBit(0); code >= 0; code = domainSet.nextSetBit(code+1)) {
+			domainIDs.add(this.domainIDs.get(code));
+		}
+		return domainIDs;
+	}
+
+	// number of domains which are contained in the dictionary
+	public int countIntersection(Collection<String> domainIDs) {
+		return encode(domainIDs).cardinality();
+	}
+
+	/**
+	 * Creates a sparse feature vector in libsvm format (e.g., "12:1 57:1")
+	 * from a domain set. Feature indices are the domain codes shifted by the
+	 * given offset (first feature: offset+1).
+	 */
+	public static String createFeatureVector(BitSet domainSet, int offset) {
+
+		StringBuffer fvector = new StringBuffer();
+		for (int code = domainSet.nextSetBit(0); code >= 0; code = domainSet.nextSetBit(code+1)) {
+			if (fvector.length() > 0) {
+				fvector.append(' ');
+			}
+			fvector.append(code + 1 + offset).append(":1");
+		}
+		return fvector.toString();
+	}
+}
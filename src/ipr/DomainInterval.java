@@ -0,0 +1,77 @@
+/*
+ * $Id$
+ * $URL$
+ * This file is part of the program TFpredict. TFpredict performs the
+ * identification and structural characterization of transcription factors.
+ *
+ * Copyright (C) 2010-2014 Center for Bioinformatics Tuebingen (ZBIT),
+ * University of Tuebingen by Johannes Eichner, Florian Topf, Andreas Draeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ipr;
+
+import java.io.Serializable;
+
+/**
+ * Position of an InterPro domain hit within a sequence. The domain is given
+ * by its code in the {@link DomainDictionary} of the {@link DomainIntervalIndex}
+ * the interval belongs to. Start and end positions are inclusive.
+ *
+ * @author Johannes Eichner
+ * @version $Rev$
+ * @since 1.0
+ */
+public class DomainInterval implements Serializable, Comparable<DomainInterval> {
+
+	private static final long serialVersionUID = 1L;
+
+	public final int domain;
+	public final int start;
+	public final int end;
+
+	public DomainInterval(int domain, int start, int end) {
+		this.domain = domain;
+		this.start = start;
+		this.end = end;
+	}
+
+	public int length() {
+		return end - start + 1;
+	}
+
+	public boolean overlaps(DomainInterval interval) {
+		return start <= interval.end && interval.start <= end;
+	}
+
+	// orders intervals by start position, then by end position and domain code
+	public int compareTo(DomainInterval interval) {
+		if (start != interval.start) return (start < interval.start) ? -1 : 1;
+		if (end != interval.end) return (end < interval.end) ? -1 : 1;
+		if (domain != interval.domain) return (domain < interval.domain) ? -1 : 1;
+		return 0;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof DomainInterval)) return false;
+		DomainInterval interval = (DomainInterval) obj;
+		return domain == interval.domain && start == interval.start && end == interval.end;
+	}
+
+	@Override
+	public int hashCode() {
+		return (domain * 31 + start) * 31 + end;
+	}
+}
@@ -0,0 +1,187 @@
+/*
+ * $Id$
+ * $URL$
+ * This file is part of the program TFpredict. TFpredict performs the
+ * identification and structural characterization of transcription factors.
+ *
+ * Copyright (C) 2010-2014 Center for Bioinformatics Tuebingen (ZBIT),
+ * University of Tuebingen by Johannes Eichner, Florian Topf, Andreas Draeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ipr;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of all InterPro domain hits of one sequence. Hits are stored as
+ * {@link DomainInterval} records grouped by domain, so that the longest
+ * instance of each domain, the union of overlapping instances and the
+ * instances of a subset of domains (e.g., DNA-binding domains) can be
+ * obtained without parsing position strings. Domains are kept in the order
+ * of their first hit. Domain codes refer to a {@link DomainDictionary} which
+ * may be shared by the indices of several sequences.
+ *
+ * @author Johannes Eichner
+ * @version $Rev$
+ * @since 1.0
+ */
+public class DomainIntervalIndex implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private DomainDictionary domainDict;
+	private List<Integer> domainOrder = new ArrayList<Integer>();
+	private Map<Integer, Integer> domain2rank = new HashMap<Integer, Integer>();
+	private Map<Integer, List<DomainInterval>> domain2hits = new HashMap<Integer, List<DomainInterval>>();
+	private Map<Integer, DomainInterval> domain2longest = new HashMap<Integer, DomainInterval>();
+
+	public DomainIntervalIndex(DomainDictionary domainDict) {
+		this.domainDict = domainDict;
+	}
+
+
+	/**
+	 * Adds a domain hit.
+	 * @return true if the hit is the longest instance of the domain
+	 * (first hits are always the longest instance, ties keep the earlier hit)
+	 */
+	public boolean add(String domainID, int start, int end) {
+
+		int code = domainDict.add(domainID);
+		DomainInterval interval = new DomainInterval(code, start, end);
+
+		List<DomainInterval> hits = domain2hits.get(code);
+		if (hits == null) {
+			hits = new ArrayList<DomainInterval>();
+			domain2hits.put(code, hits);
+			domain2rank.put(code, domainOrder.size());
+			domainOrder.add(code);
+		}
+		hits.add(interval);
+
+		DomainInterval longest = domain2longest.get(code);
+		if (longest == null || interval.length() > longest.length()) {
+			domain2longest.put(code, interval);
+			return true;
+		}
+		return false;
+	}
+
+	public boolean contains(String domainID) {
+		int code = domainDict.getCode(domainID);
+		return code != -1 && domain2hits.containsKey(code);
+	}
+
+	// position of the domain in the order of first hits (-1 if the domain was not found)
+	public int indexOf(String domainID) {
+		Integer rank = domain2rank.get(domainDict.getCode(domainID));
+		return (rank == null) ? -1 : rank;
+	}
+
+	public int getNumDomains() {
+		return domainOrder.size();
+	}
+
+	public List<Integer> getDomainCodes() {
+		return domainOrder;
+	}
+
+	public DomainDictionary getDomainDictionary() {
+		return domainDict;
+	}
+
+	public String getDomainID(DomainInterval interval) {
+		return domainDict.getDomainID(interval.domain);
+	}
+
+	public List<DomainInterval> getInstances(int domainCode) {
+		return domain2hits.get(domainCode);
+	}
+
+	public DomainInterval getLongestInstance(int domainCode) {
+		return domain2longest.get(domainCode);
+	}
+
+	// overlapping instances of each selected domain are merged into one interval (all domains if selection is null)
+	public List<DomainInterval> getMergedInstances(BitSet selectedDomains) {
+
+		List<DomainInterval> merged = new ArrayList<DomainInterval>();
+		for (int code: domainOrder) {
+			if (selectedDomains == null || selectedDomains.get(code)) {
+				merged.addAll(mergeOverlaps(domain2hits.get(code)));
+			}
+		}
+		return merged;
+	}
+
+	/**
+	 * Longest region of each selected domain, where overlapping instances (e.g., hits of
+	 * several member databases) are merged first (all domains if selection is null).
+	 * @return one interval per domain in the order of the first hits
+	 */
+	public List<DomainInterval> getLongestMergedInstances(BitSet selectedDomains) {
+
+		List<DomainInterval> longest = new ArrayList<DomainInterval>();
+		DomainInterval best = null;
+		for (DomainInterval interval: getMergedInstances(selectedDomains)) {
+			if (best != null && best.domain != interval.domain) {
+				longest.add(best);
+				best = null;
+			}
+			if (best == null || interval.length() > best.length()) {
+				best = interval;
+			}
+		}
+		if (best != null) {
+			longest.add(best);
+		}
+		return longest;
+	}
+
+	/**
+	 * Merges overlapping intervals of the same domain.
+	 * @return merged intervals sorted by start position
+	 */
+	public static List<DomainInterval> mergeOverlaps(List<DomainInterval> intervals) {
+
+		List<DomainInterval> sorted = new ArrayList<DomainInterval>(intervals);
+		Collections.sort(sorted);
+
+		List<DomainInterval> merged = new ArrayList<DomainInterval>();
+		Map<Integer, Integer> domain2last = new HashMap<Integer, Integer>();
+		for (DomainInterval interval: sorted) {
+			Integer lastIdx = domain2last.get(interval.domain);
+			if (lastIdx != null && merged.get(lastIdx).overlaps(interval)) {
+				DomainInterval last = merged.get(lastIdx);
+				merged.set(lastIdx, new DomainInterval(last.domain, last.start, Math.max(last.end, interval.end)));
+			} else {
+				domain2last.put(interval.domain, merged.size());
+				merged.add(interval);
+			}
+		}
+		return merged;
+	}
+
+	// format used in result files (e.g., "IPR001356    120\t176")
+	public String format(DomainInterval interval) {
+		return getDomainID(interval) + "    " + interval.start + "\t" + interval.end;
+	}
+}
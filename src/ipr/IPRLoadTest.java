@@ -0,0 +1,299 @@
+/*
+ * $Id$
+ * $URL$
+ * This file is part of the program TFpredict. TFpredict performs the
+ * identification and structural characterization of transcription factors.
+ *
+ * Copyright (C) 2010-2014 Center for Bioinformatics Tuebingen (ZBIT),
+ * University of Tuebingen by Johannes Eichner, Florian Topf, Andreas Draeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ipr;
+
+import io.BasicTools;
+
+import java.io.File;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import modes.Predict;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.cli.PosixParser;
+
+/**
+ * Load test for the web mode of InterProScan as used by the prediction mode.
+ * Sequences are split into batches of the size accepted by the prediction
+ * mode and each batch is processed by the InterProScan step of {@link Predict}
+ * (i.e., {@link IPRrun} submits one job per sequence, polls the jobs and
+ * downloads the TSV and SVG results, then the domains are extracted and
+ * filtered). Batches are run at increasing job concurrency against an
+ * {@link IPRStandInServer} (started in-process unless an endpoint is given)
+ * and throughput as well as tail latency are reported per concurrency level.
+ *
+ * @author Johannes Eichner
+ * @version $Rev$
+ * @since 1.0
+ */
+public class IPRLoadTest {
+
+	private static final String aminoAcids = "ACDEFGHIKLMNPQRSTVWY";
+	private static final double[] reportedPercentiles = new double[] {50, 95, 99, 100};
+
+	private String endpoint = null;
+	private String basedir = System.getProperty("java.io.tmpdir") + "/iprloadtest/";
+	private String fastaFile = null;
+	private int[] concurrencyLevels = new int[] {1, 2, 4, 8, 16};
+	private int numBatches = 20;
+	private int batchSize = 10;
+
+	// settings of the in-process stand-in service
+	private long latencyMillis = 50;
+	private long latencyJitterMillis = 0;
+	private long jobRuntimeMillis = 2000;
+	private double failureRate = 0;
+	private double jobFailureRate = 0;
+	private String cannedTSVFile = null;
+
+	static DecimalFormat df = new DecimalFormat("0.00");
+	static {
+		DecimalFormatSymbols symb = new DecimalFormatSymbols();
+		symb.setDecimalSeparator('.');
+		df.setDecimalFormatSymbols(symb);
+	}
+
+
+	public static void main(String[] args) {
+
+		IPRLoadTest loadTest = new IPRLoadTest();
+		loadTest.parseArguments(args);
+		loadTest.run();
+	}
+
+	private void parseArguments(String[] args) {
+
+		Options options = new Options();
+		options.addOption("endpoint", true, "endpoint of a running InterProScan (stand-in) service");
+		options.addOption("basedir", true, "directory for job results");
+		options.addOption("fasta", true, "FASTA file with query sequences (default: random sequences)");
+		options.addOption("concurrency", true, "comma-separated list of concurrent batches (default: 1,2,4,8,16)");
+		options.addOption("batches", true, "number of batches per concurrency level (default: 20)");
+		options.addOption("batchSize", true, "number of sequences per batch (default: 10)");
+		options.addOption("latency", true, "latency of the stand-in service in milliseconds (default: 50)");
+		options.addOption("jitter", true, "maximum latency jitter of the stand-in service in milliseconds (default: 0)");
+		options.addOption("jobRuntime", true, "job runtime of the stand-in service in milliseconds (default: 2000)");
+		options.addOption("failureRate", true, "fraction of SOAP calls answered with a fault (default: 0)");
+		options.addOption("jobFailureRate", true, "fraction of jobs which end with status FAILURE (default: 0)");
+		options.addOption("tsv", true, "InterProScan TSV file with canned results");
+
+		CommandLine cmd = null;
+		CommandLineParser cmdparser = new PosixParser();
+		try {
+			cmd = cmdparser.parse(options, args);
+		} catch (ParseException e) {
+			e.printStackTrace();
+			System.exit(1);
+		}
+
+		if (cmd.hasOption("endpoint")) {
+			endpoint = cmd.getOptionValue("endpoint");
+		}
+		if (cmd.hasOption("basedir")) {
+			basedir = cmd.getOptionValue("basedir");
+		}
+		if (!basedir.endsWith("/")) basedir += "/";
+
+		if (cmd.hasOption("fasta")) {
+			fastaFile = cmd.getOptionValue("fasta");
+		}
+		if (cmd.hasOption("concurrency")) {
+			String[] levels = cmd.getOptionValue("concurrency").split(",");
+			concurrencyLevels = new int[levels.length];
+			for (int i=0; i<levels.length; i++) {
+				concurrencyLevels[i] = Integer.parseInt(levels[i].trim());
+			}
+		}
+		if (cmd.hasOption("batches")) {
+			numBatches = Integer.parseInt(cmd.getOptionValue("batches"));
+		}
+		if (cmd.hasOption("batchSize")) {
+			batchSize = Integer.parseInt(cmd.getOptionValue("batchSize"));
+		}
+		if (cmd.hasOption("latency")) {
+			latencyMillis = Long.parseLong(cmd.getOptionValue("latency"));
+		}
+		if (cmd.hasOption("jitter")) {
+			latencyJitterMillis = Long.parseLong(cmd.getOptionValue("jitter"));
+		}
+		if (cmd.hasOption("jobRuntime")) {
+			jobRuntimeMillis = Long.parseLong(cmd.getOptionValue("jobRuntime"));
+		}
+		if (cmd.hasOption("failureRate")) {
+			failureRate = Double.parseDouble(cmd.getOptionValue("failureRate"));
+		}
+		if (cmd.hasOption("jobFailureRate")) {
+			jobFailureRate = Double.parseDouble(cmd.getOptionValue("jobFailureRate"));
+		}
+		if (cmd.hasOption("tsv")) {
+			cannedTSVFile = cmd.getOptionValue("tsv");
+		}
+	}
+
+	public void run() {
+
+		IPRStandInServer server = null;
+		if (endpoint == null) {
+			server = new IPRStandInServer(0);
+			server.setLatency(latencyMillis, latencyJitterMillis);
+			server.setJobRuntime(jobRuntimeMillis);
+			server.setFailureRates(failureRate, jobFailureRate);
+			if (cannedTSVFile != null) {
+				server.setCannedTSV(cannedTSVFile);
+			}
+			server.start();
+			endpoint = server.getEndPoint();
+		}
+		IPRrun.serviceEndPoint = endpoint;
+		System.out.println("Endpoint: " + endpoint);
+		System.out.println("Batches per level: " + numBatches + ", sequences per batch: " + batchSize + "\n");
+
+		List<Map<String, String>> batches = createBatches();
+
+		System.out.println("concurrency\tbatches\tfailed\tbatches/s\tseqs/s\tp50 (s)\tp95 (s)\tp99 (s)\tmax (s)");
+		for (int concurrency: concurrencyLevels) {
+			runLevel(concurrency, batches);
+		}
+
+		if (server != null) {
+			System.out.println("\nStand-in service: " + server.getNumJobs() + " jobs, " + server.getNumRequests() + " requests, " + server.getNumFaults() + " faults.");
+			server.stop();
+		}
+	}
+
+	private void runLevel(int concurrency, List<Map<String, String>> batches) {
+
+		List<BatchJob> queue = new ArrayList<BatchJob>();
+		for (int i=0; i<batches.size(); i++) {
+			queue.add(new BatchJob(basedir + "c" + concurrency + "_batch" + (i+1) + "/", batches.get(i)));
+		}
+
+		List<Future<Long>> results = null;
+		ExecutorService exec = Executors.newFixedThreadPool(concurrency);
+		long startTime = System.currentTimeMillis();
+		try {
+			results = exec.invokeAll(queue);
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+		}
+		long wallTime = System.currentTimeMillis() - startTime;
+		exec.shutdown();
+
+		List<Double> latencies = new ArrayList<Double>();
+		int numFailed = 0;
+		for (Future<Long> result: results) {
+			try {
+				latencies.add(result.get() / 1000.0);
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+			} catch (ExecutionException e) {
+				numFailed++;
+			}
+		}
+
+		int numFinished = latencies.size();
+		double seconds = Math.max(wallTime, 1) / 1000.0;
+		StringBuffer line = new StringBuffer(concurrency + "\t" + batches.size() + "\t" + numFailed + "\t" +
+				df.format(numFinished / seconds) + "\t" + df.format(numFinished * batchSize / seconds));
+
+		double[] latencyArray = BasicTools.Double2double(latencies.toArray(new Double[] {}));
+		for (double perc: reportedPercentiles) {
+			if (latencyArray.length == 0) {
+				line.append("\tNA");
+			} else {
+				line.append("\t" + df.format(BasicTools.computePercentile(latencyArray, perc)));
+			}
+		}
+		System.out.println(line.toString());
+	}
+
+	private List<Map<String, String>> createBatches() {
+
+		Map<String, String> sequences = null;
+		if (fastaFile != null) {
+			sequences = BasicTools.readFASTA(fastaFile, true);
+		} else {
+			sequences = new LinkedHashMap<String, String>();
+			Random random = new Random(0);
+			for (int i=0; i<numBatches * batchSize; i++) {
+				StringBuffer seq = new StringBuffer();
+				for (int j=0; j<300; j++) {
+					seq.append(aminoAcids.charAt(random.nextInt(aminoAcids.length())));
+				}
+				sequences.put("Sequence_" + (i+1), seq.toString());
+			}
+		}
+		List<String> headers = new ArrayList<String>(sequences.keySet());
+
+		// reuse the sequences round-robin if the FASTA file is too small
+		List<Map<String, String>> batches = new ArrayList<Map<String, String>>();
+		for (int i=0; i<numBatches; i++) {
+			Map<String, String> batch = new LinkedHashMap<String, String>();
+			for (int j=0; j<batchSize; j++) {
+				String header = headers.get((i * batchSize + j) % headers.size());
+				batch.put(header, sequences.get(header));
+			}
+			batches.add(batch);
+		}
+		return batches;
+	}
+
+
+	class BatchJob implements Callable<Long> {
+
+		String batchdir;
+		Map<String, String> sequences;
+
+		BatchJob(String batchdir, Map<String, String> sequences) {
+			this.batchdir = batchdir;
+			this.sequences = sequences;
+		}
+
+		public Long call() throws Exception {
+
+			long startTime = System.currentTimeMillis();
+			new File(batchdir).mkdirs();
+			BasicTools.writeFASTA(sequences, batchdir + "query.fasta");
+
+			// jobs without result (e.g., failed jobs) raise an exception
+			Predict predictor = Predict.getInterproScanPredictor();
+			predictor.runInterproScan(batchdir + "query.fasta", batchdir);
+
+			return System.currentTimeMillis() - startTime;
+		}
+	}
+}
@@ -0,0 +1,462 @@
+/*
+ * $Id$
+ * $URL$
+ * This file is part of the program TFpredict. TFpredict performs the
+ * identification and structural characterization of transcription factors.
+ *
+ * Copyright (C) 2010-2014 Center for Bioinformatics Tuebingen (ZBIT),
+ * University of Tuebingen by Johannes Eichner, Florian Topf, Andreas Draeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ipr;
+
+import io.BasicTools;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.apache.axis.encoding.Base64;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.cli.PosixParser;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local stand-in for the EBI JDispatcher InterProScan 5 SOAP service.
+ * Implements the operations used by {@link IPRScan5Client} (run, getStatus,
+ * getResultTypes and getResult) and answers them with canned TSV results,
+ * so that the web mode of {@link IPRrun} can be load-tested without
+ * submitting jobs to EBI. Response latency, job runtime and failure rates
+ * can be configured.
+ *
+ * @author Johannes Eichner
+ * @version $Rev$
+ * @since 1.0
+ */
+public class IPRStandInServer {
+
+	private static final String soapEnvNamespace = "http://schemas.xmlsoap.org/soap/envelope/";
+	private static final String jdispatcherNamespace = "http://soap.jdispatcher.ebi.ac.uk";
+	private static final Pattern fastaHeaderPattern = Pattern.compile(">\\s*(\\S+)");
+
+	private static final String STATUS_RUNNING = "RUNNING";
+	private static final String STATUS_FINISHED = "FINISHED";
+	private static final String STATUS_FAILURE = "FAILURE";
+	private static final String STATUS_NOT_FOUND = "NOT_FOUND";
+
+	// canned result rows used if no TSV file is given (column 0 is replaced by the sequence ID)
+	private static final String[] defaultCannedTSV = new String[] {
+		"query\t0\t300\tPfam\tPF00046\tHomeobox domain\t120\t176\t1.2E-20\tT\t10-04-2014\tIPR001356\tHomeobox domain\tGO:0003677|GO:0006355",
+		"query\t0\t300\tSMART\tSM00389\tHOX\t118\t180\t3.4E-22\tT\t10-04-2014\tIPR001356\tHomeobox domain\tGO:0003677|GO:0006355",
+		"query\t0\t300\tPfam\tPF00170\tbZIP transcription factor\t210\t268\t5.1E-15\tT\t10-04-2014\tIPR004827\tBasic-leucine zipper domain\tGO:0003700|GO:0006355|GO:0043565",
+		"query\t0\t300\tPfam\tPF00069\tProtein kinase domain\t10\t90\t2.0E-8\tT\t10-04-2014\tIPR000719\tProtein kinase domain\tGO:0004672|GO:0005524|GO:0006468"
+	};
+
+	private int port = 8080;
+	private int numThreads = 16;
+	private long latencyMillis = 50;
+	private long latencyJitterMillis = 0;
+	private long jobRuntimeMillis = 2000;
+	private double failureRate = 0;
+	private double jobFailureRate = 0;
+	private List<String[]> cannedTSV = new ArrayList<String[]>();
+
+	private HttpServer server = null;
+	private ExecutorService exec = null;
+	private Map<String, StandInJob> jobs = new ConcurrentHashMap<String, StandInJob>();
+	private AtomicInteger jobCounter = new AtomicInteger();
+	private AtomicInteger requestCounter = new AtomicInteger();
+	private AtomicInteger faultCounter = new AtomicInteger();
+	private Random random = new Random(0);
+
+	public IPRStandInServer() {
+		for (String line: defaultCannedTSV) {
+			cannedTSV.add(line.split("\t"));
+		}
+	}
+
+	public IPRStandInServer(int port) {
+		this();
+		this.port = port;
+	}
+
+
+	public static void main(String[] args) {
+
+		IPRStandInServer server = new IPRStandInServer();
+		server.parseArguments(args);
+		server.start();
+		System.out.println("InterProScan stand-in service listening on " + server.getEndPoint());
+	}
+
+	private void parseArguments(String[] args) {
+
+		Options options = new Options();
+		options.addOption("port", true, "port of the stand-in service (default: 8080)");
+		options.addOption("threads", true, "number of threads serving requests (default: 16)");
+		options.addOption("latency", true, "latency of each SOAP call in milliseconds (default: 50)");
+		options.addOption("jitter", true, "maximum random jitter added to the latency in milliseconds (default: 0)");
+		options.addOption("jobRuntime", true, "time in milliseconds until a submitted job is finished (default: 2000)");
+		options.addOption("failureRate", true, "fraction of SOAP calls answered with a fault (default: 0)");
+		options.addOption("jobFailureRate", true, "fraction of jobs which end with status FAILURE (default: 0)");
+		options.addOption("tsv", true, "InterProScan TSV file with canned results");
+
+		CommandLine cmd = null;
+		CommandLineParser cmdparser = new PosixParser();
+		try {
+			cmd = cmdparser.parse(options, args);
+		} catch (ParseException e) {
+			e.printStackTrace();
+			System.exit(1);
+		}
+
+		if (cmd.hasOption("port")) {
+			port = Integer.parseInt(cmd.getOptionValue("port"));
+		}
+		if (cmd.hasOption("threads")) {
+			numThreads = Integer.parseInt(cmd.getOptionValue("threads"));
+		}
+		if (cmd.hasOption("latency")) {
+			latencyMillis = Long.parseLong(cmd.getOptionValue("latency"));
+		}
+		if (cmd.hasOption("jitter")) {
+			latencyJitterMillis = Long.parseLong(cmd.getOptionValue("jitter"));
+		}
+		if (cmd.hasOption("jobRuntime")) {
+			jobRuntimeMillis = Long.parseLong(cmd.getOptionValue("jobRuntime"));
+		}
+		if (cmd.hasOption("failureRate")) {
+			failureRate = Double.parseDouble(cmd.getOptionValue("failureRate"));
+		}
+		if (cmd.hasOption("jobFailureRate")) {
+			jobFailureRate = Double.parseDouble(cmd.getOptionValue("jobFailureRate"));
+		}
+		if (cmd.hasOption("tsv")) {
+			setCannedTSV(cmd.getOptionValue("tsv"));
+		}
+	}
+
+	public void start() {
+
+		try {
+			server = HttpServer.create(new InetSocketAddress(port), 0);
+		} catch (IOException e) {
+			System.out.println("Error. Stand-in service could not be started on port " + port + ".");
+			e.printStackTrace();
+			System.exit(1);
+		}
+		// port 0 picks a free port
+		port = server.getAddress().getPort();
+		exec = Executors.newFixedThreadPool(numThreads);
+		server.setExecutor(exec);
+		server.createContext("/", new SOAPHandler());
+		server.start();
+	}
+
+	public void stop() {
+		if (server != null) {
+			server.stop(0);
+			exec.shutdown();
+			server = null;
+		}
+	}
+
+	public String getEndPoint() {
+		return "http://localhost:" + port + "/jdispatcher";
+	}
+
+	public void setCannedTSV(String tsvFile) {
+
+		cannedTSV.clear();
+		for (String[] row: BasicTools.readFile2ListSplitLines(tsvFile)) {
+			// skip empty lines
+			if (row.length < 2) continue;
+			cannedTSV.add(row);
+		}
+	}
+
+	public void setLatency(long latencyMillis, long latencyJitterMillis) {
+		this.latencyMillis = latencyMillis;
+		this.latencyJitterMillis = latencyJitterMillis;
+	}
+
+	public void setJobRuntime(long jobRuntimeMillis) {
+		this.jobRuntimeMillis = jobRuntimeMillis;
+	}
+
+	public void setFailureRates(double failureRate, double jobFailureRate) {
+		this.failureRate = failureRate;
+		this.jobFailureRate = jobFailureRate;
+	}
+
+	public void setNumThreads(int numThreads) {
+		this.numThreads = numThreads;
+	}
+
+	public int getNumRequests() {
+		return requestCounter.get();
+	}
+
+	public int getNumFaults() {
+		return faultCounter.get();
+	}
+
+	public int getNumJobs() {
+		return jobCounter.get();
+	}
+
+
+	private String run(Element request) {
+
+		String sequence = getChildText(request, "sequence");
+		if (sequence == null) {
+			throw new IllegalArgumentException("No sequence given.");
+		}
+		String seqID = "query";
+		Matcher fastaHeaderMatch = fastaHeaderPattern.matcher(sequence);
+		if (fastaHeaderMatch.find()) {
+			seqID = fastaHeaderMatch.group(1);
+		}
+		String jobID = "iprscan5-S" + System.currentTimeMillis() + "-" + jobCounter.incrementAndGet() + "-stand-in";
+		jobs.put(jobID, new StandInJob(seqID, nextRandom() < jobFailureRate));
+
+		return createResponse("runResponse", "<jobId>" + jobID + "</jobId>");
+	}
+
+	private String getStatus(Element request) {
+
+		StandInJob job = jobs.get(getChildText(request, "jobId"));
+		String status = STATUS_NOT_FOUND;
+		if (job != null) {
+			status = job.getStatus();
+		}
+		return createResponse("getStatusResponse", "<status>" + status + "</status>");
+	}
+
+	private String getResultTypes(Element request) {
+
+		// only finished jobs have results
+		getFinishedJob(getChildText(request, "jobId"));
+
+		StringBuffer resultTypes = new StringBuffer("<resultTypes>");
+		resultTypes.append(createResultType("tsv", "Tab separated values", "text/tab-separated-values", "tsv"));
+		resultTypes.append(createResultType("svg", "Scalable vector graphics", "image/svg+xml", "svg"));
+		resultTypes.append("</resultTypes>");
+
+		return createResponse("getResultTypesResponse", resultTypes.toString());
+	}
+
+	private String getResult(Element request) {
+
+		StandInJob job = getFinishedJob(getChildText(request, "jobId"));
+		String type = getChildText(request, "type");
+
+		String result = null;
+		if ("tsv".equals(type)) {
+			StringBuffer tsv = new StringBuffer();
+			for (String[] row: cannedTSV) {
+				tsv.append(job.seqID);
+				for (int i=1; i<row.length; i++) {
+					tsv.append("\t" + row[i]);
+				}
+				tsv.append("\n");
+			}
+			result = tsv.toString();
+
+		} else if ("svg".equals(type)) {
+			result = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<svg xmlns=\"http://www.w3.org/2000/svg\"><text>" + job.seqID + "</text></svg>\n";
+
+		} else {
+			throw new IllegalArgumentException("Unknown result type: " + type);
+		}
+		String output = Base64.encode(result.getBytes());
+
+		return createResponse("getResultResponse", "<output>" + output + "</output>");
+	}
+
+	private StandInJob getFinishedJob(String jobID) {
+
+		StandInJob job = jobs.get(jobID);
+		if (job == null) {
+			throw new IllegalArgumentException("Job not found: " + jobID);
+		}
+		if (!job.getStatus().equals(STATUS_FINISHED)) {
+			throw new IllegalArgumentException("Job has not finished successfully: " + jobID);
+		}
+		return job;
+	}
+
+
+	private static String createResultType(String identifier, String label, String mediaType, String fileSuffix) {
+		return "<type><identifier>" + identifier + "</identifier><label>" + label + "</label><description>" + label +
+			   "</description><mediaType>" + mediaType + "</mediaType><fileSuffix>" + fileSuffix + "</fileSuffix></type>";
+	}
+
+	private static String createResponse(String operation, String content) {
+		return createEnvelope("<ns:" + operation + " xmlns:ns=\"" + jdispatcherNamespace + "\">" + content + "</ns:" + operation + ">");
+	}
+
+	private static String createFault(String message) {
+		return createEnvelope("<soapenv:Fault><faultcode>soapenv:Server</faultcode><faultstring>" + escapeXML(message) + "</faultstring></soapenv:Fault>");
+	}
+
+	private static String createEnvelope(String body) {
+		return "<?xml version=\"1.0\" encoding=\"UTF-8\"?><soapenv:Envelope xmlns:soapenv=\"" + soapEnvNamespace + "\"><soapenv:Body>" +
+			   body + "</soapenv:Body></soapenv:Envelope>";
+	}
+
+	private static String escapeXML(String text) {
+		return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+	}
+
+	private static String getChildText(Element element, String childName) {
+
+		NodeList children = element.getElementsByTagNameNS("*", childName);
+		if (children.getLength() == 0) {
+			children = element.getElementsByTagName(childName);
+		}
+		if (children.getLength() == 0) {
+			return null;
+		}
+		return children.item(0).getTextContent().trim();
+	}
+
+	private static Element getOperationElement(Document soapRequest) {
+
+		NodeList bodies = soapRequest.getElementsByTagNameNS(soapEnvNamespace, "Body");
+		if (bodies.getLength() == 0) return null;
+
+		NodeList children = bodies.item(0).getChildNodes();
+		for (int i=0; i<children.getLength(); i++) {
+			if (children.item(i).getNodeType() == Node.ELEMENT_NODE) {
+				return (Element) children.item(i);
+			}
+		}
+		return null;
+	}
+
+	private synchronized double nextRandom() {
+		return random.nextDouble();
+	}
+
+	private void simulateLatency() {
+
+		long delay = latencyMillis;
+		if (latencyJitterMillis > 0) {
+			delay += (long) (nextRandom() * latencyJitterMillis);
+		}
+		if (delay <= 0) return;
+		try {
+			Thread.sleep(delay);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+
+	class SOAPHandler implements HttpHandler {
+
+		public void handle(HttpExchange exchange) throws IOException {
+
+			requestCounter.incrementAndGet();
+			String response = null;
+			int httpStatus = 200;
+
+			try {
+				DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+				factory.setNamespaceAware(true);
+				Document soapRequest = factory.newDocumentBuilder().parse(exchange.getRequestBody());
+				Element request = getOperationElement(soapRequest);
+				if (request == null) {
+					throw new IllegalArgumentException("Empty SOAP body.");
+				}
+
+				simulateLatency();
+				if (nextRandom() < failureRate) {
+					throw new IllegalStateException("Injected failure in operation " + request.getLocalName() + ".");
+				}
+
+				String operation = request.getLocalName();
+				if (operation.equals("run")) {
+					response = run(request);
+				} else if (operation.equals("getStatus")) {
+					response = getStatus(request);
+				} else if (operation.equals("getResultTypes")) {
+					response = getResultTypes(request);
+				} else if (operation.equals("getResult")) {
+					response = getResult(request);
+				} else {
+					throw new IllegalArgumentException("Unsupported operation: " + operation);
+				}
+
+			} catch (Exception e) {
+				faultCounter.incrementAndGet();
+				httpStatus = 500;
+				response = createFault(e.getMessage() == null ? e.toString() : e.getMessage());
+			}
+
+			byte[] responseBytes = response.getBytes("UTF-8");
+			exchange.getResponseHeaders().set("Content-Type", "text/xml; charset=UTF-8");
+			exchange.sendResponseHeaders(httpStatus, responseBytes.length);
+			OutputStream os = exchange.getResponseBody();
+			os.write(responseBytes);
+			os.close();
+		}
+	}
+
+	class StandInJob {
+
+		String seqID;
+		long submitTime;
+		boolean fails;
+
+		StandInJob(String seqID, boolean fails) {
+			this.seqID = seqID;
+			this.fails = fails;
+			this.submitTime = System.currentTimeMillis();
+		}
+
+		String getStatus() {
+			if (System.currentTimeMillis() - submitTime < jobRuntimeMillis) {
+				return STATUS_RUNNING;
+			} else if (fails) {
+				return STATUS_FAILURE;
+			}
+			return STATUS_FINISHED;
+		}
+	}
+}
@@ -22,12 +22,8 @@
  */
 package ipr;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.StringTokenizer;
 
 /**
  * This class contains functions for parsing the standard output of InterProScan
@@ -35,6 +31,7 @@ import java.util.StringTokenizer;
  * - parses start and end positions of each predicted InterPro domain   (needed for post-processing with SABINE)
  * - parses GO terms associated with each InterPro domain               (needed to filter DNA-binding domains)
  * - parses InterPro domain descriptions                                (needed for TF class annotation via TransFac)
+ * Use {@link IPRoutputParser} to compute all mappings in one pass over an InterProScan output file.
  *
  * @author Johannes Eichner
  * @version $Rev$
@@ -48,142 +45,30 @@ public class IPRextract {
 	
 	public static Map<String, IprEntry> getSeq2DomainMap(List<String[]> IPRoutput, Boolean label) {
 
-		Map<String, IprEntry> seq2domain = new HashMap<String, IprEntry>();
-		
-		for (int i=0; i < IPRoutput.size(); i++) {
-			String[] domain_entry = IPRoutput.get(i);
-			if (domain_entry.length < 12) continue;
-			String sequence_id = domain_entry[0].trim();
-			String domain_id = domain_entry[11].trim();
-			int domain_start = Integer.parseInt(domain_entry[6]);
-			int domain_end = Integer.parseInt(domain_entry[7]);
-			int curr_domain_length = domain_end - domain_start + 1;
-			String domain_interval = domain_id + "    " + domain_start + "\t" + domain_end;
-			
-			// skip domains for which no InterPro-ID is given
-			if (domain_id.equals("NULL")) {
-				System.out.println("WARNING: Skipped domain " + domain_id + " with missing InterPro-ID");
-			  continue;
-			}
-			
-			IprEntry curr_entry;
-			if (seq2domain.containsKey(sequence_id)) {
-				curr_entry = seq2domain.get(sequence_id);
-				
-				if (!curr_entry.domain_ids.contains(domain_id)) {
-					curr_entry.domain_ids.add(domain_id);
-					curr_entry.domain_pos.add(domain_interval);
-				
-				// use longest instance of domain if multiple intervals were found for the same domain ID
-				} else {
-					int idx = curr_entry.domain_ids.indexOf(domain_id);
-					int old_domain_length = getDomainLength(curr_entry.domain_pos.get(idx));
-					if (curr_domain_length > old_domain_length) {
-						curr_entry.domain_pos.set(idx, domain_interval);
-					}
-				}
-				seq2domain.put(sequence_id, curr_entry);
-			
-			} else {
-				if (label == null) {
-					curr_entry = new IprEntry(sequence_id, domain_id, domain_interval);
-				} else {
-					curr_entry = new IprEntry(sequence_id, label, domain_id, domain_interval);
-				}
-				seq2domain.put(sequence_id, curr_entry);
-			}
+		IPRoutputParser parser = new IPRoutputParser(label);
+		for (String[] domain_entry: IPRoutput) {
+			parser.addSeq2DomainEntry(domain_entry);
 		}
-		return seq2domain;
-	}
-	
-	private static int getDomainLength(String domain_pos) {
-		StringTokenizer strtok = new StringTokenizer(domain_pos);
-		strtok.nextToken();   // skip domain ID (e.g., IPR9381)
-		int domainStart = Integer.parseInt(strtok.nextToken());
-		int domainEnd = Integer.parseInt(strtok.nextToken());
-		int domainLength = domainEnd - domainStart + 1; 
-		return domainLength;
+		return parser.getSeq2DomainMap();
 	}
 	
 	public static Map<String, List<String>> getDomain2SeqMap(List<String[]> IPRoutput) {
 		
-		Map<String, List<String>> domain2seq = new HashMap<String, List<String>>();
-		
-		for (int i = 0; i < IPRoutput.size(); i++) {
-			
-			String[] domain_entry = IPRoutput.get(i);
-			String sequence_id = domain_entry[0].trim();
-			String domain_id = domain_entry[11].trim();
-			
-			// skip domains for which no InterPro-ID is given
-			if (domain_id.equals("NULL")) {
-				continue;
-			}
-
-			List<String> currSeqIDs;
-			if (domain2seq.containsKey(domain_id)) {
-				currSeqIDs = domain2seq.get(domain_id);
-				if (!currSeqIDs.contains(sequence_id)) {
-					currSeqIDs.add(sequence_id);
-					domain2seq.put(domain_id, currSeqIDs);
-				}
-			}
-			else {
-				currSeqIDs = new ArrayList<String>();
-				currSeqIDs.add(sequence_id);
-				domain2seq.put(domain_id, currSeqIDs);
-			}
+		IPRoutputParser parser = new IPRoutputParser();
+		for (String[] domain_entry: IPRoutput) {
+			parser.addDomain2SeqEntry(domain_entry);
 		}
-		return domain2seq;
+		return parser.getDomain2SeqMap();
 	}
 	
 	
 	public static Map<String, IprRaw> parseIPRoutput(List<String[]> IPRoutput) {
 		
-		Map<String, IprRaw> ipr_domains = new HashMap<String, IprRaw>();
-		
-		for (int i = 0; i < IPRoutput.size(); i++) {
-			
-			String[] domain_entry = IPRoutput.get(i);
-					
-			if (domain_entry.length < 13) {
-			  continue;
-			}
-			String domain_id = domain_entry[11].trim();
-			// skip domains for which no InterPro-ID is given
-			// skip domain IDs which were already added
-			if (ipr_domains.containsKey(domain_id)) {
-				continue;
-			}
-			
-			String domain_name1 = domain_entry[5].trim().split(",")[0].trim();
-			String domain_name2 = domain_entry[12].trim().split(",")[0].trim();
-			
-			
-			// parse domain names from description fields (used for TF class annotation via TransFac)
-			HashSet<String> domain_names_set = new HashSet<String>();
-			domain_names_set.add(domain_name1);
-			domain_names_set.add(domain_name2);
-			domain_names_set.remove("no description");
-			String[] domain_names = domain_names_set.toArray(new String[]{});
-			
-			// check if GO terms are available for current domain
-			List<String> domain_GOterms = null;
-			if (domain_entry.length == 14) {
-				String domain_go = domain_entry[13].trim();
-				
-				// parse GO terms for current InterPro domain entry			
-				domain_GOterms = new ArrayList<String>(); 
-				for (String go_entry : domain_go.split("\\|")) {
-				  domain_GOterms.add(go_entry);
-				}
-			}
-			IprRaw ipr_domain = new IprRaw(domain_id, domain_names, domain_GOterms);
-			ipr_domains.put(domain_id, ipr_domain);
+		IPRoutputParser parser = new IPRoutputParser();
+		for (String[] domain_entry: IPRoutput) {
+			parser.addDomainEntry(domain_entry);
 		}
-		return ipr_domains;
+		return parser.getDomainMap();
 	}
-	
-	
 
 }
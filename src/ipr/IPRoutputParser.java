@@ -0,0 +1,238 @@
+/*
+ * $Id$
+ * $URL$
+ * This file is part of the program TFpredict. TFpredict performs the
+ * identification and structural characterization of transcription factors.
+ *
+ * Copyright (C) 2010-2014 Center for Bioinformatics Tuebingen (ZBIT),
+ * University of Tuebingen by Johannes Eichner, Florian Topf, Andreas Draeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ipr;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Single-pass parser for the TSV output of InterProScan. Each line is split
+ * without regular expressions and fed into all aggregations at once:
+ * - sequence ID  -->  InterPro domains and their positions   (see {@link IPRextract#getSeq2DomainMap} and {@link DomainIntervalIndex})
+ * - InterPro ID  -->  sequence IDs                           (see {@link IPRextract#getDomain2SeqMap})
+ * - InterPro ID  -->  domain names and GO terms              (see {@link IPRextract#parseIPRoutput})
+ * Lines are not kept in memory after they were processed.
+ *
+ * @author Johannes Eichner
+ * @version $Rev$
+ * @since 1.0
+ */
+public class IPRoutputParser {
+
+	private Boolean label = null;
+	private DomainDictionary domainDict = new DomainDictionary();
+
+	private Map<String, IprEntry> seq2domain = new HashMap<String, IprEntry>();
+	private Map<String, List<String>> domain2seq = new HashMap<String, List<String>>();
+	private Map<String, Set<String>> domain2seqSet = new HashMap<String, Set<String>>();
+	private Map<String, IprRaw> ipr_domains = new HashMap<String, IprRaw>();
+
+	public IPRoutputParser() {
+	}
+
+	// label is assigned to all sequences (i.e., TF or non-TF)
+	public IPRoutputParser(Boolean label) {
+		this.label = label;
+	}
+
+
+	public void parse(String outputFile) {
+
+		try {
+			parse(new InputStreamReader(new FileInputStream(outputFile), "UTF-8"));
+
+		} catch(IOException ioe) {
+			System.out.println(ioe.getMessage());
+			System.out.println("Parse Error. The error occurred while parsing the output of InterProScan.");
+			System.exit(1);
+		}
+	}
+
+	public void parse(Reader reader) throws IOException {
+
+		BufferedReader br = (reader instanceof BufferedReader) ? (BufferedReader) reader : new BufferedReader(reader);
+		String line = null;
+		while ((line = br.readLine()) != null) {
+			// skip empty lines
+			if (line.trim().length() == 0) continue;
+
+			addEntry(splitLine(line, '\t'));
+		}
+		br.close();
+	}
+
+	public void addEntry(String[] domain_entry) {
+		addSeq2DomainEntry(domain_entry);
+		addDomain2SeqEntry(domain_entry);
+		addDomainEntry(domain_entry);
+	}
+
+	void addSeq2DomainEntry(String[] domain_entry) {
+
+		if (domain_entry.length < 12) return;
+
+		String sequence_id = domain_entry[0].trim();
+		String domain_id = domain_entry[11].trim();
+
+		// skip domains for which no InterPro-ID is given
+		if (domain_id.equals("NULL")) {
+			System.out.println("WARNING: Skipped domain " + domain_id + " with missing InterPro-ID");
+			return;
+		}
+
+		int domain_start = Integer.parseInt(domain_entry[6]);
+		int domain_end = Integer.parseInt(domain_entry[7]);
+
+		IprEntry curr_entry = seq2domain.get(sequence_id);
+		if (curr_entry == null) {
+			if (label == null) {
+				curr_entry = new IprEntry(sequence_id);
+			} else {
+				curr_entry = new IprEntry(sequence_id, label);
+			}
+			curr_entry.domain_intervals = new DomainIntervalIndex(domainDict);
+			seq2domain.put(sequence_id, curr_entry);
+		}
+
+		// all instances of a domain are kept in the interval index, domain IDs are listed once
+		DomainIntervalIndex intervals = curr_entry.domain_intervals;
+		if (!intervals.contains(domain_id)) {
+			curr_entry.domain_ids.add(domain_id);
+		}
+		intervals.add(domain_id, domain_start, domain_end);
+	}
+
+	void addDomain2SeqEntry(String[] domain_entry) {
+
+		if (domain_entry.length < 12) return;
+
+		String sequence_id = domain_entry[0].trim();
+		String domain_id = domain_entry[11].trim();
+
+		// skip domains for which no InterPro-ID is given
+		if (domain_id.equals("NULL")) return;
+
+		Set<String> currSeqIDs = domain2seqSet.get(domain_id);
+		if (currSeqIDs == null) {
+			currSeqIDs = new HashSet<String>();
+			domain2seqSet.put(domain_id, currSeqIDs);
+			domain2seq.put(domain_id, new ArrayList<String>());
+		}
+		if (currSeqIDs.add(sequence_id)) {
+			domain2seq.get(domain_id).add(sequence_id);
+		}
+	}
+
+	void addDomainEntry(String[] domain_entry) {
+
+		if (domain_entry.length < 13) return;
+
+		// skip domain IDs which were already added
+		String domain_id = domain_entry[11].trim();
+		if (ipr_domains.containsKey(domain_id)) return;
+
+		// parse domain names from description fields (used for TF class annotation via TransFac)
+		HashSet<String> domain_names_set = new HashSet<String>();
+		domain_names_set.add(getFirstName(domain_entry[5]));
+		domain_names_set.add(getFirstName(domain_entry[12]));
+		domain_names_set.remove("no description");
+		String[] domain_names = domain_names_set.toArray(new String[]{});
+
+		// check if GO terms are available for current domain
+		List<String> domain_GOterms = null;
+		if (domain_entry.length == 14) {
+			domain_GOterms = new ArrayList<String>();
+			for (String go_entry : splitLine(domain_entry[13].trim(), '|')) {
+				domain_GOterms.add(go_entry);
+			}
+		}
+		ipr_domains.put(domain_id, new IprRaw(domain_id, domain_names, domain_GOterms));
+	}
+
+	public Map<String, IprEntry> getSeq2DomainMap() {
+		return seq2domain;
+	}
+
+	public Map<String, List<String>> getDomain2SeqMap() {
+		return domain2seq;
+	}
+
+	public Map<String, IprRaw> getDomainMap() {
+		return ipr_domains;
+	}
+
+	// codes of the domains in the interval indices of all sequences
+	public DomainDictionary getDomainDictionary() {
+		return domainDict;
+	}
+
+
+	/**
+	 * Splits a line at the given separator without using regular expressions.
+	 * The result is equal to {@link String#split(String)}, i.e., trailing empty
+	 * fields are removed.
+	 */
+	public static String[] splitLine(String line, char separator) {
+
+		int sepPos = line.indexOf(separator);
+		if (sepPos == -1) {
+			return new String[] {line};
+		}
+
+		List<String> fields = new ArrayList<String>();
+		int fieldStart = 0;
+		while (sepPos != -1) {
+			fields.add(line.substring(fieldStart, sepPos));
+			fieldStart = sepPos + 1;
+			sepPos = line.indexOf(separator, fieldStart);
+		}
+		fields.add(line.substring(fieldStart));
+
+		// remove trailing empty fields
+		int numFields = fields.size();
+		while (numFields > 0 && fields.get(numFields-1).length() == 0) {
+			numFields--;
+		}
+		return fields.subList(0, numFields).toArray(new String[numFields]);
+	}
+
+	// first comma-separated name of a description field
+	private static String getFirstName(String description) {
+
+		description = description.trim();
+		int commaPos = description.indexOf(',');
+		if (commaPos != -1) {
+			description = description.substring(0, commaPos);
+		}
+		return description.trim();
+	}
+}
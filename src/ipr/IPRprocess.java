@@ -22,10 +22,13 @@
  */
 package ipr;
 
-import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
 
 
 /**
@@ -39,56 +42,81 @@ import java.util.Map;
  * @since 1.0
  */
 public class IPRprocess {
+	
+	private static final Pattern NUMBER_SUFFIX = Pattern.compile("_[1-3]");
 
 	public static Map<String, IprProcessed> filterIPRdomains(Map<String,IprEntry> seq2domain, Map<String,IprRaw> IPRdomains, List<String> relGOterms, Map<String, String> tfName2class) {
 		
 		Map<String, IprProcessed> seq2bindingDomain = new HashMap<String, IprProcessed>();
 		
+		// additionally check for GO-Term "nucleic acid binding" (GO:0003676) to support C2H2 zinc finger TFs  
+		Set<String> relGOset = new HashSet<String>(relGOterms);
+		relGOset.add("GO:0003676");
+		
+		// verdict and TransFac class are computed once per InterPro ID (null --> no DNA-binding domain)
+		Map<String, String> bindingDomain2class = new HashMap<String, String>();
+		Set<String> nonBindingDomains = new HashSet<String>();
+		
 		for (String sequence_id: seq2domain.keySet()) {
-			List<String> curr_domains = seq2domain.get(sequence_id).domain_ids;
-			List<String> curr_domain_pos = seq2domain.get(sequence_id).domain_pos;
+			DomainIntervalIndex index = seq2domain.get(sequence_id).domain_intervals;
 			
-			for (int i=0; i<curr_domains.size(); i++) {
-				String domain_id = curr_domains.get(i);
-				String domain_pos = curr_domain_pos.get(i);
-				IprRaw iprDomain = IPRdomains.get(domain_id);
-				
-				// current domain is a DNA-binding domain?
-				boolean has_relevant_go = false;
-				for (String go : relGOterms) {
-					if (iprDomain.go_terms != null && iprDomain.go_terms.contains(go)) {
-						has_relevant_go = true;
-					}
-				}
-				// additionally check for GO-Term "nucleic acid binding" (GO:0003676) to support C2H2 zinc finger TFs  
-				if (!has_relevant_go && iprDomain.go_terms != null && iprDomain.go_terms.contains("GO:0003676")) {
-					has_relevant_go = true;
-				}
-				
-				if (has_relevant_go) {
-					
-					// try to obtain class annotation from TransFac 
-					String transfacClass = getTransfacClassAnno(iprDomain.domain_names, tfName2class);
-	
-					if (!seq2bindingDomain.containsKey(sequence_id)) {
-						List<String> bindingDomains = new ArrayList<String>();
-						bindingDomains.add(domain_pos);
-						IprProcessed currDBD = new IprProcessed(sequence_id, bindingDomains, transfacClass);
-						seq2bindingDomain.put(sequence_id, currDBD);
-					}
-					else {
-						IprProcessed currDBD = seq2bindingDomain.get(sequence_id);
-						currDBD.anno_transfac_class = mergeTransfacClassAnnos(currDBD.anno_transfac_class, transfacClass);
-						if (!currDBD.binding_domains.contains(domain_pos)) {
-							currDBD.binding_domains.add(domain_pos);
-						}
-						seq2bindingDomain.put(sequence_id, currDBD);
-					}
+			BitSet bindingDomains = new BitSet();
+			String transfacClass = null;
+			for (int code: index.getDomainCodes()) {
+				String domain_id = index.getDomainDictionary().getDomainID(code);
+				String currClass = getBindingDomainClass(domain_id, IPRdomains, relGOset, tfName2class, bindingDomain2class, nonBindingDomains);
+				if (currClass != null) {
+					bindingDomains.set(code);
+					transfacClass = (transfacClass == null) ? currClass : mergeTransfacClassAnnos(transfacClass, currClass);
 				}
 			}
+			
+			// overlapping hits of a binding domain are merged and the longest region is used
+			if (!bindingDomains.isEmpty()) {
+				seq2bindingDomain.put(sequence_id, new IprProcessed(sequence_id, index.getLongestMergedInstances(bindingDomains), index, transfacClass));
+			}
 		}
 		return seq2bindingDomain;
 	}
+	
+	
+	/**
+	 * @return TransFac class of the domain ("" if no class was found) or null
+	 *         if the domain is not a DNA-binding domain. Results are cached per InterPro ID.
+	 */
+	private static String getBindingDomainClass(String domain_id, Map<String,IprRaw> IPRdomains, Set<String> relGOset, Map<String, String> tfName2class, 
+												Map<String, String> bindingDomain2class, Set<String> nonBindingDomains) {
+		
+		String transfacClass = bindingDomain2class.get(domain_id);
+		if (transfacClass != null || nonBindingDomains.contains(domain_id)) {
+			return transfacClass;
+		}
+		
+		IprRaw iprDomain = IPRdomains.get(domain_id);
+		if (!isBindingDomain(iprDomain, relGOset)) {
+			nonBindingDomains.add(domain_id);
+			return null;
+		}
+		
+		// try to obtain class annotation from TransFac 
+		transfacClass = getTransfacClassAnno(iprDomain.domain_names, tfName2class);
+		bindingDomain2class.put(domain_id, transfacClass);
+		return transfacClass;
+	}
+	
+	// current domain is a DNA-binding domain?
+	private static boolean isBindingDomain(IprRaw iprDomain, Set<String> relGOset) {
+		
+		if (iprDomain.go_terms == null) {
+			return false;
+		}
+		for (String go : iprDomain.go_terms) {
+			if (relGOset.contains(go)) {
+				return true;
+			}
+		}
+		return false;
+	}
 
 
 	/**
@@ -120,7 +148,7 @@ public class IPRprocess {
 		String hit = "";
 		for (int i = 0; i < domain_names.length; i++) {
 			
-			String entry = domain_names[i].replace(" domain", " ").replace("-domain", " ").replaceAll("[()]", "").toUpperCase().replace("WINGED HELIX", "").replaceAll("-", " ").replaceAll("_[1-3]", "").replaceAll("RELATED", "").trim();
+			String entry = normalizeDomainName(domain_names[i]);
 			
 			if (tfName2class.containsKey(entry)) {
 				hit = tfName2class.get(entry);
@@ -133,4 +161,13 @@ public class IPRprocess {
 		}
 		return max;
 	}
+	
+	// maps a domain name to the format of the TF names in TransFac (e.g., "Homeobox-like domain" --> "HOMEOBOX LIKE")
+	static String normalizeDomainName(String domain_name) {
+		
+		String entry = domain_name.replace(" domain", " ").replace("-domain", " ").replace("(", "").replace(")", "").toUpperCase();
+		entry = entry.replace("WINGED HELIX", "").replace('-', ' ');
+		entry = NUMBER_SUFFIX.matcher(entry).replaceAll("");
+		return entry.replace("RELATED", "").trim();
+	}
 }
@@ -23,12 +23,9 @@
 package ipr;
 
 import io.BasicTools;
-import io.NoExitSecurityManager;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -37,14 +34,14 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import javax.xml.rpc.ServiceException;
 
-import uk.ac.ebi.webservices.axis1.stubs.iprscan5.WsResultType;
+import uk.ac.ebi.webservices.axis1.stubs.iprscan5.InputParameters;
 
 /**
  * 
@@ -55,6 +52,9 @@ import uk.ac.ebi.webservices.axis1.stubs.iprscan5.WsResultType;
 public class IPRrun {
 	
 	public static boolean addSpacerLine = true;
+	
+	// alternative endpoint of the InterProScan web service (e.g. a local IPRStandInServer), null means EBI
+	public static String serviceEndPoint = null;
  	
 	// fixes bug in current version of InterProScan which removes first line of sequence if header is given
 	private static void addSpacerLine(String seqfile) {
@@ -77,8 +77,13 @@ public class IPRrun {
 	
 	private boolean silent = true;
 
+	private static final String email = "tfpredict@hushmail.com";
+	
 	// gfx related map
-	private static Map<String, String> seq2job = new HashMap<String,String>();
+	private Map<String, String> seq2job = new HashMap<String,String>();
+	
+	// IDs of the jobs submitted to the web service by the last run
+	private List<String> jobs = new ArrayList<String>();
 	
 	// default: use local installation of InterProScan and do not write output of tool to file
 	public ArrayList<String[]> run(String seqfile, String iprpath) {
@@ -109,44 +114,19 @@ public class IPRrun {
 		
 		if (useWeb) { // SOAP
 
-			// set parameter
-			String[] param = new String[6];
-			
-			param[0] = "--async";
-			param[1] = "--email";
-			param[2] = "tfpredict@hushmail.com";
-			param[3] = "--goterms";
-			param[4] = "--multifasta";
-			param[5] = seqfile;
-			
-			// redirect System.out and System.err
-			PrintStream orig_stdout = System.out;
-			ByteArrayOutputStream stdout = new ByteArrayOutputStream();
-			System.setOut(new PrintStream(stdout));
-			PrintStream orig_stderr = System.err;
+			IPRScan5Client webIPR = new IPRScan5Client();
+			if (serviceEndPoint != null) {
+				webIPR.setServiceEndPoint(serviceEndPoint);
+			}
+			// progress messages of the client are written to System.err
 			if (silent) {
-				System.setErr(new PrintStream(new ByteArrayOutputStream()));
+				webIPR.setOutputLevel(0);
 			}
 			
-			// prevent System.exit
-			//SecurityManager SecMan = System.getSecurityManager();
-			//System.setSecurityManager(new NoExitSecurityManager());
-						
-			// submit job
-			try {
-				IPRScan5Client.main(param);
-			} catch (Exception e) {	}
-			
-			// restore System.exit
-			//System.setSecurityManager(SecMan);
-			
-			// grab jobids
-			ArrayList<String> jobs = grabJobIDs(new ByteArrayInputStream(stdout.toByteArray()));
-			
-			// restore System.out
-			System.setOut(orig_stdout);
-			
-			IPRScan5Client webIPR = new IPRScan5Client();
+			// submit one job per sequence
+			jobs = new ArrayList<String>();
+			submitJobs(webIPR, seqfile);
+			if (jobs.isEmpty()) System.err.println("Empty Joblist!");
 
 			if (!silent) System.out.println("Waiting for " + jobs.size() + " job(s) to finish ...");
 			for (String jobid : jobs) {
@@ -163,11 +143,6 @@ public class IPRrun {
 				if (!silent) System.out.println("Job \"" + jobid + "\" finished.");
 			}
 			
-			// restore System.err
-			if (silent) {
-				System.setErr(orig_stderr);
-			}
-			
 			IPRoutput = readIPROutput(basedir, jobs);
 
 		} else { // local
@@ -193,7 +168,33 @@ public class IPRrun {
 	}	
 	
 	
-	private static ArrayList<String[]> readIPROutput(String basedir, ArrayList<String> jobs) {
+	// submits one job per sequence of the FASTA file (like the --multifasta mode of the client)
+	// IDs are added to the job list as they are submitted, a failed submission is reported by an exception
+	private void submitJobs(IPRScan5Client webIPR, String seqfile) {
+		
+		try {
+			webIPR.setFastaInputFile(seqfile);
+			try {
+				String fastaSeq = null;
+				while ((fastaSeq = webIPR.nextFastaSequence()) != null) {
+					InputParameters params = new InputParameters();
+					params.setGoterms(Boolean.TRUE);
+					params.setSequence(fastaSeq);
+					jobs.add(webIPR.runApp(email, null, params));
+				}
+			} finally {
+				webIPR.closeFastaFile();
+			}
+			
+		} catch (IOException ioe) {
+			throw new IllegalStateException("InterProScan job could not be submitted (" + jobs.size() + " job(s) submitted).", ioe);
+		} catch (ServiceException se) {
+			throw new IllegalStateException("InterProScan job could not be submitted (" + jobs.size() + " job(s) submitted).", se);
+		}
+	}
+	
+	// jobs without result (e.g., failed jobs) are reported by an exception instead of exiting, as runs may be concurrent
+	private ArrayList<String[]> readIPROutput(String basedir, List<String> jobs) {
 		
 		ArrayList<String[]> IPRoutput = new ArrayList<String[]>();
 		
@@ -203,7 +204,7 @@ public class IPRrun {
 			try {
 				 BufferedReader br = new BufferedReader(new FileReader(basedir+job+".tsv.tsv"));
 				 while ((line = br.readLine()) != null) {
-					 String[] tabpos = line.split("\t");
+					 String[] tabpos = IPRoutputParser.splitLine(line, '\t');
 					 String seqID = tabpos[0].trim();
 					 if (!seq2job.containsKey(seqID) && !seq2job.containsValue(job)) seq2job.put(seqID, job);
 					 if (!line.isEmpty()) {
@@ -213,8 +214,7 @@ public class IPRrun {
 				 br.close();
 			
 			} catch(IOException ioe) {
-				System.out.println(ioe.getMessage());
-				System.exit(1);
+				throw new IllegalStateException("No result for InterProScan job " + job + ".", ioe);
 			}
 		}
 		return IPRoutput;
@@ -256,7 +256,7 @@ public class IPRrun {
 				 // skip empty lines
 				 if (line.trim().equals("")) continue;
 				 
-				 IPRoutput.add(line.split("\t"));
+				 IPRoutput.add(IPRoutputParser.splitLine(line, '\t'));
 				 if (saveIPRoutput2file) {
 					 bw.write(line + "\n");
 				 }
@@ -279,28 +279,13 @@ public class IPRrun {
 	}
 	
 	
-	private static ArrayList<String> grabJobIDs(ByteArrayInputStream byteArrayInputStream) {
-		
-		ArrayList<String> jobids = new ArrayList<String>();
-		
-		String line = null;
-		try {
-			 BufferedReader br = new BufferedReader(new InputStreamReader(byteArrayInputStream, "UTF-8")); 
-			 while ((line = br.readLine()) != null) {
-				 jobids.add(line.trim());
-			 }			 
-			 br.close();
-		} catch(IOException ioe) {
-			System.out.println(ioe.getMessage());
-		}
-		
-		if (jobids.isEmpty()) System.err.println("Empty Joblist!");
-		
-		return jobids;
-	}
-
 	public Map<String, String> getSeq2job() {
 		return seq2job;
 	}
+	
+	// IDs of the web service jobs of the last run (empty for the local installation)
+	public List<String> getJobIDs() {
+		return jobs;
+	}
 
 }
@@ -41,7 +41,7 @@ public class IprEntry implements Serializable{
 	public boolean isTF;
 	public Integer superclass = null;
 	public ArrayList<String> domain_ids = new ArrayList<String>();
-	public ArrayList<String> domain_pos = new ArrayList<String>();
+	public DomainIntervalIndex domain_intervals = null;
 	
 	public IprEntry() {
 	}
@@ -66,18 +66,8 @@ public class IprEntry implements Serializable{
 		domain_ids.add(ipr);
 	}
 	
-	public IprEntry(String id, boolean label, String ipr, String ipr_pos) {
-		this(id, label, ipr);
-		domain_pos.add(ipr_pos);
-	}
-	
 	public IprEntry(String id, String ipr) {
 		this(id);
 		domain_ids.add(ipr);
 	}
-	
-	public IprEntry(String id, String ipr, String ipr_pos) {
-		this(id, ipr);
-		domain_pos.add(ipr_pos);
-	}
 }
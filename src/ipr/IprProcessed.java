@@ -22,6 +22,7 @@
  */
 package ipr;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -33,19 +34,35 @@ import java.util.List;
 public class IprProcessed {
 	
 	public String sequence_id;
-	public List<String> binding_domains;
+	public List<DomainInterval> binding_intervals;
+	public DomainIntervalIndex domain_intervals;
 	public String anno_transfac_class;
 	
 	/**
 	 * 
 	 * @param id
-	 * @param bindings
+	 * @param intervals
+	 * @param index   interval index of the sequence (used to resolve domain IDs)
 	 * @param transfac
 	 */
-	public IprProcessed(String id, List<String> bindings, String transfac) {
+	public IprProcessed(String id, List<DomainInterval> intervals, DomainIntervalIndex index, String transfac) {
 		this.sequence_id = id;
-		this.binding_domains = bindings;
+		this.binding_intervals = intervals;
+		this.domain_intervals = index;
 		this.anno_transfac_class = transfac;
 	}
-
+	
+	public String getDomainID(DomainInterval interval) {
+		return domain_intervals.getDomainID(interval);
+	}
+	
+	// binding domains in the format of the SABINE files (e.g., "IPR001356    120\t176")
+	public List<String> formatBindingIntervals() {
+		
+		List<String> formatted = new ArrayList<String>();
+		for (DomainInterval interval: binding_intervals) {
+			formatted.add(domain_intervals.format(interval));
+		}
+		return formatted;
+	}
 }
@@ -0,0 +1,79 @@
+/*
+ * $Id$
+ * $URL$
+ * This file is part of the program TFpredict. TFpredict performs the
+ * identification and structural characterization of transcription factors.
+ *
+ * Copyright (C) 2010-2014 Center for Bioinformatics Tuebingen (ZBIT),
+ * University of Tuebingen by Johannes Eichner, Florian Topf, Andreas Draeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package liblinear;
+
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ * Subset of the instances of a dataset which shares the instances with the 
+ * dataset instead of copying them (e.g., folds of a cross-validation). Views 
+ * can be passed to classifiers and evaluations like any other dataset.
+ * 
+ * Reordering a view (e.g., by sorting or randomization) does not affect the 
+ * dataset or other views, but the instances themselves must not be modified.
+ * 
+ * @author Johannes Eichner
+ * @version $Rev$
+ * @since 1.0
+ */
+class InstancesView extends Instances {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Empty view with the header of the given dataset.
+	 * 
+	 * @param data
+	 * @param capacity
+	 */
+	InstancesView(Instances data, int capacity) {
+		super(data, capacity);
+	}
+	
+	// view of all instances of the dataset
+	InstancesView(Instances data) {
+		this(data, data.numInstances());
+		addView(data);
+	}
+	
+	// view of the instances with the given indices
+	InstancesView(Instances data, int[] rows) {
+		this(data, rows.length);
+		for (int row: rows) {
+			addView(data.instance(row));
+		}
+	}
+	
+	
+	// adds the instance without copying it (note: add() inherited from Instances copies the instance)
+	void addView(Instance instance) {
+		m_Instances.add(instance);
+	}
+	
+	void addView(Instances data) {
+		for (int i = 0, n = data.numInstances(); i < n; i++) {
+			m_Instances.add(data.instance(i));
+		}
+	}
+}
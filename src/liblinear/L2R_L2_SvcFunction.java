@@ -31,9 +31,11 @@ package liblinear;
 class L2R_L2_SvcFunction implements Function {
 
     private final Problem  prob;
+    private final SparseOperator X;
     private final double[] C;
     private final int[]    I;
     private final double[] z;
+    private final double[] wa;
 
     private int            sizeI;
 
@@ -43,8 +45,10 @@ class L2R_L2_SvcFunction implements Function {
         int[] y = prob.y;
 
         this.prob = prob;
+        X = new SparseOperator(prob);
 
         z = new double[l];
+        wa = new double[l];
         C = new double[l];
         I = new int[l];
 
@@ -103,9 +107,7 @@ class L2R_L2_SvcFunction implements Function {
 
     public void Hv(double[] s, double[] Hs) {
         int i;
-        int l = prob.l;
         int w_size = get_nr_variable();
-        double[] wa = new double[l];
 
         subXv(s, wa);
         for (i = 0; i < sizeI; i++)
@@ -117,37 +119,15 @@ class L2R_L2_SvcFunction implements Function {
     }
 
     private void subXTv(double[] v, double[] XTv) {
-        int i;
-        int w_size = get_nr_variable();
-
-        for (i = 0; i < w_size; i++)
-            XTv[i] = 0;
-
-        for (i = 0; i < sizeI; i++) {
-            for (FeatureNode s : prob.x[I[i]]) {
-                XTv[s.index - 1] += v[i] * s.value;
-            }
-        }
+        X.subXTv(I, sizeI, v, XTv);
     }
 
     private void subXv(double[] v, double[] Xv) {
-
-        for (int i = 0; i < sizeI; i++) {
-            Xv[i] = 0;
-            for (FeatureNode s : prob.x[I[i]]) {
-                Xv[i] += v[s.index - 1] * s.value;
-            }
-        }
+        X.subXv(I, sizeI, v, Xv);
     }
 
     private void Xv(double[] v, double[] Xv) {
-
-        for (int i = 0; i < prob.l; i++) {
-            Xv[i] = 0;
-            for (FeatureNode s : prob.x[i]) {
-                Xv[i] += v[s.index - 1] * s.value;
-            }
-        }
+        X.Xv(v, Xv);
     }
 
 }
@@ -33,7 +33,9 @@ class L2R_LrFunction implements Function {
     private final double[] C;
     private final double[] z;
     private final double[] D;
+    private final double[] wa;
     private final Problem  prob;
+    private final SparseOperator X;
 
     public L2R_LrFunction( Problem prob, double Cp, double Cn ) {
         int i;
@@ -41,9 +43,11 @@ class L2R_LrFunction implements Function {
         int[] y = prob.y;
 
         this.prob = prob;
+        X = new SparseOperator(prob);
 
         z = new double[l];
         D = new double[l];
+        wa = new double[l];
         C = new double[l];
 
         for (i = 0; i < l; i++) {
@@ -56,28 +60,11 @@ class L2R_LrFunction implements Function {
 
 
     private void Xv(double[] v, double[] Xv) {
-
-        for (int i = 0; i < prob.l; i++) {
-            Xv[i] = 0;
-            for (FeatureNode s : prob.x[i]) {
-                Xv[i] += v[s.index - 1] * s.value;
-            }
-        }
+        X.Xv(v, Xv);
     }
 
     private void XTv(double[] v, double[] XTv) {
-        int l = prob.l;
-        int w_size = get_nr_variable();
-        FeatureNode[][] x = prob.x;
-
-        for (int i = 0; i < w_size; i++)
-            XTv[i] = 0;
-
-        for (int i = 0; i < l; i++) {
-            for (FeatureNode s : x[i]) {
-                XTv[s.index - 1] += v[i] * s.value;
-            }
-        }
+        X.XTv(v, XTv);
     }
 
 
@@ -125,7 +112,6 @@ class L2R_LrFunction implements Function {
         int i;
         int l = prob.l;
         int w_size = get_nr_variable();
-        double[] wa = new double[l];
 
         Xv(s, wa);
         for (i = 0; i < l; i++)
@@ -134,7 +120,6 @@ class L2R_LrFunction implements Function {
         XTv(wa, Hs);
         for (i = 0; i < w_size; i++)
             Hs[i] = s[i] + Hs[i];
-        // delete[] wa;
     }
 
     public int get_nr_variable() {
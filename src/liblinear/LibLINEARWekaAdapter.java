@@ -1134,6 +1134,73 @@ public class LibLINEARWekaAdapter extends AbstractClassifier implements Technica
 	 *             encountered a problem
 	 */
 	public void buildClassifier(Instances insts) throws Exception {
+
+		// train model
+		m_Model = invokeTrain("train", new Class<?>[] { Class.forName(CLASS_PROBLEM), Class.forName(CLASS_PARAMETER) },
+				new Object[] { getProblem(insts), getParameters() });
+	}
+
+	/**
+	 * builds one classifier for each of the given costs on the same training
+	 * instances. The models are trained along the regularization path, i.e.,
+	 * each model is initialized with the solution for the previous cost,
+	 * which is considerably faster than building the classifiers independently.
+	 * 
+	 * @param insts
+	 *            the training instances
+	 * @param costs
+	 *            the costs in ascending order
+	 * @return copies of this classifier with the given costs
+	 * @throws Exception
+	 *             if liblinear classes not in classpath or liblinear
+	 *             encountered a problem
+	 */
+	public LibLINEARWekaAdapter[] buildClassifierPath(Instances insts, double[] costs) throws Exception {
+
+		Object problem = getProblem(insts);
+		Object[] models = (Object[]) invokeTrain("trainPath",
+				new Class<?>[] { Class.forName(CLASS_PROBLEM), Class.forName(CLASS_PARAMETER), double[].class },
+				new Object[] { problem, getParameters(), costs });
+
+		// copies share the filters of this classifier
+		m_Model = null;
+		LibLINEARWekaAdapter[] classifiers = new LibLINEARWekaAdapter[costs.length];
+		for (int i = 0; i < costs.length; i++) {
+			classifiers[i] = (LibLINEARWekaAdapter) AbstractClassifier.makeCopy(this);
+			classifiers[i].setCost(costs[i]);
+			classifiers[i].m_Model = models[i];
+		}
+		return classifiers;
+	}
+
+	/**
+	 * invokes a training method of liblinear (e.g., train or trainPath)
+	 * 
+	 * @param name
+	 *            the name of the method of the Linear class
+	 * @param paramClasses
+	 *            the classes of the parameters
+	 * @param paramValues
+	 *            the values of the parameters
+	 * @return the return value of the method
+	 * @throws Exception
+	 *             if liblinear classes not in classpath
+	 */
+	protected Object invokeTrain(String name, Class<?>[] paramClasses, Object[] paramValues) throws Exception {
+		return invokeMethod(Class.forName(CLASS_LINEAR).getDeclaredConstructor().newInstance(), name, paramClasses, paramValues);
+	}
+
+	/**
+	 * filters the training instances and returns the liblinear problem
+	 * 
+	 * @param insts
+	 *            the training instances
+	 * @return the Problem object
+	 * @throws Exception
+	 *             if liblinear classes not in classpath or the data
+	 *             cannot be handled
+	 */
+	protected Object getProblem(Instances insts) throws Exception {
 		m_NominalToBinary = null;
 		m_Filter = null;
 
@@ -1193,10 +1260,7 @@ public class LibLINEARWekaAdapter extends AbstractClassifier implements Technica
 		// reset the PRNG for regression-stable results
 		invokeMethod(Class.forName(CLASS_LINEAR).newInstance(), "resetRandom", null, null);
 
-		// train model
-		m_Model = invokeMethod(Class.forName(CLASS_LINEAR).newInstance(), "train",
-				new Class[] { Class.forName(CLASS_PROBLEM), Class.forName(CLASS_PARAMETER) }, new Object[] {
-						getProblem(vx, vy, max_index), getParameters() });
+		return getProblem(vx, vy, max_index);
 	}
 
 	/**
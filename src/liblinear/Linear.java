@@ -36,9 +36,13 @@ import java.io.PrintStream;
 import java.io.Reader;
 import java.io.Writer;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.Formatter;
+import java.util.List;
 import java.util.Locale;
 import java.util.Random;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 import java.util.regex.Pattern;
 
 
@@ -67,6 +71,9 @@ public class Linear {
     private static final long  DEFAULT_RANDOM_SEED = 0L;
     static Random              random              = new Random(DEFAULT_RANDOM_SEED);
 
+    /** PRNG of the cross-validation fold which is trained by the current thread */
+    private static final ThreadLocal<Random> foldRandom = new ThreadLocal<Random>();
+
     /**
      * @param target predicted classes
      */
@@ -76,6 +83,8 @@ public class Linear {
         int l = prob.l;
         int[] perm = new int[l];
 
+        // compressed before the problem is shared by the folds
+        prob.compress();
         for (i = 0; i < l; i++)
             perm[i] = i;
         for (i = 0; i < l; i++) {
@@ -85,35 +94,82 @@ public class Linear {
         for (i = 0; i <= nr_fold; i++)
             fold_start[i] = i * l / nr_fold;
 
-        for (i = 0; i < nr_fold; i++) {
-            int begin = fold_start[i];
-            int end = fold_start[i + 1];
-            int j, k;
-            Problem subprob = new Problem();
+        // the folds are trained in parallel on the shared problem, each fold uses its own PRNG
+        // (seeded in the order of the folds), hence the results do not depend on the number of threads
+        final List<CrossValidationFold> folds = new ArrayList<CrossValidationFold>();
+        for (i = 0; i < nr_fold; i++)
+            folds.add(new CrossValidationFold(prob, param, perm, fold_start[i], fold_start[i + 1], random.nextLong(), target));
 
-            subprob.bias = prob.bias;
-            subprob.n = prob.n;
-            subprob.l = l - (end - begin);
-            subprob.x = new FeatureNode[subprob.l][];
-            subprob.y = new int[subprob.l];
+        RecursiveAction root = new RecursiveAction() {
+            private static final long serialVersionUID = 1L;
 
-            k = 0;
-            for (j = 0; j < begin; j++) {
-                subprob.x[k] = prob.x[perm[j]];
-                subprob.y[k] = prob.y[perm[j]];
-                ++k;
+            @Override
+            protected void compute() {
+                invokeAll(folds);
             }
-            for (j = end; j < l; j++) {
-                subprob.x[k] = prob.x[perm[j]];
-                subprob.y[k] = prob.y[perm[j]];
-                ++k;
+        };
+        if (ForkJoinTask.inForkJoinPool()) {
+            root.invoke();
+        } else {
+            SparseOperator.pool.invoke(root);
+        }
+    }
+
+    /** trains the model of a cross-validation fold and predicts the instances of the fold */
+    private static class CrossValidationFold extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Problem     prob;
+        private final Parameter   param;
+        private final int[]       perm;
+        private final int         begin;
+        private final int         end;
+        private final long        seed;
+        private final int[]       target;
+
+        CrossValidationFold(Problem prob, Parameter param, int[] perm, int begin, int end, long seed, int[] target) {
+            this.prob = prob;
+            this.param = param;
+            this.perm = perm;
+            this.begin = begin;
+            this.end = end;
+            this.seed = seed;
+            this.target = target;
+        }
+
+        @Override
+        protected void compute() {
+            int l = prob.l;
+            int j, k;
+            int[] subprob_idx = new int[l - (end - begin)];
+
+            k = 0;
+            for (j = 0; j < begin; j++)
+                subprob_idx[k++] = perm[j];
+            for (j = end; j < l; j++)
+                subprob_idx[k++] = perm[j];
+
+            // other folds may be run by this thread while it waits for subtasks
+            Random previousRandom = foldRandom.get();
+            foldRandom.set(new Random(seed));
+            try {
+                Problem subprob = prob.subProblem(subprob_idx);
+                Model submodel = train(subprob, param);
+                for (j = begin; j < end; j++)
+                    target[perm[j]] = predict(submodel, prob.getFeatureNodes(perm[j]));
+            } finally {
+                foldRandom.set(previousRandom);
             }
-            Model submodel = train(subprob, param);
-            for (j = begin; j < end; j++)
-                target[perm[j]] = predict(submodel, prob.x[perm[j]]);
         }
     }
 
+    /** PRNG of the solvers (the PRNG of the cross-validation fold if the current thread trains a fold) */
+    static Random getRandom() {
+        Random currentRandom = foldRandom.get();
+        return (currentRandom != null) ? currentRandom : random;
+    }
+
     /** used as complex return type */
     private static class GroupClassesReturn {
 
@@ -348,33 +404,49 @@ public class Linear {
 
     public static int predictProbability(Model model, FeatureNode[] x, double[] prob_estimates) {
         if (model.solverType == SolverType.L2R_LR) {
-            int nr_class = model.nr_class;
-            int nr_w;
-            if (nr_class == 2)
-                nr_w = 1;
-            else
-                nr_w = nr_class;
-
             int label = predictValues(model, x, prob_estimates);
-            for (int i = 0; i < nr_w; i++)
-                prob_estimates[i] = 1 / (1 + Math.exp(-prob_estimates[i]));
-
-            if (nr_class == 2) // for binary classification
-                prob_estimates[1] = 1. - prob_estimates[0];
-            else {
-                double sum = 0;
-                for (int i = 0; i < nr_class; i++)
-                    sum += prob_estimates[i];
-
-                for (int i = 0; i < nr_class; i++)
-                    prob_estimates[i] = prob_estimates[i] / sum;
-            }
+            toProbabilities(model, prob_estimates);
+            return label;
+        } else
+            return 0;
+    }
 
+    /**
+     * Same as {@link #predictProbability(Model, FeatureNode[], double[])} for the first length
+     * entries of the given indices and values (e.g., reusable buffers of a parser)
+     */
+    static int predictProbability(Model model, int[] indices, double[] values, int length, double[] prob_estimates) {
+        if (model.solverType == SolverType.L2R_LR) {
+            int label = predictValues(model, indices, values, length, prob_estimates);
+            toProbabilities(model, prob_estimates);
             return label;
         } else
             return 0;
     }
 
+    private static void toProbabilities(Model model, double[] prob_estimates) {
+        int nr_class = model.nr_class;
+        int nr_w;
+        if (nr_class == 2)
+            nr_w = 1;
+        else
+            nr_w = nr_class;
+
+        for (int i = 0; i < nr_w; i++)
+            prob_estimates[i] = 1 / (1 + Math.exp(-prob_estimates[i]));
+
+        if (nr_class == 2) // for binary classification
+            prob_estimates[1] = 1. - prob_estimates[0];
+        else {
+            double sum = 0;
+            for (int i = 0; i < nr_class; i++)
+                sum += prob_estimates[i];
+
+            for (int i = 0; i < nr_class; i++)
+                prob_estimates[i] = prob_estimates[i] / sum;
+        }
+    }
+
     public static int predictValues(Model model, FeatureNode[] x, double[] dec_values) {
         int n;
         if (model.bias >= 0)
@@ -403,6 +475,45 @@ public class Linear {
             }
         }
 
+        return getLabel(model, dec_values);
+    }
+
+    /**
+     * Same as {@link #predictValues(Model, FeatureNode[], double[])} for the first length
+     * entries of the given indices and values (e.g., reusable buffers of a parser)
+     */
+    static int predictValues(Model model, int[] indices, double[] values, int length, double[] dec_values) {
+        int n;
+        if (model.bias >= 0)
+            n = model.nr_feature + 1;
+        else
+            n = model.nr_feature;
+
+        double[] w = model.w;
+
+        int nr_w;
+        if (model.nr_class == 2 && model.solverType != SolverType.MCSVM_CS)
+            nr_w = 1;
+        else
+            nr_w = model.nr_class;
+
+        for (int i = 0; i < nr_w; i++)
+            dec_values[i] = 0;
+
+        for (int p = 0; p < length; p++) {
+            int idx = indices[p];
+            // the dimension of testing data may exceed that of training
+            if (idx <= n) {
+                for (int i = 0; i < nr_w; i++) {
+                    dec_values[i] += w[(idx - 1) * nr_w + i] * values[p];
+                }
+            }
+        }
+
+        return getLabel(model, dec_values);
+    }
+
+    private static int getLabel(Model model, double[] dec_values) {
         if (model.nr_class == 2)
             return (dec_values[0] > 0) ? model.label[0] : model.label[1];
         else {
@@ -553,17 +664,24 @@ public class Linear {
      * eps is the stopping tolerance
      *
      * solution will be put in w
+     *
+     * If warmStart is set, the iterations start at the given alpha (e.g., the
+     * solution for smaller values of Cp and Cn), otherwise at alpha = 0.
      *</pre>
      */
-    private static void solve_l2r_l1l2_svc(Problem prob, double[] w, double eps, double Cp, double Cn, SolverType solver_type) {
+    private static void solve_l2r_l1l2_svc(Problem prob, double[] w, double[] alpha, double eps, double Cp, double Cn, SolverType solver_type,
+        boolean warmStart) {
+        Random random = getRandom();
         int l = prob.l;
         int w_size = prob.n;
+        int[] rowPtr = prob.rowPtr;
+        int[] colIdx = prob.colIdx;
+        double[] values = prob.val;
         int i, s, iter = 0;
         double C, d, G;
         double[] QD = new double[l];
         int max_iter = 1000;
         int[] index = new int[l];
-        double[] alpha = new double[l];
         byte[] y = new byte[l];
         int active_size = l;
 
@@ -586,7 +704,7 @@ public class Linear {
         for (i = 0; i < w_size; i++)
             w[i] = 0;
         for (i = 0; i < l; i++) {
-            alpha[i] = 0;
+            if (!warmStart) alpha[i] = 0;
             if (prob.y[i] > 0) {
                 y[i] = +1;
             } else {
@@ -594,8 +712,16 @@ public class Linear {
             }
             QD[i] = diag[GETI(y, i)];
 
-            for (FeatureNode xi : prob.x[i]) {
-                QD[i] += xi.value * xi.value;
+            for (int p = rowPtr[i]; p < rowPtr[i + 1]; p++) {
+                QD[i] += values[p] * values[p];
+            }
+
+            // w = sum_i y_i alpha_i x_i
+            alpha[i] = Math.min(alpha[i], upper_bound[GETI(y, i)]);
+            if (alpha[i] != 0) {
+                for (int p = rowPtr[i]; p < rowPtr[i + 1]; p++) {
+                    w[colIdx[p] - 1] += y[i] * alpha[i] * values[p];
+                }
             }
             index[i] = i;
         }
@@ -614,8 +740,8 @@ public class Linear {
                 G = 0;
                 byte yi = y[i];
 
-                for (FeatureNode xi : prob.x[i]) {
-                    G += w[xi.index - 1] * xi.value;
+                for (int p = rowPtr[i]; p < rowPtr[i + 1]; p++) {
+                    G += w[colIdx[p] - 1] * values[p];
                 }
                 G = G * yi - 1;
 
@@ -653,8 +779,8 @@ public class Linear {
                     alpha[i] = Math.min(Math.max(alpha[i] - G / QD[i], 0.0), C);
                     d = (alpha[i] - alpha_old) * yi;
 
-                    for (FeatureNode xi : prob.x[i]) {
-                        w[xi.index - 1] += d * xi.value;
+                    for (int p = rowPtr[i]; p < rowPtr[i + 1]; p++) {
+                        w[colIdx[p] - 1] += d * values[p];
                     }
                 }
             }
@@ -711,8 +837,12 @@ public class Linear {
      *</pre>
      */
     private static void solve_l1r_l2_svc(Problem prob_col, double[] w, double eps, double Cp, double Cn) {
+        Random random = getRandom();
         int l = prob_col.l;
         int w_size = prob_col.n;
+        int[] rowPtr = prob_col.rowPtr;
+        int[] colIdx = prob_col.colIdx;
+        double[] values = prob_col.val;
         int j, s, iter = 0;
         int max_iter = 1000;
         int active_size = w_size;
@@ -746,10 +876,10 @@ public class Linear {
             w[j] = 0;
             index[j] = j;
             xj_sq[j] = 0;
-            for (FeatureNode xi : prob_col.x[j]) {
-                int ind = xi.index - 1;
-                double val = xi.value;
-                xi.value *= y[ind]; // x->value stores yi*xij
+            for (int p = rowPtr[j]; p < rowPtr[j + 1]; p++) {
+                int ind = colIdx[p] - 1;
+                double val = values[p];
+                values[p] *= y[ind]; // x->value stores yi*xij
                 xj_sq[j] += C[GETI(y, ind)] * val * val;
             }
         }
@@ -767,10 +897,10 @@ public class Linear {
                 G_loss = 0;
                 H = 0;
 
-                for (FeatureNode xi : prob_col.x[j]) {
-                    int ind = xi.index - 1;
+                for (int p = rowPtr[j]; p < rowPtr[j + 1]; p++) {
+                    int ind = colIdx[p] - 1;
                     if (b[ind] > 0) {
-                        double val = xi.value;
+                        double val = values[p];
                         double tmp = C[GETI(y, ind)] * val;
                         G_loss -= tmp * b[ind];
                         H += tmp * val;
@@ -822,8 +952,8 @@ public class Linear {
 
                     appxcond = xj_sq[j] * d * d + G_loss * d + cond;
                     if (appxcond <= 0) {
-                        for (FeatureNode x : prob_col.x[j]) {
-                            b[x.index - 1] += d_diff * x.value;
+                        for (int p = rowPtr[j]; p < rowPtr[j + 1]; p++) {
+                            b[colIdx[p] - 1] += d_diff * values[p];
                         }
                         break;
                     }
@@ -831,12 +961,12 @@ public class Linear {
                     if (num_linesearch == 0) {
                         loss_old = 0;
                         loss_new = 0;
-                        for (FeatureNode x : prob_col.x[j]) {
-                            int ind = x.index - 1;
+                        for (int p = rowPtr[j]; p < rowPtr[j + 1]; p++) {
+                            int ind = colIdx[p] - 1;
                             if (b[ind] > 0) {
                                 loss_old += C[GETI(y, ind)] * b[ind] * b[ind];
                             }
-                            double b_new = b[ind] + d_diff * x.value;
+                            double b_new = b[ind] + d_diff * values[p];
                             b[ind] = b_new;
                             if (b_new > 0) {
                                 loss_new += C[GETI(y, ind)] * b_new * b_new;
@@ -844,9 +974,9 @@ public class Linear {
                         }
                     } else {
                         loss_new = 0;
-                        for (FeatureNode x : prob_col.x[j]) {
-                            int ind = x.index - 1;
-                            double b_new = b[ind] + d_diff * x.value;
+                        for (int p = rowPtr[j]; p < rowPtr[j + 1]; p++) {
+                            int ind = colIdx[p] - 1;
+                            double b_new = b[ind] + d_diff * values[p];
                             b[ind] = b_new;
                             if (b_new > 0) {
                                 loss_new += C[GETI(y, ind)] * b_new * b_new;
@@ -874,8 +1004,8 @@ public class Linear {
 
                     for (int i = 0; i < w_size; i++) {
                         if (w[i] == 0) continue;
-                        for (FeatureNode x : prob_col.x[i]) {
-                            b[x.index - 1] -= w[i] * x.value;
+                        for (int p = rowPtr[i]; p < rowPtr[i + 1]; p++) {
+                            b[colIdx[p] - 1] -= w[i] * values[p];
                         }
                     }
                 }
@@ -907,8 +1037,8 @@ public class Linear {
         double v = 0;
         int nnz = 0;
         for (j = 0; j < w_size; j++) {
-            for (FeatureNode x : prob_col.x[j]) {
-                x.value *= prob_col.y[x.index - 1]; // restore x->value
+            for (int p = rowPtr[j]; p < rowPtr[j + 1]; p++) {
+                values[p] *= prob_col.y[colIdx[p] - 1]; // restore x->value
             }
             if (w[j] != 0) {
                 v += Math.abs(w[j]);
@@ -937,8 +1067,12 @@ public class Linear {
      *</pre>
      */
     private static void solve_l1r_lr(Problem prob_col, double[] w, double eps, double Cp, double Cn) {
+        Random random = getRandom();
         int l = prob_col.l;
         int w_size = prob_col.n;
+        int[] rowPtr = prob_col.rowPtr;
+        int[] colIdx = prob_col.colIdx;
+        double[] values = prob_col.val;
         int j, s, iter = 0;
         int max_iter = 1000;
         int active_size = w_size;
@@ -979,9 +1113,9 @@ public class Linear {
             C_sum[j] = 0;
             xjneg_sum[j] = 0;
             xjpos_sum[j] = 0;
-            for (FeatureNode x : prob_col.x[j]) {
-                int ind = x.index - 1;
-                double val = x.value;
+            for (int p = rowPtr[j]; p < rowPtr[j + 1]; p++) {
+                int ind = colIdx[p] - 1;
+                double val = values[p];
                 x_min = Math.min(x_min, val);
                 xj_max[j] = Math.max(xj_max[j], val);
                 C_sum[j] += C[GETI(y, ind)];
@@ -1006,10 +1140,10 @@ public class Linear {
                 sum2 = 0;
                 H = 0;
 
-                for (FeatureNode x : prob_col.x[j]) {
-                    int ind = x.index - 1;
+                for (int p = rowPtr[j]; p < rowPtr[j + 1]; p++) {
+                    int ind = colIdx[p] - 1;
                     double exp_wTxind = exp_wTx[ind];
-                    double tmp1 = x.value / (1 + exp_wTxind);
+                    double tmp1 = values[p] / (1 + exp_wTxind);
                     double tmp2 = C[GETI(y, ind)] * tmp1;
                     double tmp3 = tmp2 * exp_wTxind;
                     sum2 += tmp2;
@@ -1062,8 +1196,8 @@ public class Linear {
                         appxcond1 = Math.log(1 + sum1 * (tmp - 1) / xj_max[j] / C_sum[j]) * C_sum[j] + cond - d * xjpos_sum[j];
                         appxcond2 = Math.log(1 + sum2 * (1 / tmp - 1) / xj_max[j] / C_sum[j]) * C_sum[j] + cond + d * xjneg_sum[j];
                         if (Math.min(appxcond1, appxcond2) <= 0) {
-                            for (FeatureNode x : prob_col.x[j]) {
-                                exp_wTx[x.index - 1] *= Math.exp(d * x.value);
+                            for (int p = rowPtr[j]; p < rowPtr[j + 1]; p++) {
+                                exp_wTx[colIdx[p] - 1] *= Math.exp(d * values[p]);
                             }
                             break;
                         }
@@ -1072,9 +1206,9 @@ public class Linear {
                     cond += d * xjneg_sum[j];
 
                     int i = 0;
-                    for (FeatureNode x : prob_col.x[j]) {
-                        int ind = x.index - 1;
-                        double exp_dx = Math.exp(d * x.value);
+                    for (int p = rowPtr[j]; p < rowPtr[j + 1]; p++) {
+                        int ind = colIdx[p] - 1;
+                        double exp_dx = Math.exp(d * values[p]);
                         exp_wTx_new[i] = exp_wTx[ind] * exp_dx;
                         cond += C[GETI(y, ind)] * Math.log((1 + exp_wTx_new[i]) / (exp_dx + exp_wTx_new[i]));
                         i++;
@@ -1082,8 +1216,8 @@ public class Linear {
 
                     if (cond <= 0) {
                         i = 0;
-                        for (FeatureNode x : prob_col.x[j]) {
-                            int ind = x.index - 1;
+                        for (int p = rowPtr[j]; p < rowPtr[j + 1]; p++) {
+                            int ind = colIdx[p] - 1;
                             exp_wTx[ind] = exp_wTx_new[i];
                             i++;
                         }
@@ -1104,8 +1238,8 @@ public class Linear {
 
                     for (int i = 0; i < w_size; i++) {
                         if (w[i] == 0) continue;
-                        for (FeatureNode x : prob_col.x[i]) {
-                            exp_wTx[x.index - 1] += w[i] * x.value;
+                        for (int p = rowPtr[i]; p < rowPtr[i + 1]; p++) {
+                            exp_wTx[colIdx[p] - 1] += w[i] * values[p];
                         }
                     }
 
@@ -1154,37 +1288,35 @@ public class Linear {
         info("#nonzeros/#features = %d/%d\n", nnz, w_size);
     }
 
-    // transpose matrix X from row format to column format
+    // transpose matrix X from row format to column format (rows of prob_col are the features,
+    // column indices are the instances starting at 1)
     static Problem transpose(Problem prob) {
         int l = prob.l;
         int n = prob.n;
-        int[] col_ptr = new int[n + 1];
+        int nnz = prob.rowPtr[l];
         Problem prob_col = new Problem();
         prob_col.l = l;
         prob_col.n = n;
         prob_col.y = new int[l];
-        prob_col.x = new FeatureNode[n][];
+        prob_col.rowPtr = new int[n + 1];
+        prob_col.colIdx = new int[nnz];
+        prob_col.val = new double[nnz];
 
         for (int i = 0; i < l; i++)
             prob_col.y[i] = prob.y[i];
 
-        for (int i = 0; i < l; i++) {
-            for (FeatureNode x : prob.x[i]) {
-                col_ptr[x.index]++;
-            }
-        }
-
-        for (int i = 0; i < n; i++) {
-            prob_col.x[i] = new FeatureNode[col_ptr[i + 1]];
-            col_ptr[i] = 0; // reuse the array to count the nr of elements
-        }
+        for (int p = 0; p < nnz; p++)
+            prob_col.rowPtr[prob.colIdx[p]]++;
+        for (int j = 0; j < n; j++)
+            prob_col.rowPtr[j + 1] += prob_col.rowPtr[j];
 
+        // next free position of each column
+        int[] col_pos = copyOf(prob_col.rowPtr, n);
         for (int i = 0; i < l; i++) {
-            for (int j = 0; j < prob.x[i].length; j++) {
-                FeatureNode x = prob.x[i][j];
-                int index = x.index - 1;
-                prob_col.x[index][col_ptr[index]] = new FeatureNode(i + 1, x.value);
-                col_ptr[index]++;
+            for (int p = prob.rowPtr[i]; p < prob.rowPtr[i + 1]; p++) {
+                int q = col_pos[prob.colIdx[p] - 1]++;
+                prob_col.colIdx[q] = i + 1;
+                prob_col.val[q] = prob.val[p];
             }
         }
 
@@ -1213,32 +1345,40 @@ public class Linear {
      * @throws IllegalArgumentException if the feature nodes of prob are not sorted in ascending order
      */
     public static Model train(Problem prob, Parameter param) {
+        return trainPath(prob, param, new double[] {param.C})[0];
+    }
+
+    /**
+     * Trains a model for each of the given values of C (regularization path), which
+     * should be in ascending order. The solution for each value of C is used as
+     * initial solution for the next value (warm start), which takes considerably
+     * less iterations than training the models independently. Warm starts are
+     * supported by the L2-regularized solvers, the models of the other solvers
+     * are trained independently.
+     *
+     * @return models in the order of the values of C
+     * @throws IllegalArgumentException if the feature nodes of prob are not sorted in ascending order
+     */
+    public static Model[] trainPath(Problem prob, Parameter param, double[] Cs) {
 
         if (prob == null) throw new IllegalArgumentException("problem must not be null");
         if (param == null) throw new IllegalArgumentException("parameter must not be null");
 
-        for (FeatureNode[] nodes : prob.x) {
+        prob.compress();
+        for (int i = 0; i < prob.l; i++) {
             int indexBefore = 0;
-            for (FeatureNode n : nodes) {
-                if (n.index <= indexBefore) {
+            for (int p = prob.rowPtr[i]; p < prob.rowPtr[i + 1]; p++) {
+                if (prob.colIdx[p] <= indexBefore) {
                     throw new IllegalArgumentException("feature nodes must be sorted by index in ascending order");
                 }
-                indexBefore = n.index;
+                indexBefore = prob.colIdx[p];
             }
         }
 
-        int i, j;
+        int i, j, c;
         int l = prob.l;
         int n = prob.n;
         int w_size = prob.n;
-        Model model = new Model();
-
-        if (prob.bias >= 0)
-            model.nr_feature = n - 1;
-        else
-            model.nr_feature = n;
-        model.solverType = param.solverType;
-        model.bias = prob.bias;
 
         int[] perm = new int[l];
         // group training data of the same class
@@ -1248,15 +1388,27 @@ public class Linear {
         int[] start = rv.start;
         int[] count = rv.count;
 
-        model.nr_class = nr_class;
-        model.label = new int[nr_class];
-        for (i = 0; i < nr_class; i++)
-            model.label[i] = label[i];
+        Model[] models = new Model[Cs.length];
+        for (c = 0; c < Cs.length; c++) {
+            Model model = new Model();
+            if (prob.bias >= 0)
+                model.nr_feature = n - 1;
+            else
+                model.nr_feature = n;
+            model.solverType = param.solverType;
+            model.bias = prob.bias;
+
+            model.nr_class = nr_class;
+            model.label = new int[nr_class];
+            for (i = 0; i < nr_class; i++)
+                model.label[i] = label[i];
+            models[c] = model;
+        }
 
         // calculate weighted C
-        double[] weighted_C = new double[nr_class];
+        double[] weight = new double[nr_class];
         for (i = 0; i < nr_class; i++) {
-            weighted_C[i] = param.C;
+            weight[i] = 1;
         }
 
         for (i = 0; i < param.getNumWeights(); i++) {
@@ -1264,39 +1416,38 @@ public class Linear {
                 if (param.weightLabel[i] == label[j]) break;
             if (j == nr_class) throw new IllegalArgumentException("class label " + param.weightLabel[i] + " specified in weight is not found");
 
-            weighted_C[j] *= param.weight[i];
+            weight[j] *= param.weight[i];
         }
 
-        // constructing the subproblem
-        FeatureNode[][] x = new FeatureNode[l][];
-        for (i = 0; i < l; i++)
-            x[i] = prob.x[perm[i]];
+        double[][] weighted_C = new double[Cs.length][nr_class];
+        for (c = 0; c < Cs.length; c++) {
+            for (i = 0; i < nr_class; i++)
+                weighted_C[c][i] = Cs[c] * weight[i];
+        }
 
+        // constructing the subproblem
         int k;
-        Problem sub_prob = new Problem();
-        sub_prob.l = l;
-        sub_prob.n = n;
-        sub_prob.x = new FeatureNode[sub_prob.l][];
-        sub_prob.y = new int[sub_prob.l];
-
-        for (k = 0; k < sub_prob.l; k++)
-            sub_prob.x[k] = x[k];
+        Problem sub_prob = prob.subProblem(perm);
 
         // multi-class svm by Crammer and Singer
         if (param.solverType == SolverType.MCSVM_CS) {
-            model.w = new double[n * nr_class];
             for (i = 0; i < nr_class; i++) {
                 for (j = start[i]; j < start[i] + count[i]; j++) {
                     sub_prob.y[j] = i;
                 }
             }
 
-            SolverMCSVM_CS solver = new SolverMCSVM_CS(sub_prob, nr_class, weighted_C, param.eps);
-            solver.solve(model.w);
+            for (c = 0; c < Cs.length; c++) {
+                models[c].w = new double[n * nr_class];
+                SolverMCSVM_CS solver = new SolverMCSVM_CS(sub_prob, nr_class, weighted_C[c], param.eps);
+                solver.solve(models[c].w);
+            }
         } else {
-            if (nr_class == 2) {
-                model.w = new double[w_size];
+            // solution (w and the dual variables) of the previous value of C
+            double[] w = new double[w_size];
+            double[] alpha = new double[l];
 
+            if (nr_class == 2) {
                 int e0 = start[0] + count[0];
                 k = 0;
                 for (; k < e0; k++)
@@ -1304,10 +1455,14 @@ public class Linear {
                 for (; k < sub_prob.l; k++)
                     sub_prob.y[k] = -1;
 
-                train_one(sub_prob, param, model.w, weighted_C[0], weighted_C[1]);
+                for (c = 0; c < Cs.length; c++) {
+                    train_one(sub_prob, param, w, alpha, weighted_C[c][0], weighted_C[c][1], c > 0);
+                    models[c].w = copyOf(w, w_size);
+                }
             } else {
-                model.w = new double[w_size * nr_class];
-                double[] w = new double[w_size];
+                for (c = 0; c < Cs.length; c++)
+                    models[c].w = new double[w_size * nr_class];
+
                 for (i = 0; i < nr_class; i++) {
                     int si = start[i];
                     int ei = si + count[i];
@@ -1320,18 +1475,24 @@ public class Linear {
                     for (; k < sub_prob.l; k++)
                         sub_prob.y[k] = -1;
 
-                    train_one(sub_prob, param, w, weighted_C[i], param.C);
+                    for (c = 0; c < Cs.length; c++) {
+                        train_one(sub_prob, param, w, alpha, weighted_C[c][i], Cs[c], c > 0);
 
-                    for (j = 0; j < n; j++)
-                        model.w[j * nr_class + i] = w[j];
+                        for (j = 0; j < n; j++)
+                            models[c].w[j * nr_class + i] = w[j];
+                    }
                 }
             }
 
         }
-        return model;
+        return models;
     }
 
-    private static void train_one(Problem prob, Parameter param, double[] w, double Cp, double Cn) {
+    /**
+     * If warmStart is set, the given w (primal solvers) or alpha (dual solvers) is used as
+     * initial solution. The L1-regularized solvers always start at w = 0.
+     */
+    private static void train_one(Problem prob, Parameter param, double[] w, double[] alpha, double Cp, double Cn, boolean warmStart) {
         double eps = param.eps;
         int pos = 0;
         for (int i = 0; i < prob.l; i++)
@@ -1343,20 +1504,20 @@ public class Linear {
             case L2R_LR: {
                 fun_obj = new L2R_LrFunction(prob, Cp, Cn);
                 Tron tron_obj = new Tron(fun_obj, eps * Math.min(pos, neg) / prob.l);
-                tron_obj.tron(w);
+                tron_obj.tron(w, warmStart);
                 break;
             }
             case L2R_L2LOSS_SVC: {
                 fun_obj = new L2R_L2_SvcFunction(prob, Cp, Cn);
                 Tron tron_obj = new Tron(fun_obj, eps * Math.min(pos, neg) / prob.l);
-                tron_obj.tron(w);
+                tron_obj.tron(w, warmStart);
                 break;
             }
             case L2R_L2LOSS_SVC_DUAL:
-                solve_l2r_l1l2_svc(prob, w, eps, Cp, Cn, SolverType.L2R_L2LOSS_SVC_DUAL);
+                solve_l2r_l1l2_svc(prob, w, alpha, eps, Cp, Cn, SolverType.L2R_L2LOSS_SVC_DUAL, warmStart);
                 break;
             case L2R_L1LOSS_SVC_DUAL:
-                solve_l2r_l1l2_svc(prob, w, eps, Cp, Cn, SolverType.L2R_L1LOSS_SVC_DUAL);
+                solve_l2r_l1l2_svc(prob, w, alpha, eps, Cp, Cn, SolverType.L2R_L1LOSS_SVC_DUAL, warmStart);
                 break;
             case L1R_L2LOSS_SVC: {
                 Problem prob_col = transpose(prob);
@@ -39,9 +39,13 @@ import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Formatter;
+import java.util.LinkedList;
 import java.util.List;
-import java.util.StringTokenizer;
-import java.util.regex.Pattern;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * 
@@ -53,9 +57,17 @@ public class Predict {
 
     private static boolean       flag_predict_probability = false;
 
-    private static final Pattern COLON                    = Pattern.compile(":");
+    /** number of lines which are parsed and predicted by a single task */
+    private static final int     CHUNK_SIZE               = 4096;
+
+    /** powers of ten which are exactly representable as double */
+    private static final double[] POW10                   = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13,
+        1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
 
     /**
+     * Chunks of lines are parsed and predicted in parallel, the predictions are
+     * written in the order of the input lines.
+     *
      * <p><b>Note: The streams are NOT closed</b></p>
      */
     static void doPredict(BufferedReader reader, Writer writer, Model model) throws IOException {
@@ -63,13 +75,6 @@ public class Predict {
         int total = 0;
 
         int nr_class = model.getNrClass();
-        double[] prob_estimates = null;
-        int n;
-        int nr_feature = model.getNrFeature();
-        if (model.bias >= 0)
-            n = nr_feature + 1;
-        else
-            n = nr_feature;
 
         Formatter out = new Formatter(writer);
 
@@ -79,7 +84,6 @@ public class Predict {
             }
 
             int[] labels = model.getLabels();
-            prob_estimates = new double[nr_class];
 
             printf(out, "labels");
             for (int j = 0; j < nr_class; j++)
@@ -87,59 +91,279 @@ public class Predict {
             printf(out, "\n");
         }
 
+        int nr_threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(nr_threads);
+        try {
+            // the number of chunks in memory is bounded by the number of threads
+            LinkedList<Future<ChunkPrediction>> pending = new LinkedList<Future<ChunkPrediction>>();
+            int first_line = 0;
+            String[] lines;
+            while ((lines = readChunk(reader)) != null) {
+                pending.add(executor.submit(new ChunkPredictionTask(model, lines, first_line)));
+                first_line += lines.length;
+
+                if (pending.size() >= 2 * nr_threads) {
+                    ChunkPrediction prediction = getPrediction(pending.removeFirst());
+                    writer.append(prediction.output);
+                    correct += prediction.correct;
+                    total += prediction.total;
+                }
+            }
+            while (!pending.isEmpty()) {
+                ChunkPrediction prediction = getPrediction(pending.removeFirst());
+                writer.append(prediction.output);
+                correct += prediction.correct;
+                total += prediction.total;
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        System.out.printf("Accuracy = %g%% (%d/%d)" + NL, (double)correct / total * 100, correct, total);
+    }
+
+    // returns null if no lines are left
+    private static String[] readChunk(BufferedReader reader) throws IOException {
+        List<String> lines = new ArrayList<String>(CHUNK_SIZE);
+        String line;
+        while (lines.size() < CHUNK_SIZE && (line = reader.readLine()) != null) {
+            lines.add(line);
+        }
+        if (lines.isEmpty()) return null;
+
+        return lines.toArray(new String[lines.size()]);
+    }
+
+    private static ChunkPrediction getPrediction(Future<ChunkPrediction> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            throw new IOException("prediction was interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+            if (cause instanceof IOException) throw (IOException)cause;
+            throw new IOException(cause);
+        }
+    }
+
+    /** predictions of a chunk of lines */
+    private static class ChunkPrediction {
+
+        final StringBuilder output;
+        final int           correct;
+        final int           total;
+
+        ChunkPrediction(StringBuilder output, int correct, int total) {
+            this.output = output;
+            this.correct = correct;
+            this.total = total;
+        }
+    }
+
+    /** parses and predicts a chunk of lines */
+    private static class ChunkPredictionTask implements Callable<ChunkPrediction> {
+
+        private final Model    model;
+        private final String[] lines;
+        private final int      first_line;
+
+        ChunkPredictionTask(Model model, String[] lines, int first_line) {
+            this.model = model;
+            this.lines = lines;
+            this.first_line = first_line;
+        }
+
+        public ChunkPrediction call() throws IOException {
+            int correct = 0;
+            double[] prob_estimates = new double[model.getNrClass()];
+            LineParser parser = new LineParser(model);
+
+            StringBuilder output = new StringBuilder(lines.length * (flag_predict_probability ? 64 : 4));
+            Formatter out = new Formatter(output);
+            for (int i = 0; i < lines.length; i++) {
+                parser.parse(lines[i], first_line + i + 1);
+
+                int predict_label;
+
+                if (flag_predict_probability) {
+                    predict_label = Linear.predictProbability(model, parser.indices, parser.values, parser.length, prob_estimates);
+                    printf(out, "%d", predict_label);
+                    for (int j = 0; j < model.nr_class; j++)
+                        printf(out, " %g", prob_estimates[j]);
+                    printf(out, "\n");
+                } else {
+                    predict_label = Linear.predictValues(model, parser.indices, parser.values, parser.length, prob_estimates);
+                    printf(out, "%d\n", predict_label);
+                }
+
+                if (predict_label == parser.target_label) {
+                    ++correct;
+                }
+            }
+            return new ChunkPrediction(output, correct, lines.length);
+        }
+    }
+
+    /**
+     * Tokenizer for lines in LibSVM format (<tt>label index:value ...</tt>), which reads
+     * the features of a line into reusable buffers without creating objects per token.
+     */
+    private static class LineParser {
+
+        private final int    nr_feature;
+        private final int    n;
+        private final double bias;
 
-        String line = null;
-        while ((line = reader.readLine()) != null) {
-            List<FeatureNode> x = new ArrayList<FeatureNode>();
-            StringTokenizer st = new StringTokenizer(line, " \t");
-            String label = st.nextToken();
-            int target_label = atoi(label);
+        int                  target_label;
+        int[]                indices = new int[64];
+        double[]             values  = new double[64];
+        int                  length;
 
-            while (st.hasMoreTokens()) {
-                String[] split = COLON.split(st.nextToken(), 2);
-                if (split == null || split.length < 2) exit_input_error(total + 1);
+        LineParser(Model model) {
+            nr_feature = model.getNrFeature();
+            bias = model.bias;
+            if (bias >= 0)
+                n = nr_feature + 1;
+            else
+                n = nr_feature;
+        }
+
+        void parse(String line, int line_num) {
+            int end = line.length();
+            int pos = skipSpace(line, 0, end);
+            int tokenEnd = nextSpace(line, pos, end);
+            if (pos == tokenEnd) exit_input_error(line_num);
+            try {
+                target_label = atoi(line.substring(pos, tokenEnd));
+            } catch (NumberFormatException e) {
+                exit_input_error(line_num, e);
+            }
+
+            length = 0;
+            pos = skipSpace(line, tokenEnd, end);
+            while (pos < end) {
+                tokenEnd = nextSpace(line, pos, end);
+                int colon = line.indexOf(':', pos);
+                if (colon < 0 || colon >= tokenEnd) exit_input_error(line_num);
 
                 try {
-                    int idx = atoi(split[0]);
-                    double val = atof(split[1]);
+                    int idx = parseIndex(line, pos, colon);
+                    double val = parseValue(line, colon + 1, tokenEnd);
 
                     // feature indices larger than those in training are not used
-                    if (idx <= nr_feature) {
-                        FeatureNode node = new FeatureNode(idx, val);
-                        x.add(node);
-                    }
+                    if (idx <= nr_feature) add(idx, val);
                 } catch (NumberFormatException e) {
-                    exit_input_error(total + 1, e);
+                    exit_input_error(line_num, e);
                 }
+                pos = skipSpace(line, tokenEnd, end);
+            }
+
+            if (bias >= 0) add(n, bias);
+        }
+
+        private void add(int idx, double val) {
+            if (length == indices.length) {
+                indices = Linear.copyOf(indices, 2 * length);
+                values = Linear.copyOf(values, 2 * length);
             }
+            indices[length] = idx;
+            values[length++] = val;
+        }
+
+        private static int skipSpace(String line, int pos, int end) {
+            while (pos < end && (line.charAt(pos) == ' ' || line.charAt(pos) == '\t'))
+                pos++;
+            return pos;
+        }
 
-            if (model.bias >= 0) {
-                FeatureNode node = new FeatureNode(n, model.bias);
-                x.add(node);
+        private static int nextSpace(String line, int pos, int end) {
+            while (pos < end && line.charAt(pos) != ' ' && line.charAt(pos) != '\t')
+                pos++;
+            return pos;
+        }
+
+        // positive decimal integer (see atoi)
+        private static int parseIndex(String line, int begin, int end) {
+            int pos = begin;
+            if (pos < end && line.charAt(pos) == '+') pos++;
+            if (pos == end) throw new NumberFormatException("For input string: \"" + line.substring(begin, end) + "\"");
+
+            int idx = 0;
+            for (; pos < end; pos++) {
+                int digit = line.charAt(pos) - '0';
+                if (digit < 0 || digit > 9 || idx > (Integer.MAX_VALUE - digit) / 10) {
+                    throw new NumberFormatException("For input string: \"" + line.substring(begin, end) + "\"");
+                }
+                idx = 10 * idx + digit;
             }
+            return idx;
+        }
 
-            FeatureNode[] nodes = new FeatureNode[x.size()];
-            nodes = x.toArray(nodes);
+        /**
+         * Decimal numbers with at most 15 significant digits and a decimal exponent of at most 22
+         * are converted by a single exact multiplication or division, which yields the same
+         * (correctly rounded) value as {@link Double#parseDouble}. Other numbers are passed to atof.
+         */
+        private static double parseValue(String line, int begin, int end) {
+            int pos = begin;
+            boolean negative = false;
+            if (pos < end && (line.charAt(pos) == '-' || line.charAt(pos) == '+')) {
+                negative = (line.charAt(pos) == '-');
+                pos++;
+            }
 
-            int predict_label;
+            long mantissa = 0;
+            int digits = 0;
+            int exponent = 0;
+            boolean anyDigit = false;
+            boolean fraction = false;
+            for (; pos < end; pos++) {
+                char c = line.charAt(pos);
+                if (c == '.' && !fraction) {
+                    fraction = true;
+                    continue;
+                }
+                if (c < '0' || c > '9') break;
 
-            if (flag_predict_probability) {
-                predict_label = Linear.predictProbability(model, nodes, prob_estimates);
-                printf(out, "%d", predict_label);
-                for (int j = 0; j < model.nr_class; j++)
-                    printf(out, " %g", prob_estimates[j]);
-                printf(out, "\n");
-            } else {
-                predict_label = Linear.predict(model, nodes);
-                printf(out, "%d\n", predict_label);
+                anyDigit = true;
+                if (fraction) exponent--;
+                if (mantissa == 0 && c == '0') continue;
+                if (++digits > 15) return atof(line.substring(begin, end));
+                mantissa = 10 * mantissa + (c - '0');
             }
+            if (!anyDigit) return atof(line.substring(begin, end));
 
-            if (predict_label == target_label) {
-                ++correct;
+            if (pos < end && (line.charAt(pos) == 'e' || line.charAt(pos) == 'E')) {
+                pos++;
+                boolean negativeExp = false;
+                if (pos < end && (line.charAt(pos) == '-' || line.charAt(pos) == '+')) {
+                    negativeExp = (line.charAt(pos) == '-');
+                    pos++;
+                }
+                int exp = 0;
+                int expBegin = pos;
+                for (; pos < end && exp < 1000; pos++) {
+                    char c = line.charAt(pos);
+                    if (c < '0' || c > '9') break;
+                    exp = 10 * exp + (c - '0');
+                }
+                if (pos == expBegin) return atof(line.substring(begin, end));
+                exponent += negativeExp ? -exp : exp;
             }
-            ++total;
+            if (pos < end) return atof(line.substring(begin, end));
+
+            double value;
+            if (mantissa == 0)
+                value = 0;
+            else if (exponent >= 0 && exponent < POW10.length)
+                value = mantissa * POW10[exponent];
+            else if (exponent < 0 && -exponent < POW10.length)
+                value = mantissa / POW10[-exponent];
+            else
+                return atof(line.substring(begin, end));
+
+            return negative ? -value : value;
         }
-        System.out.printf("Accuracy = %g%% (%d/%d)" + NL, (double)correct / total * 100, correct, total);
     }
 
     private static void exit_input_error(int line_num, Throwable cause) {
@@ -52,8 +52,17 @@ import java.io.IOException;
  *       [ ] -&gt; (1,0.4) (6,1) (-1,?)
  *       [ ] -&gt; (2,0.1) (4,1.4) (5,0.5) (6,1) (-1,?)
  *       [ ] -&gt; (1,-0.1) (2,-0.2) (3,0.1) (4,1.1) (5,0.1) (6,1) (-1,?)
+ *
+ *  The solvers work on the compressed sparse rows of x:
+ *
+ *  rowPtr -&gt; 0 3 7 9 13 19
+ *  colIdx -&gt; 2 3 6 2 3 4 6 1 6 2 4 5 6 1 2 3 4 5 6
+ *  val    -&gt; 0.1 0.2 1 0.1 0.3 -1.2 1 0.4 1 0.1 1.4 0.5 1 -0.1 -0.2 0.1 1.1 0.1 1
  * </pre></p>
  *
+ *  <p>Problems can be built either from feature nodes (x) or directly in compressed
+ *  form (rowPtr, colIdx, val), e.g. by {@link Train#readProblem(File, double)}.</p>
+ *
  * @author Johannes Eichner
  * @version $Rev$
  * @since 1.0
@@ -69,19 +78,102 @@ public class Problem {
     /** an array containing the target values */
     public int[]           y;
 
-    /** array of sparse feature nodes */
+    /** array of sparse feature nodes (null if the problem was built in compressed form) */
     public FeatureNode[][] x;
 
+    /** positions of the first entry of each instance in colIdx and val (length l+1) */
+    public int[]           rowPtr;
+
+    /** feature indices of the entries (starting at 1) */
+    public int[]           colIdx;
+
+    /** feature values of the entries */
+    public double[]        val;
+
     /**
      * If bias &gt;= 0, we assume that one additional feature is added
      * to the end of each data instance
      */
     public double          bias;
 
+    /**
+     * builds the compressed sparse rows from the feature nodes (if not done yet)
+     */
+    public synchronized void compress() {
+        if (rowPtr != null) return;
+
+        int nnz = 0;
+        for (int i = 0; i < l; i++)
+            nnz += x[i].length;
+
+        rowPtr = new int[l + 1];
+        colIdx = new int[nnz];
+        val = new double[nnz];
+
+        int p = 0;
+        for (int i = 0; i < l; i++) {
+            for (FeatureNode node : x[i]) {
+                colIdx[p] = node.index;
+                val[p] = node.value;
+                p++;
+            }
+            rowPtr[i + 1] = p;
+        }
+    }
+
+    /**
+     * returns the feature nodes of the given instance (created from the compressed rows
+     * if the problem was built in compressed form)
+     */
+    public FeatureNode[] getFeatureNodes(int i) {
+        if (x != null) return x[i];
+
+        FeatureNode[] nodes = new FeatureNode[rowPtr[i + 1] - rowPtr[i]];
+        for (int p = rowPtr[i]; p < rowPtr[i + 1]; p++)
+            nodes[p - rowPtr[i]] = new FeatureNode(colIdx[p], val[p]);
+        return nodes;
+    }
+
+    /**
+     * returns the problem which consists of the given instances (in the given order),
+     * labels and compressed rows are copied
+     */
+    Problem subProblem(int[] instances) {
+        compress();
+
+        Problem subprob = new Problem();
+        subprob.bias = bias;
+        subprob.n = n;
+        subprob.l = instances.length;
+        subprob.y = new int[subprob.l];
+        subprob.rowPtr = new int[subprob.l + 1];
+
+        for (int k = 0; k < subprob.l; k++) {
+            int i = instances[k];
+            subprob.y[k] = y[i];
+            subprob.rowPtr[k + 1] = subprob.rowPtr[k] + rowPtr[i + 1] - rowPtr[i];
+        }
+        subprob.colIdx = new int[subprob.rowPtr[subprob.l]];
+        subprob.val = new double[subprob.rowPtr[subprob.l]];
+        for (int k = 0; k < subprob.l; k++) {
+            int i = instances[k];
+            System.arraycopy(colIdx, rowPtr[i], subprob.colIdx, subprob.rowPtr[k], rowPtr[i + 1] - rowPtr[i]);
+            System.arraycopy(val, rowPtr[i], subprob.val, subprob.rowPtr[k], rowPtr[i + 1] - rowPtr[i]);
+        }
+        return subprob;
+    }
+
     /**
      * see {@link Train#readProblem(File, double)}
      */
     public static Problem readFromFile(File file, double bias) throws IOException, InvalidInputDataException {
         return Train.readProblem(file, bias);
     }
+
+    /**
+     * see {@link Train#readProblemBinary(File, double)}
+     */
+    public static Problem readFromBinaryFile(File file, double bias) throws IOException, InvalidInputDataException {
+        return Train.readProblemBinary(file, bias);
+    }
 }
@@ -26,6 +26,8 @@ import static liblinear.Linear.copyOf;
 import static liblinear.Linear.info;
 import static liblinear.Linear.swap;
 
+import java.util.Random;
+
 
 /**
  * A coordinate descent algorithm for
@@ -62,6 +64,9 @@ class SolverMCSVM_CS {
     private final int      w_size, l;
     private final int      nr_class;
     private final Problem  prob;
+    private final int[]    rowPtr;
+    private final int[]    colIdx;
+    private final double[] values;
 
     public SolverMCSVM_CS( Problem prob, int nr_class, double[] C ) {
         this(prob, nr_class, C, 0.1);
@@ -79,6 +84,10 @@ class SolverMCSVM_CS {
         this.eps = eps;
         this.max_iter = max_iter;
         this.prob = prob;
+        prob.compress();
+        this.rowPtr = prob.rowPtr;
+        this.colIdx = prob.colIdx;
+        this.values = prob.val;
         this.C = weighted_C;
         this.B = new double[nr_class];
         this.G = new double[nr_class];
@@ -119,8 +128,8 @@ class SolverMCSVM_CS {
             for (m = 0; m < nr_class; m++)
                 alpha_index[i * nr_class + m] = m;
             QD[i] = 0;
-            for (FeatureNode xi : prob.x[i]) {
-                QD[i] += xi.value * xi.value;
+            for (int p = rowPtr[i]; p < rowPtr[i + 1]; p++) {
+                QD[i] += values[p] * values[p];
             }
             active_size_i[i] = nr_class;
             y_index[i] = prob.y[i];
@@ -130,12 +139,13 @@ class SolverMCSVM_CS {
         DoubleArrayPointer alpha_i = new DoubleArrayPointer(alpha, 0);
         IntArrayPointer alpha_index_i = new IntArrayPointer(alpha_index, 0);
 
+        Random random = Linear.getRandom();
         while (iter < max_iter) {
             double stopping = Double.NEGATIVE_INFINITY;
 
             for (i = 0; i < active_size; i++) {
                 // int j = i+rand()%(active_size-i);
-                int j = i + Linear.random.nextInt(active_size - i);
+                int j = i + random.nextInt(active_size - i);
                 swap(index, i, j);
             }
             for (s = 0; s < active_size; s++) {
@@ -153,12 +163,12 @@ class SolverMCSVM_CS {
                         G[m] = 1;
                     if (y_index[i] < active_size_i[i]) G[y_index[i]] = 0;
 
-                    for (FeatureNode xi : prob.x[i]) {
+                    for (int p = rowPtr[i]; p < rowPtr[i + 1]; p++) {
                         // double *w_i = &w[(xi.index-1)*nr_class];
-                        int w_offset = (xi.index - 1) * nr_class;
+                        int w_offset = (colIdx[p] - 1) * nr_class;
                         for (m = 0; m < active_size_i[i]; m++)
                             // G[m] += w_i[alpha_index_i[m]]*(xi.value);
-                            G[m] += w[w_offset + alpha_index_i.get(m)] * (xi.value);
+                            G[m] += w[w_offset + alpha_index_i.get(m)] * (values[p]);
 
                     }
 
@@ -218,11 +228,11 @@ class SolverMCSVM_CS {
                         }
                     }
 
-                    for (FeatureNode xi : prob.x[i]) {
+                    for (int p = rowPtr[i]; p < rowPtr[i + 1]; p++) {
                         // double *w_i = &w[(xi->index-1)*nr_class];
-                        int w_offset = (xi.index - 1) * nr_class;
+                        int w_offset = (colIdx[p] - 1) * nr_class;
                         for (m = 0; m < nz_d; m++) {
-                            w[w_offset + d_ind[m]] += d_val[m] * xi.value;
+                            w[w_offset + d_ind[m]] += d_val[m] * values[p];
                         }
                     }
                 }
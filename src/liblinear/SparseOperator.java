@@ -0,0 +1,263 @@
+/*  
+ * $Id$
+ * $URL$
+ * This file is part of the program TFpredict. TFpredict performs the
+ * identification and structural characterization of transcription factors.
+ *  
+ * Copyright (C) 2010-2014 Center for Bioinformatics Tuebingen (ZBIT),
+ * University of Tuebingen by Johannes Eichner, Florian Topf, Andreas Draeger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package liblinear;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Products of the data matrix X of a problem with vectors (X*v and X^T*v), which are
+ * required by the TRON function objects. The rows are split into blocks with similar
+ * numbers of non-zero entries, which are multiplied in parallel. As all rows contribute
+ * to each entry of X^T*v, the blocks accumulate their part separately and the parts are
+ * summed up afterwards. Each additional part costs O(w_size) time and memory, hence X^T*v
+ * is only split into as many blocks as the number of non-zero entries allows (e.g., a
+ * single block for large feature spaces or small subsets of rows).
+ *
+ * The blocks only depend on the problem (not on the number of processors) and the parts
+ * are summed up in a fixed order, hence the products are identical for any number of threads.
+ *
+ * Buffers and tasks are allocated once, i.e., the products do not allocate memory. An
+ * operator must not be used by several threads at the same time.
+ *
+ * @author Johannes Eichner
+ * @version $Rev$
+ * @since 1.0
+ */
+class SparseOperator {
+
+    /** minimum number of non-zero entries per block (smaller problems are multiplied serially) */
+    private static final int          MIN_BLOCK_SIZE = 20000;
+
+    /** maximum number of blocks (fixed, so that the summation order does not depend on the number of processors) */
+    private static final int          MAX_BLOCKS     = 8;
+
+    /** minimum ratio of non-zero entries to the size of the additional parts of X^T*v */
+    private static final int          MIN_ENTRIES_PER_PART = 4;
+
+    /** used if the products are not computed within a fork/join pool (also runs the folds of {@link Linear#crossValidation}) */
+    static final ForkJoinPool         pool           = new ForkJoinPool();
+
+    private static final int          XV             = 0;
+    private static final int          XTV            = 1;
+    private static final int          REDUCE         = 2;
+
+    private final int[]               rowPtr;
+    private final int[]               colIdx;
+    private final double[]            values;
+    private final int                 l;
+    private final int                 w_size;
+    private final int                 nnz;
+
+    private final int                 numBlocks;
+    private int                       numActiveBlocks;
+    private final int[]               blockStart;
+    private final double[][]          accumulators;
+    private final Block[]             blocks;
+    private final Root                root           = new Root();
+
+    public SparseOperator( Problem prob ) {
+        prob.compress();
+        rowPtr = prob.rowPtr;
+        colIdx = prob.colIdx;
+        values = prob.val;
+        l = prob.l;
+        w_size = prob.n;
+
+        nnz = rowPtr[l];
+        numBlocks = Math.max(1, Math.min(MAX_BLOCKS, Math.min(l, nnz / MIN_BLOCK_SIZE)));
+
+        // first row of each block (blocks have similar numbers of non-zero entries)
+        blockStart = new int[numBlocks + 1];
+        int i = 0;
+        for (int b = 1; b < numBlocks; b++) {
+            long minEntries = (long) b * nnz / numBlocks;
+            while (i < l && rowPtr[i] < minEntries)
+                i++;
+            blockStart[b] = i;
+        }
+        blockStart[numBlocks] = l;
+
+        blocks = new Block[numBlocks];
+        for (int b = 0; b < numBlocks; b++)
+            blocks[b] = new Block(b);
+
+        // the first block writes X^T*v directly, the other blocks accumulate their part
+        accumulators = new double[getNumBlocks(XTV, nnz) - 1][w_size];
+    }
+
+    // blocks used for a product with the given number of non-zero entries
+    private int getNumBlocks(int op, long entries) {
+        long maxBlocks = Math.min(numBlocks, entries / MIN_BLOCK_SIZE);
+        if (op == XTV)
+            maxBlocks = Math.min(maxBlocks, 1 + entries / ((long) MIN_ENTRIES_PER_PART * w_size));
+        return (int) Math.max(1, maxBlocks);
+    }
+
+    void Xv(double[] v, double[] Xv) {
+        run(XV, null, l, v, Xv);
+    }
+
+    void XTv(double[] v, double[] XTv) {
+        run(XTV, null, l, v, XTv);
+    }
+
+    /**
+     * product of the rows I[0] ... I[sizeI-1] with v (Xv[k] belongs to row I[k])
+     */
+    void subXv(int[] I, int sizeI, double[] v, double[] Xv) {
+        run(XV, I, sizeI, v, Xv);
+    }
+
+    /**
+     * product of the transposed rows I[0] ... I[sizeI-1] with v (v[k] belongs to row I[k])
+     */
+    void subXTv(int[] I, int sizeI, double[] v, double[] XTv) {
+        run(XTV, I, sizeI, v, XTv);
+    }
+
+    private void run(int op, int[] I, int size, double[] v, double[] out) {
+
+        // non-zero entries of subsets are estimated from the average row
+        long entries = (I == null) ? nnz : (long) size * nnz / Math.max(1, l);
+        numActiveBlocks = getNumBlocks(op, entries);
+        if (numActiveBlocks == 1) {
+            blocks[0].set(op, I, 0, size, v, out);
+            blocks[0].compute();
+            return;
+        }
+
+        for (int b = 0; b < numActiveBlocks; b++) {
+            int begin, end;
+            if (I == null) {
+                // merges adjacent blocks if fewer blocks are used
+                begin = blockStart[b * numBlocks / numActiveBlocks];
+                end = blockStart[(b + 1) * numBlocks / numActiveBlocks];
+            } else {
+                begin = (int) ((long) b * size / numActiveBlocks);
+                end = (int) ((long) (b + 1) * size / numActiveBlocks);
+            }
+            blocks[b].set(op, I, begin, end, v, out);
+        }
+        invoke();
+
+        // add the parts of X^T*v to the first part (feature ranges are summed in parallel)
+        if (op == XTV) {
+            for (int b = 0; b < numActiveBlocks; b++)
+                blocks[b].set(REDUCE, null, (int) ((long) b * w_size / numActiveBlocks), (int) ((long) (b + 1) * w_size / numActiveBlocks), null, out);
+            invoke();
+        }
+    }
+
+    private void invoke() {
+        root.reinitialize();
+        if (ForkJoinTask.inForkJoinPool()) {
+            root.invoke();
+        } else {
+            pool.invoke(root);
+        }
+    }
+
+
+    // task: forks all blocks and waits for them
+    private class Root extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected void compute() {
+            for (int b = 1; b < numActiveBlocks; b++) {
+                blocks[b].reinitialize();
+                blocks[b].fork();
+            }
+            blocks[0].compute();
+            for (int b = 1; b < numActiveBlocks; b++)
+                blocks[b].join();
+        }
+    }
+
+
+    // task: product of the rows of a single block
+    private class Block extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int         index;
+        private int               op;
+        private int[]             I;
+        private int               begin, end;
+        private double[]          v;
+        private double[]          out;
+
+        Block( int index ) {
+            this.index = index;
+        }
+
+        void set(int op, int[] I, int begin, int end, double[] v, double[] out) {
+            this.op = op;
+            this.I = I;
+            this.begin = begin;
+            this.end = end;
+            this.v = v;
+            this.out = out;
+        }
+
+        @Override
+        protected void compute() {
+            switch (op) {
+                case XV:
+                    for (int k = begin; k < end; k++) {
+                        int i = (I == null) ? k : I[k];
+                        double sum = 0;
+                        for (int p = rowPtr[i]; p < rowPtr[i + 1]; p++)
+                            sum += v[colIdx[p] - 1] * values[p];
+                        out[k] = sum;
+                    }
+                    break;
+
+                case XTV:
+                    // the first block writes the result directly
+                    double[] XTv = (index == 0) ? out : accumulators[index - 1];
+                    Arrays.fill(XTv, 0, w_size, 0);
+                    for (int k = begin; k < end; k++) {
+                        int i = (I == null) ? k : I[k];
+                        double vk = v[k];
+                        for (int p = rowPtr[i]; p < rowPtr[i + 1]; p++)
+                            XTv[colIdx[p] - 1] += vk * values[p];
+                    }
+                    break;
+
+                case REDUCE:
+                    for (int j = begin; j < end; j++) {
+                        double sum = out[j];
+                        for (int b = 0; b < numActiveBlocks - 1; b++)
+                            sum += accumulators[b][j];
+                        out[j] = sum;
+                    }
+                    break;
+            }
+        }
+    }
+}
@@ -26,6 +26,8 @@ import static liblinear.Linear.NL;
 import static liblinear.Linear.atof;
 import static liblinear.Linear.atoi;
 
+import io.BinaryFeatureFileReader;
+
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
@@ -211,7 +213,7 @@ public class Train {
     public static Problem readProblem(File file, double bias) throws IOException, InvalidInputDataException {
         BufferedReader fp = new BufferedReader(new FileReader(file));
         List<Integer> vy = new ArrayList<Integer>();
-        List<FeatureNode[]> vx = new ArrayList<FeatureNode[]>();
+        CompressedRows vx = new CompressedRows();
         int max_index = 0;
 
         int lineNr = 0;
@@ -232,12 +234,6 @@ public class Train {
                 }
 
                 int m = st.countTokens() / 2;
-                FeatureNode[] x;
-                if (bias >= 0) {
-                    x = new FeatureNode[m + 1];
-                } else {
-                    x = new FeatureNode[m];
-                }
                 int indexBefore = 0;
                 for (int j = 0; j < m; j++) {
 
@@ -257,16 +253,14 @@ public class Train {
                     token = st.nextToken();
                     try {
                         double value = atof(token);
-                        x[j] = new FeatureNode(index, value);
+                        vx.add(index, value);
                     } catch (NumberFormatException e) {
                         throw new InvalidInputDataException("invalid value: " + token, file, lineNr);
                     }
                 }
-                if (m > 0) {
-                    max_index = Math.max(max_index, x[m - 1].index);
-                }
+                max_index = Math.max(max_index, indexBefore);
 
-                vx.add(x);
+                vx.endRow();
             }
 
             return constructProblem(vy, vx, max_index, bias);
@@ -276,11 +270,46 @@ public class Train {
         }
     }
 
+    /**
+     * reads a problem from a binary feature file (see {@link io.BinaryFeatureFileWriter})
+     * without parsing text, i.e., the compressed rows are filled directly from the memory-mapped file
+     * @throws InvalidInputDataException if a label is not an integer or the indices are not sorted
+     */
+    public static Problem readProblemBinary(File file, double bias) throws IOException, InvalidInputDataException {
+        BinaryFeatureFileReader reader = new BinaryFeatureFileReader(file.getPath());
+        List<Integer> vy = new ArrayList<Integer>(reader.getNumRows());
+        CompressedRows vx = new CompressedRows();
+        int max_index = 0;
+
+        for (int i = 0; i < reader.getNumRows(); i++) {
+            double label = reader.getLabel(i);
+            if (label != (int) label) throw new InvalidInputDataException("invalid label: " + label, file, i + 1);
+            vy.add((int) label);
+
+            int start = reader.getRowStart(i);
+            int m = reader.getRowLength(i);
+            int indexBefore = 0;
+            for (int j = 0; j < m; j++) {
+                int index = reader.getIndex(start + j);
+                if (index <= indexBefore) throw new InvalidInputDataException("indices must be sorted in ascending order", file, i + 1);
+                indexBefore = index;
+                vx.add(index, reader.getValue(start + j));
+            }
+            max_index = Math.max(max_index, indexBefore);
+            vx.endRow();
+        }
+        return constructProblem(vy, vx, max_index, bias);
+    }
+
     void readProblem(String filename) throws IOException, InvalidInputDataException {
-        prob = Train.readProblem(new File(filename), bias);
+        if (BinaryFeatureFileReader.isBinaryFeatureFile(filename)) {
+            prob = Train.readProblemBinary(new File(filename), bias);
+        } else {
+            prob = Train.readProblem(new File(filename), bias);
+        }
     }
 
-    private static Problem constructProblem(List<Integer> vy, List<FeatureNode[]> vx, int max_index, double bias) {
+    private static Problem constructProblem(List<Integer> vy, CompressedRows vx, int max_index, double bias) {
         Problem prob = new Problem();
         prob.bias = bias;
         prob.l = vy.size();
@@ -288,16 +317,28 @@ public class Train {
         if (bias >= 0) {
             prob.n++;
         }
-        prob.x = new FeatureNode[prob.l][];
+
+        // copy rows to arrays of the final size and append the bias feature
+        int nnz = vx.rowPtr[prob.l];
+        if (bias >= 0) {
+            nnz += prob.l;
+        }
+        prob.rowPtr = new int[prob.l + 1];
+        prob.colIdx = new int[nnz];
+        prob.val = new double[nnz];
         for (int i = 0; i < prob.l; i++) {
-            prob.x[i] = vx.get(i);
+            int p = prob.rowPtr[i];
+            int length = vx.rowPtr[i + 1] - vx.rowPtr[i];
+            System.arraycopy(vx.colIdx, vx.rowPtr[i], prob.colIdx, p, length);
+            System.arraycopy(vx.val, vx.rowPtr[i], prob.val, p, length);
+            p += length;
 
             if (bias >= 0) {
-                assert prob.x[i][prob.x[i].length - 1] == null;
-                prob.x[i][prob.x[i].length - 1] = new FeatureNode(max_index + 1, bias);
-            } else {
-                assert prob.x[i][prob.x[i].length - 1] != null;
+                prob.colIdx[p] = max_index + 1;
+                prob.val[p] = bias;
+                p++;
             }
+            prob.rowPtr[i + 1] = p;
         }
 
         prob.y = new int[prob.l];
@@ -307,6 +348,36 @@ public class Train {
         return prob;
     }
 
+    /**
+     * compressed sparse rows which grow while a problem is read
+     */
+    private static class CompressedRows {
+
+        int      l      = 0;
+        int[]    rowPtr = new int[1025];
+        int[]    colIdx = new int[8192];
+        double[] val    = new double[8192];
+
+        void add(int index, double value) {
+            int nnz = rowPtr[l + 1];
+            if (nnz == colIdx.length) {
+                colIdx = Linear.copyOf(colIdx, 2 * nnz);
+                val = Linear.copyOf(val, 2 * nnz);
+            }
+            colIdx[nnz] = index;
+            val[nnz] = value;
+            rowPtr[l + 1] = nnz + 1;
+        }
+
+        void endRow() {
+            l++;
+            if (l + 1 == rowPtr.length) {
+                rowPtr = Linear.copyOf(rowPtr, 2 * rowPtr.length);
+            }
+            rowPtr[l + 1] = rowPtr[l];
+        }
+    }
+
     private void run(String[] args) throws IOException, InvalidInputDataException {
         parse_command_line(args);
         readProblem(inputFilename);
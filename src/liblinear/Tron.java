@@ -43,6 +43,10 @@ class Tron {
 
     private final int      max_iter;
 
+    // work buffers of the conjugate gradient iterations (allocated once per call of tron)
+    private double[]       d;
+    private double[]       Hd;
+
     public Tron( final Function fun_obj ) {
         this(fun_obj, 0.1);
     }
@@ -59,6 +63,14 @@ class Tron {
 
     // void tron(double *w)
     void tron(double[] w) {
+        tron(w, false);
+    }
+
+    /**
+     * If warmStart is set, the given w is used as initial solution (e.g., the solution for
+     * a smaller C). The stopping criterion remains relative to the gradient at w = 0.
+     */
+    void tron(double[] w, boolean warmStart) {
         // Parameters for updating the iterates.
         double eta0 = 1e-4, eta1 = 0.25, eta2 = 0.75;
 
@@ -74,16 +86,28 @@ class Tron {
         double[] r = new double[n];
         double[] w_new = new double[n];
         double[] g = new double[n];
-
-        for (i = 0; i < n; i++)
-            w[i] = 0;
+        d = new double[n];
+        Hd = new double[n];
+
+        double gnorm1 = 0;
+        if (warmStart) {
+            // gradient norm at w = 0 (w_new is used as zero vector)
+            for (i = 0; i < n; i++)
+                w_new[i] = 0;
+            fun_obj.fun(w_new);
+            fun_obj.grad(w_new, g);
+            gnorm1 = DNRM2(n, g, inc);
+        } else {
+            for (i = 0; i < n; i++)
+                w[i] = 0;
+        }
 
         f = fun_obj.fun(w);
         fun_obj.grad(w, g);
         delta = DNRM2(n, g, inc);
         // delta = dnrm2_(&n, g, &inc);
-        double gnorm1 = delta;
-        double gnorm = gnorm1;
+        if (!warmStart) gnorm1 = delta;
+        double gnorm = delta;
 
         if (gnorm <= eps * gnorm1) search = 0;
 
@@ -159,8 +183,10 @@ class Tron {
         int i, inc = 1;
         int n = fun_obj.get_nr_variable();
         double one = 1;
-        double[] d = new double[n];
-        double[] Hd = new double[n];
+        if (d == null || d.length != n) {
+            d = new double[n];
+            Hd = new double[n];
+        }
         double rTr, rnewTrnew, cgtol;
 
         for (i = 0; i < n; i++) {
@@ -23,23 +23,30 @@
 package liblinear;
 
 import io.BasicTools;
+import io.BinaryFeatureFileReader;
+import io.ThreadLogSink;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintStream;
+import java.io.OutputStream;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 import java.util.logging.Logger;
 
 import org.apache.commons.cli.BasicParser;
@@ -52,21 +59,22 @@ import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 import org.apache.commons.math.stat.descriptive.moment.Mean;
 
+import weka.classifiers.AbstractClassifier;
 import weka.classifiers.Classifier;
 import weka.classifiers.Evaluation;
 import weka.classifiers.bayes.NaiveBayes;
 import weka.classifiers.functions.GaussianProcesses;
-import weka.classifiers.functions.LibLINEAR;
 import weka.classifiers.functions.LibSVM;
 import weka.classifiers.lazy.IBk;
 import weka.classifiers.lazy.KStar;
 import weka.classifiers.trees.J48;
 import weka.classifiers.trees.RandomForest;
+import weka.core.Attribute;
 import weka.core.Instance;
 import weka.core.Instances;
 import weka.core.SelectedTag;
+import weka.core.SparseInstance;
 import weka.core.converters.LibSVMLoader;
-import weka.core.converters.LibSVMSaver;
 import weka.filters.Filter;
 import weka.filters.unsupervised.instance.NonSparseToSparse;
 import weka.filters.unsupervised.instance.Normalize;
@@ -87,6 +95,11 @@ public class WekaClassifier {
 	public void setMultithreading(boolean multithreading) {
 		this.multithreading = multithreading;
 	}
+	
+	// split saved by WekaLauncher (see WekaLauncher#readCVSplit) which is used instead of recomputing it
+	public void setCVSplitFile(String cvSplitFile) {
+		this.cvSplitFile = cvSplitFile;
+	}
 
 	WekaClassifier(String classifierType, String featureFile, int multiruns, int folds, boolean nestedCV, 
 				   String modelFile, String summaryFile, String classProbabilityFile) {
@@ -129,16 +142,25 @@ public class WekaClassifier {
 	
 	private String summaryFile = null;
 	private String classProbabilityFile = null;
+	private String cvSplitFile = null;
 
 	private boolean hideLibsvmDebugOutput = true;
     boolean showProgress = true;
 	boolean showEstimatedDuration = true;
-	private PrintStream stdOut = System.out;
 	private String mainPerformanceMeasure = "ROC";
 	private String featureFileFormat = "libsvm";
 
 	private final static int innerRepetitions = 1;
 	
+	// lower bound of bit probabilities used to decode ECOC code words
+	private final static double minBitProb = 1e-6;
+	
+	// attribute which holds the row of an instance in the feature file (only used to determine CV splits)
+	private final static String rowIDAttributeName = "rowID";
+	
+	// shared by all classifiers (e.g., if several classifiers are run by the WekaLauncher)
+	private static final ForkJoinPool cvPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+	
 	private static DecimalFormat df = new DecimalFormat();
 	static {
 		java.util.Locale.setDefault(java.util.Locale.ENGLISH);
@@ -151,8 +173,6 @@ public class WekaClassifier {
 	WekaClassifierResult[] classResult = null;
 	String classifierPrintName;
 	
-	private Instances[] predefinedSplit = null;
-	
 	/**
 	 * A list of applicable machine-learning methods.
 	 */
@@ -231,8 +251,9 @@ public class WekaClassifier {
 			BasicTools.createDir4File(classProbabilityFile);
 		}
 		
-		// read data from libsvm format
-		data = readData(featureFile, folds, featureFileFormat);
+		// read data from libsvm format (ECOC uses the order of the feature file, i.e., the rows of the CV split)
+		boolean ecoc = selectedClassifier == ClassificationMethod.SVM_ecoc.name();
+		data = readData(featureFile, ecoc ? 0 : folds, featureFileFormat);
 		normalizeData(data);
 
 		// no model selection possible for Kstar and Naive Bayes
@@ -316,7 +337,11 @@ public class WekaClassifier {
 	 */
 	private static synchronized Instances readData(String featureFile, int numFolds, String format) {
 		
-		if (format.equals("arff")) {
+		// binary feature files are detected by their header
+		if (format.equals("binary") || BinaryFeatureFileReader.isBinaryFeatureFile(featureFile)) {
+			return readDataFromBinary(featureFile, numFolds);
+		
+		} else if (format.equals("arff")) {
 			return readDataFromARFF(featureFile, numFolds);
 		
 		} else if (format.equals("libsvm")) {
@@ -387,6 +412,52 @@ public class WekaClassifier {
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
+		return convertClassToNominal(trainInsts, numFolds);
+	}
+	
+	/**
+	 * read binary feature file (see {@link io.BinaryFeatureFileWriter})
+	 * instances are equal to those obtained from the corresponding LibSVM file
+	 * 
+	 * @return
+	 */
+	private static synchronized Instances readDataFromBinary(String featureFile, int numFolds) {
+		BinaryFeatureFileReader reader = null;
+		try {
+			reader = new BinaryFeatureFileReader(featureFile);
+		} catch (IOException e) {
+			e.printStackTrace();
+			System.out.println("Error. Binary feature file could not be read: " + featureFile);
+			System.exit(0);
+		}
+		
+		// attributes are named as by the LibSVMLoader (class attribute is numeric until it is converted)
+		int numFeatures = reader.getNumFeatures();
+		ArrayList<Attribute> attributes = new ArrayList<Attribute>(numFeatures + 1);
+		for (int i=1; i<=numFeatures; i++) {
+			attributes.add(new Attribute("att_" + i));
+		}
+		attributes.add(new Attribute("class"));
+		
+		Instances trainInsts = new Instances(new File(featureFile).getName(), attributes, reader.getNumRows());
+		for (int row=0; row<reader.getNumRows(); row++) {
+			int start = reader.getRowStart(row);
+			int length = reader.getRowLength(row);
+			int[] indices = new int[length + 1];
+			double[] values = new double[length + 1];
+			for (int k=0; k<length; k++) {
+				indices[k] = reader.getIndex(start + k) - 1;
+				values[k] = reader.getValue(start + k);
+			}
+			indices[length] = numFeatures;
+			values[length] = reader.getLabel(row);
+			trainInsts.add(new SparseInstance(1, values, indices, numFeatures + 1));
+		}
+		return convertClassToNominal(trainInsts, numFolds);
+	}
+	
+	// class label is converted to nominal attribute and instances are stratified
+	private static Instances convertClassToNominal(Instances trainInsts, int numFolds) {
 		trainInsts.setClassIndex(trainInsts.numAttributes() - 1);
 		
 		// convert class label only
@@ -403,44 +474,15 @@ public class WekaClassifier {
 			e.printStackTrace();
 		}
 		if (numFolds != 0) {
-			Insts_filtered.randomize(new Random(1));
-			Insts_filtered.stratify(numFolds);
+			stratifyData(Insts_filtered, numFolds);
 		}
 		return Insts_filtered;
 	}
-
-	private static synchronized void writeDataToLibsvm(Instances instances, String featureFile) {
-		LibSVMSaver lss = new LibSVMSaver();
-		lss.setInstances(instances);
-		try {
-			lss.setFile(new File(featureFile));
-			lss.writeBatch();
-			
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
-	}
 	
-	private static synchronized String[] convertInstances2featureVectors(Instances instances) {
-
-		String[] libsvmFeatureVectors = null;
-		
-		try {
-			LibSVMSaver saver = new LibSVMSaver();
-			saver.setInstances(instances);
-			
-			// convert instances to LibSVM format and write them to OutputStream
-			ByteArrayOutputStream outStream = new ByteArrayOutputStream();
-			saver.setDestination(outStream);
-			saver.writeBatch();
-			
-			List<String> libsvmFeatures = BasicTools.readStream2List(new ByteArrayInputStream(outStream.toByteArray()), false);
-			libsvmFeatureVectors = libsvmFeatures.toArray(new String[]{});
-			
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
-		return libsvmFeatureVectors;
+	// initial order of the instances (splits for all runs of the cross-validation are derived from this order)
+	private static void stratifyData(Instances data, int numFolds) {
+		data.randomize(new Random(1));
+		data.stratify(numFolds);
 	}
 	
 	/**
@@ -474,6 +516,7 @@ public class WekaClassifier {
 		final Option optSummaryFile = (OptionBuilder.isRequired(false).withDescription("Results file").hasArg(true).create("s"));
 		final Option optClassProbFile = (OptionBuilder.isRequired(false).withDescription("Class probability file").hasArg(true).create("p"));
 		final Option optMultithreading = (OptionBuilder.isRequired(false).withDescription("Enable multithreading").hasArg(true).create("t"));
+		final Option optCVSplitFile = (OptionBuilder.isRequired(false).withDescription("Cross-validation split file").hasArg(true).create("x"));
 		options.addOption(optSDF);
 		options.addOption(optFile);
 		options.addOption(optFolds);
@@ -483,6 +526,7 @@ public class WekaClassifier {
 		options.addOption(optSummaryFile);
 		options.addOption(optClassProbFile);
 		options.addOption(optMultithreading);
+		options.addOption(optCVSplitFile);
 		return options;
 	}
 
@@ -570,6 +614,13 @@ public class WekaClassifier {
 					System.exit(1);
 				}
 			}
+			if (lvCmd.hasOption("x")) {
+				try {
+					cvSplitFile = new String(lvCmd.getOptionValue("x"));
+				} catch (Exception e) {
+					System.exit(1);
+				}
+			}
 		} catch (final Exception e) {
 			e.printStackTrace();
 			System.err.println("Please check your input.");
@@ -774,65 +825,21 @@ public class WekaClassifier {
 		randomForest.setNumFeatures(maxFeatures);
 		randomForest.setSeed(1);
 
-		final long systemMillisBegin = System.currentTimeMillis();
-		WekaClassifierResult[] classResults = new WekaClassifierResult[folds * repetitions];
-		int run = 0;
-
 		if (! silent) System.out.println("Nested CV for Random forests ...");
 
-		for (int rep = 0; rep < repetitions; rep++) {
-
-			// generate new splits for cross-validation
-			Instances[] splits = getSplits(data, folds, rep);
-
-			for (int splitIndex = 0; splitIndex < splits.length; splitIndex++) {
-				Instances instancesTraining = new Instances(data, 1);
-				for (int trainingSplitIndex = 0; trainingSplitIndex < splits.length; trainingSplitIndex++) {
-					if (trainingSplitIndex != splitIndex) {
-						instancesTraining = addInstances(instancesTraining, splits[trainingSplitIndex]);
-					}
-				}
-				
-				if (performNestedCV) {
-					if (! silent) System.out.println("Model selection ...");
-					//cross-validate on n-1 folds
-					int bestN = 4;
-					double bestAUC = 0.0;
-					for (int numFeat = bestN; numFeat <= maxFeatures * 2; numFeat
-							= numFeat * 2) {
-						randomForest.setNumFeatures(numFeat);
-						Evaluation[] evaluation =
-								performCrossvalidation(randomForest, instancesTraining,
-										folds, innerRepetitions);
-						double auc = getMeanQuality(evaluation, instancesTraining);
-						if (auc > bestAUC) {
-							if (!silent) System.out.println("score=" + df.format(auc) + ", @numFeatures=" + numFeat);
-							bestAUC = auc;
-							bestN = numFeat;
-						}
-					}
-					//predict external data
-					randomForest.setNumFeatures(bestN);
-				}
-				
-				buildClassifier(randomForest, instancesTraining);
-				classResults[run] = predictAndEvaluate(randomForest, splits[splitIndex]);
-				
-				if (!silent) System.out.println("\nExternal prediction at fold = " + splitIndex);
-				try {
-					if (!silent) System.out.println(classResults[run].evaluation.toClassDetailsString());
-				} catch (Exception e) {
-					if (!silent) System.out.println("could not create summary");
-				}
-				
-				run = showEstimatedDuration(systemMillisBegin, run);
-			}
-			if (writeModelFile) {
-				buildClassifier(randomForest, data);
-				writeModelFile(randomForest);
-			}
+		List<ParameterSetting> grid = new ArrayList<ParameterSetting>();
+		for (int numFeat = 4; numFeat <= maxFeatures * 2; numFeat = numFeat * 2) {
+			grid.add(getRandomForestSetting(numFeat));
 		}
-		return classResults;
+		return runNestedCV(randomForest, grid, getRandomForestSetting(4), false, false);
+	}
+	
+	private static ParameterSetting getRandomForestSetting(final int numFeat) {
+		return new ParameterSetting(", @numFeatures=" + numFeat) {
+			void apply(Classifier classifier) {
+				((RandomForest) classifier).setNumFeatures(numFeat);
+			}
+		};
 	}
 
 	/**
@@ -842,71 +849,25 @@ public class WekaClassifier {
 	 */
 	private WekaClassifierResult[] runNestedCVJ48() {
 		final J48 decisionTree = new J48();
-		final long systemMillisBegin = System.currentTimeMillis();
-		WekaClassifierResult[] classResults = new WekaClassifierResult[folds * repetitions];
-
-		int run = 0;
 
 		if (!silent) System.out.println("Nested CV for J48 tree ...");
 
-		for (int rep = 0; rep < repetitions; rep++) {
-
-			// generate new splits for cross-validation
-			Instances[] splits = getSplits(data, folds, rep);
-
-			for (int splitIndex = 0; splitIndex < splits.length; splitIndex++) {
-				Instances instancesTraining = new Instances(data, 1);
-				for (int trainingSplitIndex = 0; trainingSplitIndex < splits.length; trainingSplitIndex++) {
-					if (trainingSplitIndex != splitIndex) {
-						instancesTraining = addInstances(instancesTraining, splits[trainingSplitIndex]);
-					}
-				}
-				
-				if (performNestedCV) {
-					if (!silent) System.out.println("Model selection ...");
-					// cross-validate on n-1 folds
-					double bestPruningConfidence = 0.05;
-					int bestNumFeatures = 2;
-					double bestAUC = 0.0;
-					for (double pruningC = 0.05; pruningC <= 0.5; pruningC = pruningC * 2) {
-						for (int numFeat = 2; numFeat <= 10; numFeat = numFeat * 2) {
-							decisionTree.setConfidenceFactor((float) pruningC);
-							decisionTree.setMinNumObj(numFeat);
-							Evaluation[] evaluation = performCrossvalidation(decisionTree, instancesTraining, folds, innerRepetitions);
-							double auc = getMeanQuality(evaluation, instancesTraining);
-							if (auc > bestAUC) {
-								if (!silent) System.out.println("score=" + df.format(auc) + " @pruningC=" + pruningC + ", @numObj=" + numFeat);
-								bestPruningConfidence = pruningC;
-								bestAUC = auc;
-								bestNumFeatures = numFeat;
-							}
-						}
-					}
-	
-					// predict external data
-					decisionTree.setConfidenceFactor((float) bestPruningConfidence);
-					decisionTree.setMinNumObj(bestNumFeatures);
-				}
-				
-				buildClassifier(decisionTree, instancesTraining);
-
-				classResults[run] = predictAndEvaluate(decisionTree, splits[splitIndex]);
-				if (!silent) System.out.println("\nExternal prediction at fold = " + splitIndex);
-				// System.out.println(externalEvals[run].toSummaryString());
-				try {
-					if (!silent) System.out.println(classResults[run].evaluation.toClassDetailsString());
-				} catch (Exception e) {
-					if (!silent) System.out.println("could not create summary");
-				}
-
-				run = showEstimatedDuration(systemMillisBegin, run);
+		List<ParameterSetting> grid = new ArrayList<ParameterSetting>();
+		for (double pruningC = 0.05; pruningC <= 0.5; pruningC = pruningC * 2) {
+			for (int numFeat = 2; numFeat <= 10; numFeat = numFeat * 2) {
+				grid.add(getJ48Setting(pruningC, numFeat));
 			}
 		}
-		if (writeModelFile) {
-			buildClassifier(decisionTree, data);
-			writeModelFile(decisionTree);
-		}
-		return classResults;
+		return runNestedCV(decisionTree, grid, getJ48Setting(0.05, 2), false, false);
+	}
+	
+	private static ParameterSetting getJ48Setting(final double pruningC, final int numObj) {
+		return new ParameterSetting(" @pruningC=" + pruningC + ", @numObj=" + numObj) {
+			void apply(Classifier classifier) {
+				((J48) classifier).setConfidenceFactor((float) pruningC);
+				((J48) classifier).setMinNumObj(numObj);
+			}
+		};
 	}
 
 	/**
@@ -919,95 +880,25 @@ public class WekaClassifier {
 		
 		// enable conversion of decision values to probability estimates
 		libsvm.setProbabilityEstimates(true);
-		
-		final long systemMillisBegin = System.currentTimeMillis();
-		WekaClassifierResult[] classResults = new WekaClassifierResult[folds * repetitions];
-
-		int run = 0;
 
 		if (!silent) System.out.println("Nested CV for LIBSVM ...");
 
-		for (int rep = 0; rep < repetitions; rep++) {
-
-			// generate new splits for cross-validation
-			Instances[] splits = getSplits(data, folds, rep);
-
-			for (int splitIndex = 0; splitIndex < splits.length; splitIndex++) {
-				Instances instancesTraining = new Instances(data, 1);
-				for (int trainingSplitIndex = 0; trainingSplitIndex < splits.length; trainingSplitIndex++) {
-					if (trainingSplitIndex != splitIndex) {
-						instancesTraining = addInstances(instancesTraining, splits[trainingSplitIndex]);
-					}
-				}
-				
-				if (performNestedCV) {
-					
-					if (!silent) System.out.println("Model selection ...");
-					// cross-validate on n-1 folds
-					double bestGamma = 0.005;
-					double bestC = 1;
-					double bestAUC = 0.0;
-					for (double gamma = 0.005; gamma <= 0.1; gamma = gamma * 2) {
-						for (double C = Math.pow(2, -5); C <= Math.pow(2, 4); C = C * 2) {
-	
-							libsvm.setGamma(gamma);
-							libsvm.setCost(C);
-							
-							if (hideLibsvmDebugOutput) {
-								String debugOutputFile = WekaLauncher.redirectSystemOut2TempFile();
-								if (!silent) System.out.println("Redirecting LibSVM debug output to temporary file: " + debugOutputFile);
-							}
-							Evaluation[] evaluation = performCrossvalidation(libsvm, instancesTraining, folds, innerRepetitions);
-							if (hideLibsvmDebugOutput) {
-								System.setOut(stdOut);
-							}
-							double auc = getMeanQuality(evaluation, instancesTraining);
-							if (auc > bestAUC) {
-								if (!silent) System.out.println("score=" + df.format(auc) + " @C=" + C + ", @gamma=" + gamma);
-								bestC = C;
-								bestGamma = gamma;
-								bestAUC = auc;
-							}
-						}
-					}
-	
-					// predict external data
-					libsvm.setGamma(bestGamma);
-					libsvm.setCost(bestC);
-				}
-				
-				if (hideLibsvmDebugOutput) {
-					String debugOutputFile = WekaLauncher.redirectSystemOut2TempFile();
-					if (!silent) System.out.println("Redirecting LibSVM debug output to temporary file: " + debugOutputFile);
-				}
-				buildClassifier(libsvm, instancesTraining);
-				if (hideLibsvmDebugOutput) {
-					System.setOut(stdOut);
-				}
-				
-				classResults[run] = predictAndEvaluate(libsvm, splits[splitIndex]);
-				if (!silent) System.out.println("\nExternal prediction at fold = " + splitIndex);
-				try {
-					if (!silent) System.out.println(classResults[run].evaluation.toClassDetailsString());
-				} catch (Exception e) {
-					if (!silent) System.out.println("could not create summary");
-				}
-				
-				run = showEstimatedDuration(systemMillisBegin, run);
+		List<ParameterSetting> grid = new ArrayList<ParameterSetting>();
+		for (double gamma = 0.005; gamma <= 0.1; gamma = gamma * 2) {
+			for (double C = Math.pow(2, -5); C <= Math.pow(2, 4); C = C * 2) {
+				grid.add(getLibSVMSetting(gamma, C));
 			}
 		}
-		if (writeModelFile) {
-			if (hideLibsvmDebugOutput) {
-				String debugOutputFile = WekaLauncher.redirectSystemOut2TempFile();
-				if (!silent) System.out.println("Redirecting LibSVM debug output to temporary file: " + debugOutputFile);
-			}
-			buildClassifier(libsvm, data);
-			if (hideLibsvmDebugOutput) {
-				System.setOut(stdOut);
+		return runNestedCV(libsvm, grid, getLibSVMSetting(0.005, 1), false, false);
+	}
+	
+	private static ParameterSetting getLibSVMSetting(final double gamma, final double C) {
+		return new ParameterSetting(" @C=" + C + ", @gamma=" + gamma) {
+			void apply(Classifier classifier) {
+				((LibSVM) classifier).setGamma(gamma);
+				((LibSVM) classifier).setCost(C);
 			}
-			writeModelFile(libsvm);
-		}
-		return classResults;
+		};
 	}
 
 	/**
@@ -1016,88 +907,405 @@ public class WekaClassifier {
 	 * @param data
 	 */
 	private WekaClassifierResult[] runNestedCVLIBLINEAR() {
-		final LibLINEAR libsvm = new LibLINEAR();
+
+		if (!silent) System.out.println("Nested CV for LIBLINEAR ...");
+
+		return runNestedCV(getLibLINEARClassifier(), getLibLINEARGrid(), getLibLINEARSetting(1, 1.0), true, false);
+	}
+	
+	private static LibLINEARWekaAdapter getLibLINEARClassifier() {
+		final LibLINEARWekaAdapter libsvm = new LibLINEARWekaAdapter();
 		
 		// enable conversion of decision values to probability estimates (requires L2-regularized logistic regression SVM)
 		libsvm.setProbabilityEstimates(true);
-		libsvm.setSVMType(new SelectedTag(LibLINEAR.SVMTYPE_L2_LR, LibLINEAR.TAGS_SVMTYPE));
+		libsvm.setSVMType(new SelectedTag(LibLINEARWekaAdapter.SVMTYPE_L2_LR, LibLINEARWekaAdapter.TAGS_SVMTYPE));
+		return libsvm;
+	}
+	
+	private static List<ParameterSetting> getLibLINEARGrid() {
+		List<ParameterSetting> grid = new ArrayList<ParameterSetting>();
+		for (double C = Math.pow(2, -5); C <= 2; C = C * 2) {
+			for (double weight = 1.0; weight <= 8.0; weight = weight * 2) {
+				grid.add(getLibLINEARSetting(C, weight));
+			}
+		}
+		return grid;
+	}
+	
+	private static ParameterSetting getLibLINEARSetting(final double C, final double weight) {
+		return new LibLINEARSetting(C, weight);
+	}
+	
+	
+	/**
+	 * Runs the nested cross-validation of the given classifier in parallel. Each pair of
+	 * repetition and outer fold is processed by a task which evaluates the parameter settings
+	 * in separate subtasks (work-stealing, see {@link OuterFoldTask}). All tasks use their own
+	 * copies of the classifier and the training data, and the products computed by
+	 * {@link SparseOperator} use a fixed number of blocks, hence results do not depend on
+	 * the number of threads or the order in which tasks are executed.
+	 * 
+	 * @param classifier        classifier with all fixed parameters (not modified)
+	 * @param grid              parameter settings evaluated during model selection
+	 * @param defaultSetting    used if no setting reaches a score above zero
+	 * @param sortTrainingData  training data are sorted by class before the classifier is built
+	 * @param regression        settings are scored by {@link #getMSEforRegression} instead of {@link #getMeanQuality}
+	 * @return
+	 */
+	private WekaClassifierResult[] runNestedCV(Classifier classifier, List<ParameterSetting> grid, ParameterSetting defaultSetting, 
+											   boolean sortTrainingData, boolean regression) {
 		
 		final long systemMillisBegin = System.currentTimeMillis();
-		WekaClassifierResult[] classResults = new WekaClassifierResult[folds * repetitions];
-
-		int run = 0;
-
-		if (!silent) System.out.println("Nested CV for LIBLINEAR ...");
-
+		
+		// generate splits for all repetitions before data are shared by the tasks
+		List<Instances[]> splitsPerRep = new ArrayList<Instances[]>();
 		for (int rep = 0; rep < repetitions; rep++) {
-
-			// generate new splits for cross-validation
-			Instances[] splits = predefinedSplit;
-			if (splits == null) {
-				splits = getSplits(data, folds, rep);
+			splitsPerRep.add(getSplits(data, folds, rep));
+		}
+		List<OuterFoldTask> queue = submitNestedCV(classifier, splitsPerRep, grid, defaultSetting, sortTrainingData, regression);
+		WekaClassifierResult[] classResults = getNestedCVResults(queue, systemMillisBegin);
+		
+		// final model uses the parameters selected in the last fold
+		if (writeModelFile) {
+			Classifier model = copyClassifier(classifier);
+			ParameterSetting selectedSetting = queue.get(queue.size()-1).selectedSetting;
+			if (selectedSetting != null) {
+				selectedSetting.apply(model);
 			}
-
+			buildClassifier(model, data);
+			writeModelFile(model);
+		}
+		return classResults;
+	}
+	
+	
+	/**
+	 * Submits one task per repetition and outer fold to the shared pool.
+	 * 
+	 * @param splitsPerRep  splits of the data for each repetition
+	 * @return tasks in the order of the repetitions and folds
+	 */
+	private List<OuterFoldTask> submitNestedCV(Classifier classifier, List<Instances[]> splitsPerRep, List<ParameterSetting> grid, 
+											   ParameterSetting defaultSetting, boolean sortTrainingData, boolean regression) {
+		
+		List<Instances[]> splitsPerFold = new ArrayList<Instances[]>();
+		for (Instances[] splits: splitsPerRep) {
 			for (int splitIndex = 0; splitIndex < splits.length; splitIndex++) {
-				Instances instancesTraining = new Instances(data, 1);
-				for (int trainingSplitIndex = 0; trainingSplitIndex < splits.length; trainingSplitIndex++) {
-					if (trainingSplitIndex != splitIndex) {
-						instancesTraining = addInstances(instancesTraining, splits[trainingSplitIndex]);
+				splitsPerFold.add(splits);
+			}
+		}
+		return submitOuterFolds(classifier, splitsPerFold, grid, defaultSetting, sortTrainingData, regression);
+	}
+	
+	/**
+	 * Submits one task per outer fold to the shared pool.
+	 * 
+	 * @param splitsPerFold  splits of the data for each outer fold in the order of the repetitions and folds
+	 *                       (i-th outer fold predicts split i % folds)
+	 * @return tasks in the order of the repetitions and folds
+	 */
+	private List<OuterFoldTask> submitOuterFolds(Classifier classifier, List<Instances[]> splitsPerFold, List<ParameterSetting> grid, 
+												 ParameterSetting defaultSetting, boolean sortTrainingData, boolean regression) {
+		
+		boolean modelSelection = performNestedCV && grid != null && !grid.isEmpty();
+		
+		List<OuterFoldTask> queue = new ArrayList<OuterFoldTask>();
+		for (int i = 0; i < splitsPerFold.size(); i++) {
+			Instances[] splits = splitsPerFold.get(i);
+			OuterFoldTask task = new OuterFoldTask(classifier, splits, i % splits.length, modelSelection ? grid : null, 
+												   modelSelection ? defaultSetting : null, sortTrainingData, regression);
+			queue.add(task);
+			cvPool.execute(task);
+		}
+		return queue;
+	}
+	
+	
+	// waits for the tasks and retrieves the results in the order of the folds
+	private WekaClassifierResult[] getNestedCVResults(List<OuterFoldTask> queue, long systemMillisBegin) {
+		
+		WekaClassifierResult[] classResults = new WekaClassifierResult[queue.size()];
+		int run = 0;
+		for (OuterFoldTask task: queue) {
+			try {
+				classResults[run] = task.get();
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+			} catch (ExecutionException e) {
+				e.printStackTrace();
+			}
+			
+			if (!silent) {
+				if (task.grid != null) {
+					System.out.println("Model selection ...");
+					for (int i=0; i<task.improvedSettings.size(); i++) {
+						System.out.println("score=" + df.format(task.improvedScores.get(i)) + task.improvedSettings.get(i));
 					}
 				}
+				System.out.println("\nExternal prediction at fold = " + task.splitIndex);
+				try {
+					System.out.println(classResults[run].evaluation.toClassDetailsString());
+				} catch (Exception e) {
+					System.out.println("could not create summary");
+				}
+			}
+			run = showEstimatedDuration(systemMillisBegin, run);
+		}
+		return classResults;
+	}
+	
+	
+	// output of the tasks is written to the sink of the thread which submitted the tasks
+	private static ThreadLogSink getOutSink() {
+		return ThreadLogSink.getSystemOutSink();
+	}
+	
+	
+	private static Classifier copyClassifier(Classifier classifier) {
+		
+		Classifier copy = null;
+		try {
+			copy = AbstractClassifier.makeCopy(classifier);
+		} catch (Exception e) {
+			e.printStackTrace();
+			System.out.println("Error. Classifier could not be copied.");
+			System.exit(1);
+		}
+		return copy;
+	}
+	
+	
+	/**
+	 * Parameter setting of a classifier which is evaluated during model selection.
+	 */
+	static abstract class ParameterSetting {
+		
+		// e.g., " @C=1.0, @gamma=0.005"
+		private String description;
+		
+		ParameterSetting(String description) {
+			this.description = description;
+		}
+		
+		abstract void apply(Classifier classifier);
+		
+		@Override
+		public String toString() {
+			return description;
+		}
+	}
+	
+	
+	/**
+	 * Parameter setting of LIBLINEAR. Settings with equal weights are evaluated together
+	 * along the regularization path of C (see {@link PathSelectionTask}).
+	 */
+	static class LibLINEARSetting extends ParameterSetting {
+		
+		double C;
+		double weight;
+		
+		LibLINEARSetting(double C, double weight) {
+			super(" @C=" + C + " @weight=" + weight);
+			this.C = C;
+			this.weight = weight;
+		}
+		
+		void apply(Classifier classifier) {
+			((LibLINEARWekaAdapter) classifier).setCost(C);
+			((LibLINEARWekaAdapter) classifier).setWeights((1.0 / weight) + " " + 1.0);
+		}
+	}
+	
+	
+	// task: model selection, training and prediction for a single outer fold
+	class OuterFoldTask extends RecursiveTask<WekaClassifierResult> {
+		
+		private static final long serialVersionUID = 1L;
+		
+		Classifier classifier;
+		Instances[] splits;
+		int splitIndex;
+		List<ParameterSetting> grid;
+		boolean sortTrainingData;
+		boolean regression;
+		OutputStream logSink = getOutSink().getSink();
+		
+		// selected setting and all settings which improved the score (in the order of the grid)
+		ParameterSetting selectedSetting;
+		List<ParameterSetting> improvedSettings = new ArrayList<ParameterSetting>();
+		List<Double> improvedScores = new ArrayList<Double>();
+		
+		OuterFoldTask(Classifier classifier, Instances[] splits, int splitIndex, List<ParameterSetting> grid, 
+					  ParameterSetting defaultSetting, boolean sortTrainingData, boolean regression) {
+			this.classifier = classifier;
+			this.splits = splits;
+			this.splitIndex = splitIndex;
+			this.grid = grid;
+			this.selectedSetting = defaultSetting;
+			this.sortTrainingData = sortTrainingData;
+			this.regression = regression;
+		}
+
+		@Override
+		protected WekaClassifierResult compute() {
+			
+			OutputStream previousSink = getOutSink().setSink(logSink);
+			try {
+				return predictOuterFold();
+			} finally {
+				getOutSink().setSink(previousSink);
+			}
+		}
+		
+		private WekaClassifierResult predictOuterFold() {
+			
+			InstancesView instancesTraining = getTrainingSet(splits, splitIndex);
+			
+			// cross-validate each setting on n-1 folds
+			if (grid != null) {
+				List<SelectionTask> selectionTasks = getSelectionTasks(instancesTraining);
+				invokeAll(selectionTasks);
 				
-				if (performNestedCV) {
-					if (!silent) System.out.println("Model selection ...");
-					// cross-validate on n-1 folds
-					double bestC = 1;
-					double bestAUC = 0.0;
-					double bestWeight = 1.0;
-	
-					for (double C = Math.pow(2, -5); C <= 2; C = C * 2) {
-						for (double weight = 1.0; weight <= 8.0; weight = weight * 2) {
-							libsvm.setCost(C);
-							libsvm.setWeights((1.0 / weight) + " " + 1.0);
-							
-							Evaluation[] evaluation = performCrossvalidation(libsvm, instancesTraining, folds, innerRepetitions);
-							
-							double auc = getMeanQuality(evaluation, instancesTraining);
-							if (auc > bestAUC) {
-								if (!silent) System.out.println("score=" + df.format(auc) + " @C=" + C + " @weight=" + weight);
-								bestAUC = auc;
-								bestWeight = weight;
-								bestC = C;
-							}
-						}
+				Map<ParameterSetting, Double> scores = new HashMap<ParameterSetting, Double>();
+				for (SelectionTask selectionTask: selectionTasks) {
+					double[] taskScores = selectionTask.join();
+					for (int i = 0; i < taskScores.length; i++) {
+						scores.put(selectionTask.settings.get(i), taskScores[i]);
 					}
-
-					// predict external data
-					libsvm.setCost(bestC);
-					libsvm.setWeights((1.0 / bestWeight) + " " + 1.0);
 				}
 				
-				instancesTraining.sort(instancesTraining.get(0).numAttributes() - 1);
-				buildClassifier(libsvm, instancesTraining);
-				
-				classResults[run]  = predictAndEvaluate(libsvm, splits[splitIndex]);
-				if (!silent) System.out.println("\nExternal prediction at fold = " + splitIndex);
-				// System.out.println(externalEvals[run].toSummaryString());
-				try {
-					if (!silent) System.out.println(classResults[run].evaluation.toClassDetailsString());
-				} catch (Exception e) {
-					if (!silent) System.out.println("could not create summary");
+				double bestScore = 0.0;
+				for (ParameterSetting setting: grid) {
+					double score = scores.get(setting);
+					if (score > bestScore) {
+						bestScore = score;
+						selectedSetting = setting;
+						improvedSettings.add(setting);
+						improvedScores.add(score);
+					}
 				}
+			}
+			
+			// predict external data
+			Classifier model = copyClassifier(classifier);
+			if (selectedSetting != null) {
+				selectedSetting.apply(model);
+			}
+			if (sortTrainingData) {
+				instancesTraining.sort(instancesTraining.numAttributes() - 1);
+			}
+			buildClassifier(model, instancesTraining);
+			return predictAndEvaluate(model, splits[splitIndex]);
+		}
+		
+		// one task per setting, LIBLINEAR settings with equal weights share a task (in the order of C in the grid)
+		private List<SelectionTask> getSelectionTasks(Instances instancesTraining) {
+			
+			List<SelectionTask> selectionTasks = new ArrayList<SelectionTask>();
+			Map<Double, List<ParameterSetting>> settingsPerWeight = new LinkedHashMap<Double, List<ParameterSetting>>();
+			for (ParameterSetting setting: grid) {
+				if (classifier instanceof LibLINEARWekaAdapter && setting instanceof LibLINEARSetting) {
+					double weight = ((LibLINEARSetting) setting).weight;
+					if (!settingsPerWeight.containsKey(weight)) {
+						settingsPerWeight.put(weight, new ArrayList<ParameterSetting>());
+					}
+					settingsPerWeight.get(weight).add(setting);
+				} else {
+					selectionTasks.add(new SelectionTask(classifier, Collections.singletonList(setting), instancesTraining, regression));
+				}
+			}
+			for (List<ParameterSetting> settings: settingsPerWeight.values()) {
+				selectionTasks.add(new PathSelectionTask(classifier, settings, instancesTraining, regression));
+			}
+			return selectionTasks;
+		}
+	}
+	
+	
+	// task: inner cross-validation of a single parameter setting (returns the scores of the settings)
+	class SelectionTask extends RecursiveTask<double[]> {
+		
+		private static final long serialVersionUID = 1L;
+		
+		Classifier classifier;
+		List<ParameterSetting> settings;
+		Instances instancesTraining;
+		boolean regression;
+		OutputStream logSink = getOutSink().getSink();
+		
+		SelectionTask(Classifier classifier, List<ParameterSetting> settings, Instances instancesTraining, boolean regression) {
+			this.classifier = classifier;
+			this.settings = settings;
+			this.instancesTraining = instancesTraining;
+			this.regression = regression;
+		}
 
-				run = showEstimatedDuration(systemMillisBegin, run);
+		@Override
+		protected double[] compute() {
+			
+			OutputStream previousSink = getOutSink().setSink(logSink);
+			try {
+				// inner splits randomize the order of the instances (only affects the view)
+				Instances data = new InstancesView(instancesTraining);
+				Evaluation[][] evaluations = crossValidate(data);
+				
+				double[] scores = new double[settings.size()];
+				for (int i = 0; i < scores.length; i++) {
+					if (regression) {
+						scores[i] = getMSEforRegression(evaluations[i], data);
+					} else {
+						scores[i] = getMeanQuality(evaluations[i], data);
+					}
+				}
+				return scores;
+				
+			} finally {
+				getOutSink().setSink(previousSink);
 			}
 		}
-		if (writeModelFile) {
-			buildClassifier(libsvm, data);
-			writeModelFile(libsvm);
+		
+		// evaluations of each setting in each inner fold
+		Evaluation[][] crossValidate(Instances data) {
+			
+			Classifier model = copyClassifier(classifier);
+			settings.get(0).apply(model);
+			return new Evaluation[][] {performCrossvalidation(model, data, folds, innerRepetitions)};
+		}
+	}
+	
+	
+	// task: inner cross-validation of LIBLINEAR settings which only differ in C (warm-started along the regularization path)
+	class PathSelectionTask extends SelectionTask {
+		
+		private static final long serialVersionUID = 1L;
+		
+		PathSelectionTask(Classifier classifier, List<ParameterSetting> settings, Instances instancesTraining, boolean regression) {
+			super(classifier, settings, instancesTraining, regression);
+		}
+		
+		@Override
+		Evaluation[][] crossValidate(Instances data) {
+			
+			LibLINEARWekaAdapter model = (LibLINEARWekaAdapter) copyClassifier(classifier);
+			settings.get(0).apply(model);
+			
+			double[] costs = new double[settings.size()];
+			for (int i = 0; i < costs.length; i++) {
+				costs[i] = ((LibLINEARSetting) settings.get(i)).C;
+			}
+			return performPathCrossvalidation(model, costs, data, folds, innerRepetitions);
 		}
-		return classResults;
 	}
 	
 	
 	/**
+	 * Error-correcting output codes: one binary LIBLINEAR classifier is trained per bit of 
+	 * the code words. The binary problems are relabeled copies of the data in memory (folds
+	 * are views of the copies) and are trained in parallel. Class probabilities are obtained from the likelihood of each code 
+	 * word given the predicted probabilities of the bits. If fold feature files were written for
+	 * the saved CV split, each outer fold uses the features derived from its training sequences
+	 * (see {@link #getFoldData}).
 	 * 
 	 * @return
 	 */
@@ -1119,91 +1327,186 @@ public class WekaClassifier {
 			System.exit(0);
 		}
 		
-		// prepare and run binary SVM classifiers
+		final long systemMillisBegin = System.currentTimeMillis();
 		int numSVMs = codeWords[0].length();
 		int numFoldsAndRep = folds * repetitions;
 		writeModelFile = false;
 		
-		// get CV split (only works for 1 multirun)
-		int[][] cvSplit = WekaLauncher.getCVSplit(featureFile, folds, repetitions)[0];		
-		Instances[][] splits = new Instances[numSVMs][folds];
+		// instances are in the order of the feature file (i.e., rows of the CV split)
+		int[][][] cvSplit = getCVSplit(data);
+		Instances[][] foldData = getFoldData(cvSplit);
 		
+		// submit nested CV of all binary SVMs
+		List<List<OuterFoldTask>> queuePerSVM = new ArrayList<List<OuterFoldTask>>();
 		for (int i=0; i<numSVMs; i++) {
-			
-			// adjust labels for current SVM
-			data = readDataFromLibsvm(featureFile, 0);
-			normalizeData(data);
-			for (int j=0; j<data.numInstances(); j++) {
-				
-				int newLabel = Integer.parseInt(codeWords[(int) data.instance(j).classValue()].substring(i,i+1));
-				data.instance(j).setClassValue(newLabel);
+			List<Instances[]> splitsPerFold = getDichotomySplits(data, foldData, cvSplit, codeWords, i);
+			queuePerSVM.add(submitOuterFolds(getLibLINEARClassifier(), splitsPerFold, getLibLINEARGrid(), getLibLINEARSetting(1, 1.0), true, false));
+		}
+		WekaClassifierResult[][] allClassResults = new WekaClassifierResult[numSVMs][];
+		for (int i=0; i<numSVMs; i++) {
+			allClassResults[i] = getNestedCVResults(queuePerSVM.get(i), systemMillisBegin);
+		}
+		
+		// decode predicted bit probabilities and evaluate the multi-class predictions
+		WekaClassifierResult[] classResults = new WekaClassifierResult[numFoldsAndRep];
+		for (int i=0; i<numFoldsAndRep; i++) {
+			int[] rows = cvSplit[i / folds][i % folds];
+			double[][] classProbs = new double[rows.length][];
+			int[] classLabels = new int[rows.length];
+			Evaluation eval = null;
+			try {
+				eval = new Evaluation(data);
+				for (int j=0; j<rows.length; j++) {
+					double[] bitProbs = new double[numSVMs];
+					for (int k=0; k<numSVMs; k++) {
+						bitProbs[k] = allClassResults[k][i].classProbabilities[j][1];
+					}
+					classProbs[j] = getClassProbsFromBitProbs(bitProbs, codeWords);
+					classLabels[j] = (int) data.instance(rows[j]).classValue();
+					eval.evaluateModelOnceAndRecordPrediction(classProbs[j], data.instance(rows[j]));
+				}
+			} catch (Exception e) {
+				e.printStackTrace();
 			}
-			
-			// HACK: write/read feature file for each SVM to file to fix problem with number of classes
-			writeDataToLibsvm(data, featureFile + ".svm" + (i+1));
-			data = readDataFromLibsvm(featureFile + ".svm" + (i+1), 0);
-			
-			for (int j=0; j<folds; j++) {
-				splits[i][j] = new Instances(data);
-				splits[i][j].clear();
-				for (int k=0; k<cvSplit[j].length; k++) {
-					splits[i][j].add(k, data.get(cvSplit[j][k]));
+			classResults[i] = new WekaClassifierResult(eval, classProbs, classLabels);
+		}
+		return classResults;
+	}
+	
+	/**
+	 * Features of each fold of the CV split which are derived from the training sequences of the
+	 * fold only (see {@link WekaLauncher#getFoldFeatureFile}). The files are used if they were 
+	 * written for the rows of the feature file and the test rows of the split.
+	 * 
+	 * @param cvSplit  rows of the instances for each run and fold
+	 * @return instances of each run and fold in the order of the rows (null if not available)
+	 */
+	private Instances[][] getFoldData(int[][][] cvSplit) {
+		
+		Instances[][] foldData = new Instances[cvSplit.length][folds];
+		for (int run=0; run<cvSplit.length; run++) {
+			for (int fold=0; fold<folds; fold++) {
+				String foldFeatureFile = WekaLauncher.getFoldFeatureFile(featureFile, run, fold);
+				if (foldFeatureFile.equals(featureFile) || !new File(foldFeatureFile).exists()) {
+					return null;
 				}
+				if (!isFoldOfSplit(foldFeatureFile, cvSplit[run][fold])) {
+					System.out.println("Warning. Fold feature file does not match the cross-validation split and is ignored: " + foldFeatureFile);
+					return null;
+				}
+				foldData[run][fold] = readData(foldFeatureFile, 0, "libsvm");
+				normalizeData(foldData[run][fold]);
 			}
-
 		}
+		if (!silent) System.out.println("Using fold feature files of " + featureFile);
+		return foldData;
+	}
+	
+	// names file of the fold marks the test rows (see features.BLASTfeatureGenerator#writeFoldExcludedFeatureFiles)
+	private boolean isFoldOfSplit(String foldFeatureFile, int[] testRows) {
 		
-		WekaClassifierResult[][] allClassResults = new WekaClassifierResult[numSVMs][numFoldsAndRep];
-		for (int i=0; i<numSVMs; i++) {
-			data = readDataFromLibsvm(featureFile + ".svm" + (i+1), 0);
-			predefinedSplit = splits[i];
-			allClassResults[i] = runNestedCVLIBLINEAR();
+		String namesFile = foldFeatureFile.replace(".txt", "_names.txt");
+		if (!new File(namesFile).exists()) {
+			return false;
+		}
+		List<String> rowNames = BasicTools.readFile2List(namesFile, false);
+		if (rowNames.size() != data.numInstances()) {
+			return false;
+		}
+		boolean[] isTestRow = new boolean[rowNames.size()];
+		for (int row: testRows) {
+			isTestRow[row] = true;
+		}
+		for (int row=0; row<rowNames.size(); row++) {
+			if (rowNames.get(row).startsWith("test\t") != isTestRow[row]) {
+				return false;
+			}
 		}
+		return true;
+	}
+	
+	/**
+	 * Splits of the binary problem for the given bit of the code words (label of each instance 
+	 * is the bit of the code word of its class).
+	 * 
+	 * @param foldData  instances of each run and fold (see {@link #getFoldData}), all folds use the data if null
+	 * @param cvSplit   rows of the instances for each run and fold
+	 * @return splits for each outer fold in the order of the runs and folds
+	 */
+	private static List<Instances[]> getDichotomySplits(Instances data, Instances[][] foldData, int[][][] cvSplit, String[] codeWords, int bit) {
 		
-		// compute code word for each instance
-		String[][] predCodeWords = new String[numFoldsAndRep][];
-		for (int i=0; i<numFoldsAndRep; i++) {
-			int numInstances = allClassResults[0][i].classProbabilities.length;
-			String[] currCodeWords = new String[numInstances];
-			
-			for (int j=0; j<numInstances; j++) {
-				StringBuffer currCodeWord = new StringBuffer();
-				for (int k=0; k<numSVMs; k++) {
-					double currClassProb = allClassResults[k][i].classProbabilities[j][0];
-					currCodeWord.append((Math.round(currClassProb) + "").charAt(0));
+		List<Instances[]> splitsPerFold = new ArrayList<Instances[]>();
+		Instances dichotomy = (foldData == null) ? getDichotomy(data, codeWords, bit) : null;
+		for (int run=0; run<cvSplit.length; run++) {
+			Instances[] splits = null;
+			for (int fold=0; fold<cvSplit[run].length; fold++) {
+				if (foldData != null) {
+					splits = getSplits(getDichotomy(foldData[run][fold], codeWords, bit), cvSplit[run]);
+				} else if (splits == null) {
+					splits = getSplits(dichotomy, cvSplit[run]);
 				}
-				currCodeWords[j] = currCodeWord.toString();
+				splitsPerFold.add(splits);
 			}
-			predCodeWords[i] = currCodeWords;
 		}
+		return splitsPerFold;
+	}
+	
+	// folds of a run are views of the given instances
+	private static Instances[] getSplits(Instances data, int[][] runSplit) {
 		
-		// decode predicted code words and infer class probabilities
-		WekaClassifierResult[] classResults = new WekaClassifierResult[numFoldsAndRep];
-		int instCnt = 0;
-		for (int i=0; i<predCodeWords.length; i++) {
-			
-			// HACK: Use evaluation object from first two-class SVM (use only if ROC scores are calculated externally)
-			classResults[i] = new WekaClassifierResult(allClassResults[i][0].evaluation, allClassResults[i][0].classProbabilities, allClassResults[i][0].classLabels);
-			for (int j=0; j<predCodeWords[i].length; j++) {
-				
-				int [] currHammingDists = new int[codeWords.length];
-				for (int k=0; k<codeWords.length; k++) {
-					currHammingDists[k] = BasicTools.getHammingDistance(predCodeWords[i][j], codeWords[k]);
-				}
-				classResults[i].classProbabilities[j] = getClassProbsFromHammingDists(currHammingDists);
+		Instances[] splits = new Instances[runSplit.length];
+		for (int fold=0; fold<runSplit.length; fold++) {
+			splits[fold] = new InstancesView(data, runSplit[fold]);
+		}
+		return splits;
+	}
+	
+	// relabeled copy of the instances (label is the bit of the code word of the class)
+	private static Instances getDichotomy(Instances data, String[] codeWords, int bit) {
+		
+		// copy header with binary class attribute
+		ArrayList<Attribute> attributes = new ArrayList<Attribute>(data.numAttributes());
+		for (int i=0; i<data.numAttributes(); i++) {
+			if (i == data.classIndex()) {
+				ArrayList<String> binaryLabels = new ArrayList<String>();
+				binaryLabels.add("0");
+				binaryLabels.add("1");
+				attributes.add(new Attribute(data.classAttribute().name(), binaryLabels));
+			} else {
+				attributes.add((Attribute) data.attribute(i).copy());
 			}
 		}
-		return classResults;
+		Instances dichotomy = new Instances(data.relationName() + ".svm" + (bit+1), attributes, data.numInstances());
+		dichotomy.setClassIndex(data.classIndex());
+		for (int row=0; row<data.numInstances(); row++) {
+			Instance instance = data.instance(row);
+			dichotomy.add(instance);
+			dichotomy.lastInstance().setClassValue(codeWords[(int) instance.classValue()].charAt(bit) == '1' ? 1 : 0);
+		}
+		return dichotomy;
 	}
 
-	// compute class probabilities based on hamming distances
-	private static double[] getClassProbsFromHammingDists(int[] hammingDists) {
+	// compute class probabilities based on the likelihoods of the code words
+	private static double[] getClassProbsFromBitProbs(double[] bitProbs, String[] codeWords) {
 		
-		double[] classProbs = new double[hammingDists.length];
-		int[] minPos = BasicTools.getMinPositions(hammingDists);
+		double[] logLikelihoods = new double[codeWords.length];
+		double maxLogLikelihood = Double.NEGATIVE_INFINITY;
+		for (int c=0; c<codeWords.length; c++) {
+			for (int k=0; k<bitProbs.length; k++) {
+				double bitProb = (codeWords[c].charAt(k) == '1') ? bitProbs[k] : 1 - bitProbs[k];
+				logLikelihoods[c] += Math.log(Math.max(bitProb, minBitProb));
+			}
+			maxLogLikelihood = Math.max(maxLogLikelihood, logLikelihoods[c]);
+		}
 		
-		for (int pos: minPos) {
-			classProbs[pos] = 1.0 / minPos.length;
+		double[] classProbs = new double[codeWords.length];
+		double sum = 0;
+		for (int c=0; c<codeWords.length; c++) {
+			classProbs[c] = Math.exp(logLikelihoods[c] - maxLogLikelihood);
+			sum += classProbs[c];
+		}
+		for (int c=0; c<codeWords.length; c++) {
+			classProbs[c] /= sum;
 		}
 		return classProbs;
 	}
@@ -1218,66 +1521,22 @@ public class WekaClassifier {
 	 */
 	private WekaClassifierResult[] runNestedCVGaussianProcesses() {
 		final GaussianProcesses gaussianProcesses = new GaussianProcesses();
-		final long systemMillisBegin = System.currentTimeMillis();
-		WekaClassifierResult[] classResults = new WekaClassifierResult[folds * repetitions];
-
-		int run = 0;
 
 		if (!silent) System.out.println("Nested CV for Gaussian Processes ...");
 
-		for (int rep = 0; rep < repetitions; rep++) {
-
-			// generate new splits for cross-validation
-			Instances[] splits = getSplits(data, folds, rep);
-
-			for (int splitIndex = 0; splitIndex < splits.length; splitIndex++) {
-				Instances instancesTraining = new Instances(data, 1);
-				for (int trainingSplitIndex = 0; trainingSplitIndex < splits.length; trainingSplitIndex++) {
-					if (trainingSplitIndex != splitIndex) {
-						instancesTraining = addInstances(instancesTraining, splits[trainingSplitIndex]);
-					}
-				}
-
-				if (performNestedCV) {
-					if (!silent) System.out.println("Model selection ...");
-					// cross-validate on n-1 folds
-					double bestNoise = -12;
-					double bestMSE = 0.0;
-	
-					for (double C = -12; C <= -1; C++) {
-						gaussianProcesses.setNoise(Math.pow(2, C));
-						Evaluation[] evaluation = performCrossvalidation(gaussianProcesses, instancesTraining, folds, innerRepetitions);
-						double mse = getMSEforRegression(evaluation, instancesTraining);
-						if (mse > bestMSE) {
-							if (!silent) System.out.println("score=" + df.format(mse) + " @noise=" + Math.pow(2, C));
-							bestMSE = mse;
-							bestNoise = C;
-						}
-					}
+		List<ParameterSetting> grid = new ArrayList<ParameterSetting>();
+		for (double C = -12; C <= -1; C++) {
+			grid.add(getGaussianProcessesSetting(C));
+		}
+		return runNestedCV(gaussianProcesses, grid, getGaussianProcessesSetting(-12), true, true);
+	}
 	
-					// predict external data
-					gaussianProcesses.setNoise(Math.pow(2, bestNoise));
-				}
-				instancesTraining.sort(instancesTraining.get(0).numAttributes() - 1);
-				buildClassifier(gaussianProcesses, instancesTraining);
-
-				classResults[run] = predictAndEvaluate(gaussianProcesses, splits[splitIndex]);
-				if (!silent) System.out.println("\nExternal prediction at fold = " + splitIndex);
-				// System.out.println(externalEvals[run].toSummaryString());
-				try {
-					if (!silent) System.out.println(classResults[run].evaluation.toClassDetailsString());
-				} catch (Exception e) {
-					if (!silent) System.out.println("could not create summary");
-				}
-
-				run = showEstimatedDuration(systemMillisBegin, run);
+	private static ParameterSetting getGaussianProcessesSetting(final double C) {
+		return new ParameterSetting(" @noise=" + Math.pow(2, C)) {
+			void apply(Classifier classifier) {
+				((GaussianProcesses) classifier).setNoise(Math.pow(2, C));
 			}
-		}
-		if (writeModelFile) {
-			buildClassifier(gaussianProcesses, data);
-			writeModelFile(gaussianProcesses);
-		}
-		return classResults;
+		};
 	}
 
 	/**
@@ -1287,64 +1546,22 @@ public class WekaClassifier {
 	 */
 	private WekaClassifierResult[] runNestedCVkNN() {
 		final IBk kNN = new IBk();
-		final long systemMillisBegin = System.currentTimeMillis();
-		WekaClassifierResult[] classResults = new WekaClassifierResult[folds * repetitions];
-
-		int run = 0;
 
 		if (!silent) System.out.println("Nested CV for kNN ...");
 
-		for (int rep = 0; rep < repetitions; rep++) {
-
-			// generate new splits for cross-validation
-			Instances[] splits = getSplits(data, folds, rep);
-
-			for (int splitIndex = 0; splitIndex < splits.length; splitIndex++) {
-				Instances instancesTraining = new Instances(data, 1);
-				for (int trainingSplitIndex = 0; trainingSplitIndex < splits.length; trainingSplitIndex++) {
-					if (trainingSplitIndex != splitIndex) {
-						instancesTraining = addInstances(instancesTraining, splits[trainingSplitIndex]);
-					}
-				}
-				
-				if (performNestedCV) {
-					if (!silent) System.out.println("Model selection ...");
-					// cross-validate on n-1 folds
-					int bestNeigbor = 1;
-					double bestAUC = 0.0;
-					for (int neigbor = 1; neigbor <= 16; neigbor = neigbor * 2) {
-						kNN.setKNN(neigbor);
-						Evaluation[] evaluation = performCrossvalidation(kNN, instancesTraining, folds, innerRepetitions);
-						double auc = getMeanQuality(evaluation, instancesTraining);
-						if (auc > bestAUC) {
-							if (!silent) System.out.println("score=" + df.format(auc) + " @k=" + neigbor);
-							bestAUC = auc;
-							bestNeigbor = neigbor;
-						}
-					}
+		List<ParameterSetting> grid = new ArrayList<ParameterSetting>();
+		for (int neigbor = 1; neigbor <= 16; neigbor = neigbor * 2) {
+			grid.add(getkNNSetting(neigbor));
+		}
+		return runNestedCV(kNN, grid, getkNNSetting(1), false, false);
+	}
 	
-					// predict external data
-					kNN.setKNN(bestNeigbor);
-				}
-				buildClassifier(kNN, instancesTraining);
-
-				classResults[run] = predictAndEvaluate(kNN, splits[splitIndex]);
-				if (!silent) System.out.println("\nExternal prediction at fold = " + splitIndex);
-				// System.out.println(externalEvals[run].toSummaryString());
-				try {
-					if (!silent) System.out.println(classResults[run].evaluation.toClassDetailsString());
-				} catch (Exception e) {
-					if (!silent) System.out.println("could not create summary");
-				}
-				
-				run = showEstimatedDuration(systemMillisBegin, run);
+	private static ParameterSetting getkNNSetting(final int neigbor) {
+		return new ParameterSetting(" @k=" + neigbor) {
+			void apply(Classifier classifier) {
+				((IBk) classifier).setKNN(neigbor);
 			}
-		}
-		if (writeModelFile) {
-			buildClassifier(kNN, data);
-			writeModelFile(kNN);
-		}
-		return classResults;
+		};
 	}
 
 	/**
@@ -1354,45 +1571,10 @@ public class WekaClassifier {
 	 */
 	private WekaClassifierResult[] runNestedCVNaiveBayes() {
 		final NaiveBayes naiveBayes = new NaiveBayes();
-		final long systemMillisBegin = System.currentTimeMillis();
-		WekaClassifierResult[] classResults = new WekaClassifierResult[folds * repetitions];
-
-		int run = 0;
 
 		if (!silent) System.out.println("Nested CV for Naive Bayes ...");
 
-		for (int rep = 0; rep < repetitions; rep++) {
-
-			// generate new splits for cross-validation
-			Instances[] splits = getSplits(data, folds, rep);
-
-			for (int splitIndex = 0; splitIndex < splits.length; splitIndex++) {
-				Instances instancesTraining = new Instances(data, 1);
-				for (int trainingSplitIndex = 0; trainingSplitIndex < splits.length; trainingSplitIndex++) {
-					if (trainingSplitIndex != splitIndex) {
-						instancesTraining = addInstances(instancesTraining, splits[trainingSplitIndex]);
-					}
-				}
-
-				// predict external data
-				buildClassifier(naiveBayes, instancesTraining);
-				classResults[run] = predictAndEvaluate(naiveBayes, splits[splitIndex]);
-				if (!silent) System.out.println("\nExternal prediction at fold = " + splitIndex);
-				// System.out.println(externalEvals[run].toSummaryString());
-				try {
-					if (!silent) System.out.println(classResults[run].evaluation.toClassDetailsString());
-				} catch (Exception e) {
-					if (!silent) System.out.println("could not create summary");
-				}
-				
-				run = showEstimatedDuration(systemMillisBegin, run);
-			}
-		}
-		if (writeModelFile) {
-			buildClassifier(naiveBayes, data);
-			writeModelFile(naiveBayes);
-		}
-		return classResults;
+		return runNestedCV(naiveBayes, null, null, false, false);
 	}
 
 	/**
@@ -1403,44 +1585,10 @@ public class WekaClassifier {
 	private WekaClassifierResult[] runNestedCVKStar() {
 		
 		final KStar pls = new KStar();
-		final long systemMillisBegin = System.currentTimeMillis();
-		WekaClassifierResult[] classResults = new WekaClassifierResult[folds * repetitions];
-
-		int run = 0;
 
 		if (!silent) System.out.println("Nested CV for K Star ...");
 
-		for (int rep = 0; rep < repetitions; rep++) {
-
-			// generate new splits for cross-validation
-			Instances[] splits = getSplits(data, folds, rep);
-
-			for (int splitIndex = 0; splitIndex < splits.length; splitIndex++) {
-				Instances instancesTraining = new Instances(data, 1);
-				for (int trainingSplitIndex = 0; trainingSplitIndex < splits.length; trainingSplitIndex++) {
-					if (trainingSplitIndex != splitIndex) {
-						instancesTraining = addInstances(instancesTraining, splits[trainingSplitIndex]);
-					}
-				}
-
-				// predict external data
-				buildClassifier(pls, instancesTraining);
-				classResults[run] = predictAndEvaluate(pls, splits[splitIndex]);
-				if (!silent) System.out.println("\nExternal prediction at fold = " + splitIndex);
-				try {
-					if (!silent) System.out.println(classResults[run].evaluation.toClassDetailsString());
-				} catch (Exception e) {
-					if (!silent) System.out.println("could not create summary");
-				}
-				
-				run = showEstimatedDuration(systemMillisBegin, run);
-			}
-		}
-		if (writeModelFile) {
-			buildClassifier(pls, data);
-			writeModelFile(pls);
-		}
-		return classResults;
+		return runNestedCV(pls, null, null, false, false);
 	}
 	
 	private synchronized int showEstimatedDuration(long startTime, int run) {
@@ -1523,6 +1671,13 @@ public class WekaClassifier {
 	 * @param trainingData
 	 */
 	private void buildClassifier(Classifier classifier, Instances trainingData) {
+		
+		// hide debug output of LibSVM (only for the current thread)
+		boolean hideDebugOutput = hideLibsvmDebugOutput && classifier instanceof LibSVM;
+		OutputStream previousSink = null;
+		if (hideDebugOutput) {
+			previousSink = getOutSink().setSink(ThreadLogSink.NULL_SINK);
+		}
 		try {
 			if (classifier instanceof LibLINEARWekaAdapter)
 				trainingData.sort(trainingData.numAttributes() - 1);
@@ -1530,6 +1685,10 @@ public class WekaClassifier {
 			classifier.buildClassifier(trainingData);
 		} catch (final Exception e2) {
 			e2.printStackTrace();
+		} finally {
+			if (hideDebugOutput) {
+				getOutSink().setSink(previousSink);
+			}
 		}
 	}
 
@@ -1597,33 +1756,94 @@ public class WekaClassifier {
 		return classLabels;
 	}
 	
-	public static String[][] getSplittedDataset(String featureFile, int folds, int run) {
+	/**
+	 * Returns the rows of the feature file (starting at 0) which are assigned to each fold
+	 * in each run of the cross-validation, i.e., the splits obtained by {@link #getSplits}
+	 * for the data read from the feature file. The row of each instance is carried through
+	 * the splitting by an additional attribute, as the split only depends on the order and
+	 * the class labels of the instances.
+	 * 
+	 * @return rows of the instances for each run and fold
+	 */
+	// saved split is used if it contains each of the instances once per repetition
+	private int[][][] getCVSplit(Instances data) {
 		
-		Instances data = readDataFromLibsvm(featureFile, folds);
-		Instances[] splits = getSplits(data, folds, run);
+		if (cvSplitFile != null && new File(cvSplitFile).exists()) {
+			int[][][] cvSplit = WekaLauncher.readCVSplit(cvSplitFile, folds);
+			if (isCompleteCVSplit(cvSplit, data.numInstances(), repetitions)) {
+				return cvSplit;
+			}
+			System.out.println("Warning. Cross-validation split does not match the data and is recomputed: " + cvSplitFile);
+		}
+		return getCVSplit(data, folds, repetitions);
+	}
+	
+	private static boolean isCompleteCVSplit(int[][][] cvSplit, int numInstances, int multiruns) {
 		
-		// save feature vectors (libSVM format) for each subset of CV split
-		String[][] splittedDataset = new String[folds][];
-		for (int i = 0; i < splits.length; i++) {
-			splittedDataset[i] = convertInstances2featureVectors(splits[i]);
+		if (cvSplit.length != multiruns) {
+			return false;
+		}
+		for (int[][] runSplit: cvSplit) {
+			boolean[] assigned = new boolean[numInstances];
+			int numAssigned = 0;
+			for (int[] rows: runSplit) {
+				for (int row: rows) {
+					if (row < 0 || row >= numInstances || assigned[row]) {
+						return false;
+					}
+					assigned[row] = true;
+					numAssigned++;
+				}
+			}
+			if (numAssigned != numInstances) {
+				return false;
+			}
 		}
-		return splittedDataset;
+		return true;
+	}
+	
+	public static int[][][] getCVSplit(String featureFile, int folds, int multiruns) {
+		return getCVSplit(readData(featureFile, 0, "libsvm"), folds, multiruns);
+	}
+	
+	// instances are copied, as the row attribute is added
+	private static int[][][] getCVSplit(Instances instances, int folds, int multiruns) {
+		
+		Instances data = new Instances(instances);
+		data.insertAttributeAt(new Attribute(rowIDAttributeName), 0);
+		for (int i = 0; i < data.numInstances(); i++) {
+			data.instance(i).setValue(0, i);
+		}
+		stratifyData(data, folds);
+		
+		int[][][] cvSplit = new int[multiruns][folds][];
+		for (int run = 0; run < multiruns; run++) {
+			Instances[] splits = getSplits(data, folds, run);
+			for (int fold = 0; fold < folds; fold++) {
+				cvSplit[run][fold] = new int[splits[fold].numInstances()];
+				for (int i = 0; i < cvSplit[run][fold].length; i++) {
+					cvSplit[run][fold][i] = (int) splits[fold].instance(i).value(0);
+				}
+			}
+		}
+		return cvSplit;
 	}
 
 	/**
-	 * splits an array of instances into n folds of equal size
+	 * splits an array of instances into n folds of equal size (folds are views which 
+	 * share the instances with the given data)
 	 * 
 	 * @param data
 	 * @param folds
 	 * @param seed
 	 * @return
 	 */
-	private static synchronized Instances[] getSplits(Instances data, int folds, int seed) {
+	private static Instances[] getSplits(Instances data, int folds, int seed) {
 
-		Instances[] splits = new Instances[folds];
+		InstancesView[] splits = new InstancesView[folds];
 		for (int i = 0; i < splits.length; i++) {
 			// copy header information
-			splits[i] = new Instances(data, 1);
+			splits[i] = new InstancesView(data, data.numInstances() / folds + 1);
 		}
 
 		// set seed according to the repetition run
@@ -1632,7 +1852,7 @@ public class WekaClassifier {
 
 		int foldIndex = 0;
 		for (int i = 0, n = data.numInstances(); i < n; i++) {
-			splits[foldIndex].add(data.instance(i));
+			splits[foldIndex].addView(data.instance(i));
 			foldIndex++;
 			if (foldIndex > folds - 1)
 				foldIndex = 0;
@@ -1656,11 +1876,7 @@ public class WekaClassifier {
 			Instances[] splits = getSplits(data, folds, rep);
 
 			for (int i = 0; i < folds; i++) {
-				Instances trainingSetTemporary = new Instances(data, 1);
-				for (int j = 0; j < folds; j++) {
-					if (j != i)
-						trainingSetTemporary = this.addInstances(trainingSetTemporary, splits[j]);
-				}
+				Instances trainingSetTemporary = getTrainingSet(splits, i);
 				// train classifier
 				this.buildClassifier(classifier, trainingSetTemporary);
 				// predict the jth fold
@@ -1676,18 +1892,64 @@ public class WekaClassifier {
 	}
 
 	/**
-	 * returns join list of references of a and b
+	 * cross-validation of LIBLINEAR with each of the given costs, the models of
+	 * each fold are trained along the regularization path
 	 * 
-	 * @param a
-	 * @param b
+	 * @param classifier
+	 * @param costs        costs in ascending order
+	 * @param data
+	 * @param folds
+	 * @param repetitions
+	 * @return evaluations of each cost in each fold
+	 */
+	private Evaluation[][] performPathCrossvalidation(LibLINEARWekaAdapter classifier, double[] costs, Instances data, int folds, int repetitions) {
+
+		Evaluation[][] results = new Evaluation[costs.length][folds * repetitions];
+		for (int rep = 0; rep < repetitions; rep++) {
+			Instances[] splits = getSplits(data, folds, rep);
+
+			for (int i = 0; i < folds; i++) {
+				Instances trainingSetTemporary = getTrainingSet(splits, i);
+				trainingSetTemporary.sort(trainingSetTemporary.numAttributes() - 1);
+				
+				// train classifiers for all costs
+				LibLINEARWekaAdapter[] models = null;
+				try {
+					models = classifier.buildClassifierPath(trainingSetTemporary, costs);
+				} catch (Exception e) {
+					e.printStackTrace();
+					models = new LibLINEARWekaAdapter[costs.length];
+					Arrays.fill(models, classifier);
+				}
+				// predict the jth fold
+				for (int c = 0; c < costs.length; c++) {
+					results[c][rep * folds + i] = this.evaluate(models[c], splits[i]);
+				}
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * returns a view of the instances of all splits except the test split
+	 * 
+	 * @param splits
+	 * @param testSplitIndex
 	 * @return
 	 */
-	private Instances addInstances(Instances a, Instances b) {
-		Instances instancesA = new Instances(a);
-		for (int i = 0, n = b.numInstances(); i < n; i++) {
-			instancesA.add(b.instance(i));
+	private static InstancesView getTrainingSet(Instances[] splits, int testSplitIndex) {
+		
+		int numInstances = 0;
+		for (int i = 0; i < splits.length; i++) {
+			if (i != testSplitIndex)
+				numInstances += splits[i].numInstances();
+		}
+		InstancesView trainingSet = new InstancesView(splits[0], numInstances);
+		for (int i = 0; i < splits.length; i++) {
+			if (i != testSplitIndex)
+				trainingSet.addView(splits[i]);
 		}
-		return instancesA;
+		return trainingSet;
 	}
 }
 
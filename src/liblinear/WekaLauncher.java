@@ -24,12 +24,10 @@ package liblinear;
 
 import io.BasicTools;
 
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.Callable;
@@ -158,6 +156,10 @@ public class WekaLauncher {
 			argsClassifier.add("-t");
 			argsClassifier.add("true");
 		}
+		if (cvSplitFile != null) {
+			argsClassifier.add("-x");
+			argsClassifier.add(cvSplitFile);
+		}
 		
 		return argsClassifier.toArray(new String[]{});
 	}
@@ -168,47 +170,40 @@ public class WekaLauncher {
 	}
 	
 	public static int[][][] getCVSplit(String libsvmFeatureFile, int folds, int multiruns) {
+		return WekaClassifier.getCVSplit(libsvmFeatureFile, folds, multiruns);
+	}
+	
+	/**
+	 * Reads a cross-validation split saved by {@link #saveWekaCVsplit} 
+	 * (one line with the rows of the instances for each fold of each run).
+	 * 
+	 * @return rows of the instances for each run and fold
+	 */
+	public static int[][][] readCVSplit(String cvSplitFile, int folds) {
 		
-		// get unscaled libsvm feature vectors for each run and split
-		String[][][] splittedDatasets = new String[multiruns][][];
-		for (int run = 0; run < multiruns; run++) {
-			splittedDatasets[run] = WekaClassifier.getSplittedDataset(libsvmFeatureFile, folds, run);
-		}
-		
-		// read original feature file
-		List<String> featureVectors = BasicTools.readFile2List(libsvmFeatureFile, false);
-		for (int i=0; i<featureVectors.size(); i++) {
-			String currFeatVec = featureVectors.get(i);
-			if (currFeatVec.startsWith("-1")) {
-				featureVectors.set(i, currFeatVec.replaceFirst("-1", "0"));
-			} else if (currFeatVec.startsWith("+1")) {
-				featureVectors.set(i, currFeatVec.replaceFirst("\\+1", "1"));
-			}
-		}
-		
-		// reconstruct random splits and permutations performed by Weka during cross-validation
-		int [][][] cvSplit = new int[multiruns][folds][];
+		List<String> cvSplitList = BasicTools.readFile2List(cvSplitFile, false);
+		int multiruns = cvSplitList.size() / folds;
+		int[][][] cvSplit = new int[multiruns][folds][];
 		for (int run = 0; run < multiruns; run++) {
 			for (int fold = 0; fold < folds; fold++) {
-				int foldSize = splittedDatasets[run][fold].length;
-				int[] foldPerm = new int[foldSize];
-				for (int instIdx = 0; instIdx < foldSize; instIdx++) {
-					 String featVec = splittedDatasets[run][fold][instIdx].replaceAll("([0-9])\\.0\\s", "$1 ").replaceFirst("\\.0$", "");
-					 int idx = featureVectors.indexOf(featVec);
-					 if (idx != -1) {
-						 foldPerm[instIdx] = idx;
-					 
-					 // instance was not found in CV-split --> Error.
-					 } else {
-						 System.out.println("Error. Feature vector was not found.");
-						 System.out.println(featVec);
-						 System.exit(0);
-					 }
+				String[] rows = cvSplitList.get(run * folds + fold).trim().split(" ");
+				cvSplit[run][fold] = new int[rows.length];
+				for (int instIdx = 0; instIdx < rows.length; instIdx++) {
+					cvSplit[run][fold][instIdx] = Integer.parseInt(rows[instIdx]);
 				}
-				cvSplit[run][fold] = foldPerm;
 			}
 		}
-		return(cvSplit);
+		return cvSplit;
+	}
+	
+	/**
+	 * File with the features of a fold of a saved cross-validation split which are derived
+	 * from the training sequences of the fold only (see features.BLASTfeatureGenerator).
+	 * 
+	 * @return e.g., "percentile_features_run1_fold2.txt" (run and fold are counted from 0)
+	 */
+	public static String getFoldFeatureFile(String featureFile, int run, int fold) {
+		return featureFile.replace(".txt", "_run" + (run + 1) + "_fold" + (fold + 1) + ".txt");
 	}
 	
 	private void saveWekaCVsplit() {
@@ -227,6 +222,11 @@ public class WekaLauncher {
 			}
 		}
 		BasicTools.writeList2File(cvSplitList, cvSplitFile);
+		
+		// classifiers use the saved split, hence it has to be read back unchanged
+		if (!Arrays.deepEquals(readCVSplit(cvSplitFile, folds), cvSplit)) {
+			System.out.println("Warning. Saved cross-validation split differs from the computed split: " + cvSplitFile);
+		}
 	}
 	
 	public double[][] runWekaClassifier(boolean multithreading) {
@@ -310,27 +310,6 @@ public class WekaLauncher {
 		return(classResults);
 	}
 
-	public static String redirectSystemOut2TempFile() {
-		String tempFile = "";
-		try {
-			tempFile = File.createTempFile("wekaTemp_", ".txt").getAbsolutePath();
-			redirectSystemOut(tempFile);
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
-		return tempFile;
-	}
-	
-	public static void redirectSystemOut(String outfile) {
-        try {
-            System.setOut(new PrintStream(new FileOutputStream(outfile)));
-            
-        } catch (FileNotFoundException ex) {
-            ex.printStackTrace();
-            return;
-        }
-    }
-	
 	class Job implements Callable<String>{
 		
 		String classifierType;
@@ -349,6 +328,7 @@ public class WekaLauncher {
 
 			WekaClassifier classifier = new WekaClassifier(classifierType, libsvmFeatureFile, multiruns, folds, nestedCV, modelFile, summaryFile, classProbFile);
 			classifier.setMultithreading(true);
+			classifier.setCVSplitFile(cvSplitFile);
 			classifier.run();
 
 			return "Done.";
@@ -28,6 +28,8 @@ import io.AnimatedChar;
 import io.BasicTools;
 import io.ObjectRW;
 import io.UniProtClient;
+import ipr.DomainDictionary;
+import ipr.DomainInterval;
 import ipr.IPRextract;
 import ipr.IPRprocess;
 import ipr.IPRrun;
@@ -133,8 +135,8 @@ public class Predict {
 	private String tfDBfastaFile;
 	private Classifier tfClassifier;
 	private Classifier superClassifier;
-	private List<String> relDomains_TFclass;
-	private List<String> relDomains_Superclass;
+	private DomainDictionary relDomainDict_TFclass;
+	private DomainDictionary relDomainDict_Superclass;
 	private List<String> relGOterms;
 	private Map<String,String> tfName2class;
 	private Map<String, Integer> domain2tf;
@@ -153,7 +155,7 @@ public class Predict {
 	private Map<String, Double[]> probDist_Superclass = new HashMap<String, Double[]>();
 	private Map<String, Integer> predictedSuperclass  = new HashMap<String, Integer>();
 	private Map<String, String> annotatedClass  = new HashMap<String, String>();
-	private Map<String, String[]> bindingDomains  = new HashMap<String, String[]>();
+	private Map<String, IprProcessed> bindingDomains  = new HashMap<String, IprProcessed>();
 	
 	private Map<String, Boolean> predictionPossible = new HashMap<String, Boolean>();
 	private Map<String, Boolean> predictionTrivial = new HashMap<String, Boolean>();
@@ -343,14 +345,11 @@ public class Predict {
 		}
 	}
 	
-	@SuppressWarnings("unchecked")
 	private void prepareInput() {
 		
-		relDomains_TFclass = BasicTools.readResource2List(relDomainsTF_file);
-		relDomains_Superclass = BasicTools.readResource2List(relDomainsSuper_file);
-		tfName2class = (Map<String, String>) ObjectRW.readFromResource(tfName2class_file);
-		
-		relGOterms = BasicTools.readResource2List(relGOterms_file);
+		relDomainDict_TFclass = new DomainDictionary(BasicTools.readResource2List(relDomainsTF_file));
+		relDomainDict_Superclass = new DomainDictionary(BasicTools.readResource2List(relDomainsSuper_file));
+		prepareDomainFilter();
 		
 		// if UniProt ID was given --> retrieve sequence and species from UniProt
 		if (uniprot_id != null) {
@@ -424,6 +423,26 @@ public class Predict {
 		}
 	}
 	
+	// GO terms and TransFac classes used to identify DNA-binding domains
+	@SuppressWarnings("unchecked")
+	private void prepareDomainFilter() {
+		
+		tfName2class = (Map<String, String>) ObjectRW.readFromResource(tfName2class_file);
+		relGOterms = BasicTools.readResource2List(relGOterms_file);
+	}
+	
+	/**
+	 * Returns a predictor which only runs the InterProScan step of the prediction mode (e.g., for
+	 * batches of {@link ipr.IPRLoadTest}). The InterPro web service is used unless a path to a
+	 * local installation was set.
+	 */
+	public static Predict getInterproScanPredictor() {
+		
+		Predict predictor = new Predict();
+		predictor.prepareDomainFilter();
+		return predictor;
+	}
+	
 	private void prepareClassifiers() {
 
 		// load TF/Non-TF and superclass classifier
@@ -436,16 +455,14 @@ public class Predict {
 		}
 		
     	if (!silent) {
-    		//System.out.println("  " + relDomains_TFclass.size() + " domains used for TF/Non-TF classification.");
-    		//System.out.println("  " + relDomains_Superclass.size() + " domains used for Superclass classification.\n");
+    		//System.out.println("  " + relDomainDict_TFclass.size() + " domains used for TF/Non-TF classification.");
+    		//System.out.println("  " + relDomainDict_Superclass.size() + " domains used for Superclass classification.\n");
     	}
 	}
     
 	 // execute iprscan and get results
 	private void runInterproScan() {
 
-		// HACK: line can be excluded for testing purposes
-		IPRrun InterProScanRunner = new IPRrun(silent);
 		AnimatedChar an = null;
 		if (standAloneMode) {
 			System.out.print("\n  Fetching domains from InterProScan. This may take several minutes... ");
@@ -454,25 +471,12 @@ public class Predict {
 			//an.setOutputStream(System.out);
 			//an.showAnimatedChar();
 		}
-		List<String[]> IPRoutput = InterProScanRunner.run(input_file, iprpath, basedir, useWeb, standAloneMode);
-		seq2job = InterProScanRunner.getSeq2job();
+		runInterproScan(input_file, basedir);
 		if (standAloneMode) {
 			an.hideAnimatedChar();
 			System.out.println();
 		}
 		
-		// HACK: lines can be included for testing purposes
-		//basedir = "/rahome/eichner/projects/tfpredict/failed_inputs/";
-		//List<String[]> IPRoutput = BasicTools.readFile2ListSplitLines(basedir + "allTFs_iprscan_output.txt");
-		
-		// generates mapping from sequence IDs to InterPro domain IDs
-		seq2domain = IPRextract.getSeq2DomainMap(IPRoutput);
-		
-		// generates map of from domain ID to object containing the InterPro ID, description, position, and GO classes
-		IPRdomains = IPRextract.parseIPRoutput(IPRoutput);
-	
-		// process result
-		seq2bindingDomain = IPRprocess.filterIPRdomains(seq2domain, IPRdomains, relGOterms, tfName2class);
 		if (standAloneMode || !silent) {
 			for	(String seq: sequence_ids) {
 				System.out.println("\nProcessed " + seq + ":");
@@ -482,15 +486,15 @@ public class Predict {
 				}
 				int numDomainsTFclass = 0;
 				if (seq2domain.get(seq) != null) {
-					numDomainsTFclass = BasicTools.intersect(seq2domain.get(seq).domain_ids, relDomains_TFclass).size();
+					numDomainsTFclass = relDomainDict_TFclass.countIntersection(seq2domain.get(seq).domain_ids);
 				}
 				int numDomainsSuperclass = 0;
 				if (seq2domain.get(seq) != null) {
-					numDomainsSuperclass = BasicTools.intersect(seq2domain.get(seq).domain_ids, relDomains_Superclass).size();
+					numDomainsSuperclass = relDomainDict_Superclass.countIntersection(seq2domain.get(seq).domain_ids);
 				}
 				int numBindingDomains = 0;
 				if (seq2bindingDomain.get(seq) != null) {
-					numBindingDomains = seq2bindingDomain.get(seq).binding_domains.size();
+					numBindingDomains = seq2bindingDomain.get(seq).binding_intervals.size();
 				}
 				System.out.println("  " + numDomains + " InterPro domain(s) found.");
 				System.out.println("  " + numDomainsTFclass + " / " + numDomains + " InterPro domain(s) are relevant for TF/Non-TF classification.");
@@ -500,6 +504,34 @@ public class Predict {
 		}
 	}
 	
+	/**
+	 * Runs InterProScan on the sequences in the given FASTA file and extracts the
+	 * DNA-binding domains. Results of the web service are written to the job directory.
+	 * 
+	 * @return DNA-binding domains of the sequences
+	 */
+	public Map<String, IprProcessed> runInterproScan(String inputFile, String jobdir) {
+		
+		// HACK: line can be excluded for testing purposes
+		IPRrun InterProScanRunner = new IPRrun(silent);
+		List<String[]> IPRoutput = InterProScanRunner.run(inputFile, iprpath, jobdir, useWeb, standAloneMode);
+		seq2job = InterProScanRunner.getSeq2job();
+		
+		// HACK: lines can be included for testing purposes
+		//basedir = "/rahome/eichner/projects/tfpredict/failed_inputs/";
+		//List<String[]> IPRoutput = BasicTools.readFile2ListSplitLines(basedir + "allTFs_iprscan_output.txt");
+		
+		// generates mapping from sequence IDs to InterPro domain IDs
+		seq2domain = IPRextract.getSeq2DomainMap(IPRoutput);
+		
+		// generates map of from domain ID to object containing the InterPro ID, description, position, and GO classes
+		IPRdomains = IPRextract.parseIPRoutput(IPRoutput);
+	
+		// process result
+		seq2bindingDomain = IPRprocess.filterIPRdomains(seq2domain, IPRdomains, relGOterms, tfName2class);
+		return seq2bindingDomain;
+	}
+	
 	// generates databases, runs BLAST on query sequence and extracts hits 
 	private void runPsiBlast() {
 		
@@ -691,9 +723,9 @@ public class Predict {
 				    			annotatedClassAvailable.put(seq, true);
 				    			annotatedClass.put(seq, ipr_res.anno_transfac_class);
 				    		} 
-				    		if (!ipr_res.binding_domains.isEmpty()) {
+				    		if (!ipr_res.binding_intervals.isEmpty()) {
 				    			domainsPredicted.put(seq, true);
-				    			bindingDomains.put(seq, ipr_res.binding_domains.toArray(new String[]{}));
+				    			bindingDomains.put(seq, ipr_res);
 				    		}
 				    	}
 					}
@@ -830,10 +862,11 @@ public class Predict {
 							bw.write("<table>\n");
 							bw.write("  <tr><th> Domain ID </th><th> Start </th><th> End </th></tr>\n");	
 					    	
-							for (String domain : bindingDomains.get(seq)) {
-								String[] splitted_domain = domain.replace("    ", "\t").split("\t");
-								String currLink =  "<a href=\"" + interproPrefix + splitted_domain[0] + "\" target=\"_blank\"> " + splitted_domain[0] + " </a>";
-								bw.write("  <tr><td> "+ currLink + " </td><td> "+ splitted_domain[1] +" </td><td> " + splitted_domain[2] +" </td></tr>\n"); 
+							IprProcessed dbd = bindingDomains.get(seq);
+							for (DomainInterval domain : dbd.binding_intervals) {
+								String domainID = dbd.getDomainID(domain);
+								String currLink =  "<a href=\"" + interproPrefix + domainID + "\" target=\"_blank\"> " + domainID + " </a>";
+								bw.write("  <tr><td> "+ currLink + " </td><td> "+ domain.start +" </td><td> " + domain.end +" </td></tr>\n"); 
 							}
 							bw.write("</table>\n\n");
 							bw.write("<br>\n\n");
@@ -907,9 +940,9 @@ public class Predict {
 						System.out.println("  DNA-binding domain(s):");
 						System.out.println(hline);
 						System.out.println("  Domain ID \t Start \t End");
-						for (String domain : bindingDomains.get(seq)) {
-							String[] splitted_domain = domain.replace("    ", "\t").split("\t");
-							System.out.println("  " + splitted_domain[0] + " \t " + splitted_domain[1] + " \t " + splitted_domain[2]); 
+						IprProcessed dbd = bindingDomains.get(seq);
+						for (DomainInterval domain : dbd.binding_intervals) {
+							System.out.println("  " + dbd.getDomainID(domain) + " \t " + domain.start + " \t " + domain.end); 
 						}
 					
 					} else {
@@ -971,7 +1004,7 @@ public class Predict {
 							
 					// write domains
 					if (domainsPredicted.get(seq)) {
-						for (String domain : bindingDomains.get(seq)) {
+						for (String domain : bindingDomains.get(seq).formatBindingIntervals()) {
 							bw.write("FT  " + domain + "\n");
 						}
 						bw.write("XX\n");
@@ -1045,17 +1078,18 @@ public class Predict {
 	 * @return
 	 */
 	public static String createIPRvector(List<String> predIPRdomains, List<String> relIPRdomains, int start) {
-		String fvector = "";
-		
-		for (int i = 0; i < relIPRdomains.size(); i++) {
-			String curr_ipr = relIPRdomains.get(i);
-			if (predIPRdomains.contains(curr_ipr)) {
-				
-				int column = i+1+start;
-				fvector = fvector.concat(column + ":" + "1 ");
-			}
-		}
-		return fvector.trim();
+		return createIPRvector(predIPRdomains, new DomainDictionary(relIPRdomains), start);
+	}
+	
+	/**
+	 * 
+	 * @param predIPRdomains
+	 * @param relIPRdomains  dictionary of relevant domains (code i is written to column i+1+start)
+	 * @param start
+	 * @return
+	 */
+	public static String createIPRvector(List<String> predIPRdomains, DomainDictionary relIPRdomains, int start) {
+		return DomainDictionary.createFeatureVector(relIPRdomains.encode(predIPRdomains), start);
 	}
 	
 	/*